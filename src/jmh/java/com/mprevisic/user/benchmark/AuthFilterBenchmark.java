@@ -0,0 +1,113 @@
+package com.mprevisic.user.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.Authentication;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.security.AuthFilter;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.security.JwtAuthProvider;
+import com.mprevisic.user.security.JwtToken;
+import com.mprevisic.user.security.KeyPairContainer;
+import com.mprevisic.user.security.VerifiedTokenCache;
+import com.mprevisic.user.util.CsrfTokenUtil;
+import com.mprevisic.user.util.JwtUtil;
+import com.mprevisic.user.util.UserBlacklistCache;
+
+/**
+ * Benchmarks of the authenticated request path: JWT access token validation
+ * in the authentication provider and the whole authentication filter
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthFilterBenchmark {
+
+	/**
+	 * Size of the verified token cache, 0 disables caching
+	 */
+	@Param({ "0", "10000" })
+	public long tokenCacheSize;
+
+	@Param({ "RS256", "ES256" })
+	public String algorithm;
+
+	private JwtAuthProvider authProvider;
+
+	private AuthFilter authFilter;
+
+	private String accessToken;
+
+	private MockHttpServletRequest request;
+
+	private MockHttpServletResponse response;
+
+	private final FilterChain chain = (req, res) -> {
+	};
+
+	@Setup
+	public void setUp() {
+		KeyPairContainer keyPairContainer = BenchmarkFixtures.keyPairContainer(algorithm);
+		AuthMetrics authMetrics = new AuthMetrics(new MetricsRegistry());
+		JwtUtil jwtUtil = new JwtUtil(keyPairContainer, BenchmarkFixtures.userCache(), authMetrics);
+		accessToken = jwtUtil.createAccessToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+
+		VerifiedTokenCache tokenCache = new VerifiedTokenCache(tokenCacheSize, Constants.ACCESS_TOKEN_TTL);
+		authProvider = new JwtAuthProvider(keyPairContainer, new UserBlacklistCache(), tokenCache, authMetrics);
+		authFilter = new AuthFilter(new ProviderManager(Collections.singletonList(authProvider)), authMetrics);
+
+		String csrfToken = new CsrfTokenUtil().generateToken();
+
+		String refreshToken = jwtUtil.createRefreshToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+
+		// a browser sends all cookies of the API path, the container also
+		// exposes them parsed
+		request = new MockHttpServletRequest("GET", "/api/v1/users/1");
+		request.setCookies(new Cookie(Constants.JWT_REFRESH_TOKEN, refreshToken),
+				new Cookie(Constants.JWT_ACCESS_TOKEN, accessToken), new Cookie(Constants.CSRF_TOKEN, csrfToken));
+		request.addHeader("Cookie", Constants.JWT_REFRESH_TOKEN + "=" + refreshToken + "; "
+				+ Constants.JWT_ACCESS_TOKEN + "=" + accessToken + "; " + Constants.CSRF_TOKEN + "=" + csrfToken);
+		request.addHeader(Constants.CSRF_TOKEN, csrfToken);
+		response = new MockHttpServletResponse();
+	}
+
+	@Benchmark
+	public Authentication authenticate() {
+		return authProvider.authenticate(new JwtToken(accessToken));
+	}
+
+	@Benchmark
+	public int doFilter() throws IOException, ServletException {
+		authFilter.doFilterInternal(request, response, chain);
+		return response.getStatus();
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.mprevisic.user.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Optional;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.KeyRepository;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.KeyPairContainer;
+import com.mprevisic.user.util.UserCache;
+
+/**
+ * Shared set-up for the benchmarks. Repositories are replaced by stub-only
+ * mocks so that no invocations are recorded while the benchmarks run.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+final class BenchmarkFixtures {
+
+	static final String EMAIL = "user@gmail.com";
+
+	static final String PASSWORD = "temp213test";
+
+	static final int ROLE = 1;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Creates a key pair container with a freshly generated key pair for the
+	 * given signing algorithm
+	 */
+	static KeyPairContainer keyPairContainer(String algorithm) {
+		KeyRepository keyRepo = mock(KeyRepository.class, withSettings().stubOnly());
+		return new KeyPairContainer(keyRepo, algorithm);
+	}
+
+	/**
+	 * Creates a user repository containing a single user with a BCrypt hashed
+	 * password
+	 */
+	static UserRepository userRepository() {
+		return userRepository(new BCryptPasswordEncoder().encode(PASSWORD));
+	}
+
+	/**
+	 * Creates a user cache backed by a user repository containing a single
+	 * user
+	 */
+	static UserCache userCache() {
+		return new UserCache(userRepository(), 1000, 60000, new MetricsRegistry());
+	}
+
+	/**
+	 * Creates a user repository containing a single user with the given
+	 * password hash
+	 */
+	static UserRepository userRepository(String passwordHash) {
+		UserEntity user = new UserEntity().setId(1L).setEmail(EMAIL).setRole(ROLE).setPassword(passwordHash);
+
+		UserRepository userRepo = mock(UserRepository.class, withSettings().stubOnly());
+		when(userRepo.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+		when(userRepo.findViewByEmail(EMAIL)).thenReturn(Optional.of(UserView.of(user)));
+		when(userRepo.findViewById(1L)).thenReturn(Optional.of(UserView.of(user)));
+		return userRepo;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.mprevisic.user.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.security.CookieIssuer;
+import com.mprevisic.user.util.CsrfTokenUtil;
+import com.mprevisic.user.util.JwtUtil;
+
+/**
+ * Benchmark of building the Set-Cookie headers of a login with precomputed
+ * cookie attributes compared to concatenating them for every login, with
+ * tokens created beforehand
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieBenchmark {
+
+	private CookieIssuer cookieIssuer;
+
+	private String accessToken;
+
+	private String refreshToken;
+
+	private String csrfToken;
+
+	private final String sslKeyStore = "keystore.p12";
+
+	@Setup
+	public void setUp() {
+		cookieIssuer = new CookieIssuer(null, null, sslKeyStore, false, "Lax", "/api/v1");
+
+		JwtUtil jwtUtil = new JwtUtil(BenchmarkFixtures.keyPairContainer("RS256"), BenchmarkFixtures.userCache(),
+				new AuthMetrics(new MetricsRegistry()));
+		accessToken = jwtUtil.createAccessToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+		refreshToken = jwtUtil.createRefreshToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+		csrfToken = new CsrfTokenUtil().generateToken();
+	}
+
+	@Benchmark
+	public HttpHeaders precomputed() {
+		return cookieIssuer.headers(accessToken, csrfToken, refreshToken);
+	}
+
+	/**
+	 * Headers built as by the session controller before the cookie issuer
+	 */
+	@Benchmark
+	public HttpHeaders concatenated() {
+		long accessTokenMaxAge = Constants.ACCESS_TOKEN_TTL / 1000L;
+
+		String accessTokenCookie = Constants.JWT_ACCESS_TOKEN + "=" + accessToken + "; HttpOnly; max-age="
+				+ accessTokenMaxAge + ";";
+
+		if (httpsEnabled()) {
+			accessTokenCookie += "secure; ";
+		}
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Set-Cookie", accessTokenCookie);
+		headers.add("Set-Cookie", Constants.CSRF_TOKEN + "=" + csrfToken);
+
+		long refTokenMaxAge = Constants.REFRESH_TOKEN_TTL / 1000L;
+
+		String refreshTokenCookie = Constants.JWT_REFRESH_TOKEN + "=" + refreshToken + "; HttpOnly; max-age="
+				+ refTokenMaxAge + ";";
+
+		if (httpsEnabled()) {
+			refreshTokenCookie += "secure; ";
+		}
+
+		headers.add("Set-Cookie", refreshTokenCookie);
+
+		return headers;
+	}
+
+	private boolean httpsEnabled() {
+		return sslKeyStore != null;
+	}
+
+}
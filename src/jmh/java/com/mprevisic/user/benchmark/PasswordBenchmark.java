@@ -0,0 +1,81 @@
+package com.mprevisic.user.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mprevisic.user.Credentials;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.service.PasswordHasher;
+import com.mprevisic.user.service.PasswordVerifier;
+import com.mprevisic.user.service.UserService;
+import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserCache;
+import com.mprevisic.user.util.UserSearchIndex;
+
+/**
+ * Benchmark of the password check done on login with different encoders and
+ * work factors
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+
+	/**
+	 * Password encoder and its work factor (BCrypt strength or PBKDF2
+	 * iterations)
+	 */
+	@Param({ "bcrypt:10", "bcrypt:12", "pbkdf2:600000" })
+	public String encoder;
+
+	private UserService userService;
+
+	private Credentials credentials;
+
+	@Setup
+	public void setUp() {
+		String[] config = encoder.split(":");
+		int workFactor = Integer.parseInt(config[1]);
+		PasswordHasher passwordHasher = PasswordHasher.BCRYPT.equals(config[0])
+				? new PasswordHasher(config[0], workFactor, 1)
+				: new PasswordHasher(config[0], 10, workFactor);
+
+		UserRepository userRepo = BenchmarkFixtures.userRepository(passwordHasher.encode(BenchmarkFixtures.PASSWORD));
+
+		userService = new UserService(userRepo, null, new UserCache(userRepo, 1000, 60000, new MetricsRegistry()),
+				new UserSearchIndex(null, false), new UserBlacklistCache(),
+				new PasswordVerifier(1, 1, passwordHasher, new MetricsRegistry()), passwordHasher, null,
+				new AuthMetrics(new MetricsRegistry()));
+
+		credentials = new Credentials();
+		credentials.setEmail(BenchmarkFixtures.EMAIL);
+		credentials.setPassword(BenchmarkFixtures.PASSWORD);
+	}
+
+	@Benchmark
+	public Optional<UserDto> authenticate() {
+		return userService.authenticate(credentials);
+	}
+
+}
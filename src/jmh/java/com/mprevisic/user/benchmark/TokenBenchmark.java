@@ -0,0 +1,70 @@
+package com.mprevisic.user.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.util.CsrfTokenUtil;
+import com.mprevisic.user.util.JwtUtil;
+
+/**
+ * Benchmarks of token creation and validation used by the session API
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+	@Param({ "RS256", "ES256" })
+	public String algorithm;
+
+	private JwtUtil jwtUtil;
+
+	private CsrfTokenUtil csrfUtil;
+
+	private String refreshToken;
+
+	@Setup
+	public void setUp() {
+		jwtUtil = new JwtUtil(BenchmarkFixtures.keyPairContainer(algorithm), BenchmarkFixtures.userCache(),
+				new AuthMetrics(new MetricsRegistry()));
+		csrfUtil = new CsrfTokenUtil();
+		refreshToken = jwtUtil.createRefreshToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+	}
+
+	@Benchmark
+	public String createAccessToken() {
+		return jwtUtil.createAccessToken(BenchmarkFixtures.EMAIL, BenchmarkFixtures.ROLE);
+	}
+
+	@Benchmark
+	public Optional<UserDto> validateRefreshToken() {
+		return jwtUtil.validateRefreshToken(refreshToken);
+	}
+
+	@Benchmark
+	public String generateCsrfToken() {
+		return csrfUtil.generateToken();
+	}
+
+}
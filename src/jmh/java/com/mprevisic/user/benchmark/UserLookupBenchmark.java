@@ -0,0 +1,74 @@
+package com.mprevisic.user.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.mprevisic.user.UserApiApplication;
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.repository.UserRepository;
+
+/**
+ * Benchmark of reading a user by ID as managed entity compared to reading the
+ * password-free projection, against the in-memory database of the test
+ * profile
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLookupBenchmark {
+
+	private ConfigurableApplicationContext context;
+
+	private UserRepository userRepo;
+
+	private long userId;
+
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(UserApiApplication.class)
+				.run("--spring.profiles.active=test", "--server.port=0", "--spring.jpa.show_sql=false",
+						"--logging.level.root=WARN");
+		userRepo = context.getBean(UserRepository.class);
+
+		UserEntity user = new UserEntity().setEmail(BenchmarkFixtures.EMAIL).setPassword(BenchmarkFixtures.PASSWORD)
+				.setFirstName("John").setLastName("Doe").setRole(BenchmarkFixtures.ROLE);
+		userId = userRepo.save(user).getId();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public UserDto findEntity() {
+		return userRepo.findOne(userId).toDto();
+	}
+
+	@Benchmark
+	public UserDto findView() {
+		return userRepo.findViewById(userId).map(UserView::toDto).get();
+	}
+
+}
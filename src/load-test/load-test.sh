@@ -0,0 +1,121 @@
+#!/bin/bash
+#
+# Compares request handling on the Tomcat thread pool with virtual threads
+# under increasing concurrency. Starts the application once per mode with the
+# in-memory test database and the user cache disabled, so every request reads
+# the user from the database, and loads GET /api/v1/users/{id} with wrk.
+#
+# With platform threads throughput stops growing at "server.tomcat.max-threads"
+# concurrent requests, with virtual threads at the number of connections of the
+# connection pool (the JDBC executor has as many threads). Lower TOMCAT_THREADS
+# below DB_CONNECTIONS to see the difference, and compare the wait time of the
+# JDBC executor with the database lookup time in the printed metrics.
+#
+# Requires curl, wrk and the built application (mvn package). The virtual
+# thread mode requires Java 21 or newer, on older runtimes it falls back to the
+# Tomcat thread pool and logs a warning.
+#
+# Usage: src/load-test/load-test.sh [concurrency...]
+#
+# @author Marko Previsic
+# @created Oct 18, 2026
+
+set -euo pipefail
+
+JAVA=${JAVA:-java}
+JAR=${JAR:-target/user-api.jar}
+PORT=${PORT:-18080}
+DURATION=${DURATION:-30s}
+WRK_THREADS=${WRK_THREADS:-4}
+TOMCAT_THREADS=${TOMCAT_THREADS:-200}
+DB_CONNECTIONS=${DB_CONNECTIONS:-10}
+CONCURRENCY=${*:-"10 50 200 800 2000"}
+
+BASE_URL="http://localhost:$PORT"
+WORK_DIR=$(mktemp -d)
+APP_PID=
+
+cleanup() {
+	if [ -n "$APP_PID" ]; then
+		kill "$APP_PID" 2>/dev/null || true
+		wait "$APP_PID" 2>/dev/null || true
+	fi
+	rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+for tool in curl wrk; do
+	command -v $tool >/dev/null || { echo "$tool is required" >&2; exit 1; }
+done
+[ -f "$JAR" ] || { echo "$JAR not found, build it with 'mvn package'" >&2; exit 1; }
+
+start_app() {
+	"$JAVA" -jar "$JAR" --spring.profiles.active=test --server.port="$PORT" \
+		--server.virtual-threads="$1" --server.tomcat.max-threads="$TOMCAT_THREADS" \
+		--server.tomcat.max-connections=10000 \
+		--spring.datasource.hikari.maximum-pool-size="$DB_CONNECTIONS" \
+		--user-cache.max-size=0 --security.login-rate.ip.burst=1000000 \
+		> "$WORK_DIR/app-$1.log" 2>&1 &
+	APP_PID=$!
+
+	for _ in $(seq 120); do
+		curl -sf "$BASE_URL/metrics" >/dev/null && return
+		sleep 1
+	done
+	echo "Application didn't start, see log:" >&2
+	tail -50 "$WORK_DIR/app-$1.log" >&2
+	exit 1
+}
+
+stop_app() {
+	kill "$APP_PID"
+	wait "$APP_PID" 2>/dev/null || true
+	APP_PID=
+}
+
+# registers and logs in a user, sets USER_ID, COOKIE and XSRF
+login() {
+	USER_ID=$(curl -sf -H 'Content-Type: application/json' \
+		-d '{"email":"load@example.com","password":"load-test-1","firstName":"Load","lastName":"Test"}' \
+		"$BASE_URL/api/v1/users" | sed -n 's/.*"userId":\([0-9]*\).*/\1/p')
+
+	curl -sf -c "$WORK_DIR/cookies" -H 'Content-Type: application/json' \
+		-d '{"email":"load@example.com","password":"load-test-1"}' "$BASE_URL/api/v1/session" >/dev/null
+
+	local access
+	access=$(awk '$6 == "jwt-access-token" { print $7 }' "$WORK_DIR/cookies")
+	XSRF=$(awk '$6 == "xsrf-token" { print $7 }' "$WORK_DIR/cookies")
+	COOKIE="jwt-access-token=$access; xsrf-token=$XSRF"
+}
+
+printf '%-8s %8s %12s %10s %10s %10s %8s\n' mode conc req/s p50 p99 max errors
+
+for virtual in false true; do
+	mode=$([ "$virtual" = true ] && echo virtual || echo platform)
+	start_app "$virtual"
+	login
+
+	# warm-up
+	wrk -t"$WRK_THREADS" -c50 -d10s -H "Cookie: $COOKIE" -H "xsrf-token: $XSRF" \
+		"$BASE_URL/api/v1/users/$USER_ID" >/dev/null
+
+	for c in $CONCURRENCY; do
+		out=$(wrk -t"$WRK_THREADS" -c"$c" -d"$DURATION" --latency -H "Cookie: $COOKIE" \
+			-H "xsrf-token: $XSRF" "$BASE_URL/api/v1/users/$USER_ID")
+
+		rps=$(echo "$out" | awk '/^Requests\/sec/ { print $2 }')
+		p50=$(echo "$out" | awk '$1 == "50%" { print $2 }')
+		p99=$(echo "$out" | awk '$1 == "99%" { print $2 }')
+		max=$(echo "$out" | awk '$1 == "Latency" { print $4; exit }')
+		errors=$(echo "$out" | awk '/Non-2xx/ { sum += $NF }
+			/Socket errors/ { for (i = 3; i <= NF; i++) { v = $i; gsub(",", "", v); if (v ~ /^[0-9]+$/) sum += v } }
+			END { print sum + 0 }')
+
+		printf '%-8s %8s %12s %10s %10s %10s %8s\n' "$mode" "$c" "$rps" "$p50" "$p99" "$max" "$errors"
+	done
+
+	echo "# $mode: JDBC executor and database lookups"
+	curl -sf "$BASE_URL/metrics" | grep -E '^(jdbc_executor_(queue_depth|active_threads|wait_seconds_(count|sum))|user_db_lookup_seconds_(count|sum)) ' || true
+
+	stop_app
+done
@@ -20,4 +20,12 @@ public interface Constants {
 
 	public static final long REFRESH_TOKEN_TTL = 24 * 60 * 60 * 1000L;
 
+	public static final String EMAIL_REGEX = "^(.+)@(.+)$";
+
+	/**
+	 * Role of administrators, who can import and list all users. Can't be
+	 * chosen on registration.
+	 */
+	public static final int ADMIN_ROLE = 2;
+
 }
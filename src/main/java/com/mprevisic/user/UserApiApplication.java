@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Entry point of the application
@@ -14,6 +15,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 @SpringBootApplication(scanBasePackages = { "com.mprevisic.user" })
 @EnableJpaRepositories("com.mprevisic.user.repository")
 @EntityScan("com.mprevisic.user.domain")
+@EnableScheduling
 public class UserApiApplication {
 
 	public static void main(String[] args) {
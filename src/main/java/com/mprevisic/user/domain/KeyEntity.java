@@ -25,6 +25,14 @@ public class KeyEntity {
 	private String name;
 	
 	private byte[] value;
+	
+	private String kid;
+	
+	private String algorithm;
+	
+	private String keyType;
+	
+	private long created;
 
 	public long getId() {
 		return id;
@@ -50,4 +58,36 @@ public class KeyEntity {
 		this.value = value;
 	}
 
+	public String getKid() {
+		return kid;
+	}
+
+	public void setKid(String kid) {
+		this.kid = kid;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public String getKeyType() {
+		return keyType;
+	}
+
+	public void setKeyType(String keyType) {
+		this.keyType = keyType;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
 }
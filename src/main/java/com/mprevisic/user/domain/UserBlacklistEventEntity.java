@@ -0,0 +1,74 @@
+package com.mprevisic.user.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.mprevisic.user.util.BlacklistEvent;
+
+/**
+ * Change of the user blacklist, the IDs give the order in which the changes
+ * are applied by the nodes
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Entity
+@Table(name = "user_blacklist_events")
+public class UserBlacklistEventEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private long id;
+
+	private String email;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "event_type")
+	private BlacklistEvent.Type type;
+
+	@Column(name = "date_time")
+	private long dateTime;
+
+	public long getId() {
+		return id;
+	}
+
+	public UserBlacklistEventEntity setId(long id) {
+		this.id = id;
+		return this;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public UserBlacklistEventEntity setEmail(String email) {
+		this.email = email;
+		return this;
+	}
+
+	public BlacklistEvent.Type getType() {
+		return type;
+	}
+
+	public UserBlacklistEventEntity setType(BlacklistEvent.Type type) {
+		this.type = type;
+		return this;
+	}
+
+	public long getDateTime() {
+		return dateTime;
+	}
+
+	public UserBlacklistEventEntity setDateTime(long dateTime) {
+		this.dateTime = dateTime;
+		return this;
+	}
+
+}
@@ -6,6 +6,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 import com.mprevisic.user.dto.UserDto;
 
@@ -40,6 +41,18 @@ public class UserEntity {
 	
 	private Integer role;
 
+	/**
+	 * Incremented on every update, for optimistic locking
+	 */
+	@Version
+	private long version;
+
+	/**
+	 * Time of the last password change in milliseconds, 0 if the password
+	 * wasn't changed since registration
+	 */
+	private long passwordChanged;
+
 	public long getId() {
 		return id;
 	}
@@ -120,6 +133,24 @@ public class UserEntity {
 		this.role = role;
 		return this;
 	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public UserEntity setVersion(long version) {
+		this.version = version;
+		return this;
+	}
+
+	public long getPasswordChanged() {
+		return passwordChanged;
+	}
+
+	public UserEntity setPasswordChanged(long passwordChanged) {
+		this.passwordChanged = passwordChanged;
+		return this;
+	}
 	
 	public UserDto toDto() {
 		UserDto dto = new UserDto().setUserId(id).setEmail(email).setFirstName(firstName)
@@ -0,0 +1,77 @@
+package com.mprevisic.user.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a user import
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class ImportResult {
+
+	private int imported;
+
+	private final List<RowError> errors = new ArrayList<>();
+
+	/**
+	 * Number of imported users
+	 */
+	public int getImported() {
+		return imported;
+	}
+
+	public ImportResult addImported(int count) {
+		imported += count;
+		return this;
+	}
+
+	/**
+	 * Rows which weren't imported
+	 */
+	public List<RowError> getErrors() {
+		return errors;
+	}
+
+	public ImportResult addError(int row, String email, String message) {
+		errors.add(new RowError(row, email, message));
+		return this;
+	}
+
+	/**
+	 * Row which wasn't imported
+	 */
+	public static class RowError {
+
+		private final int row;
+
+		private final String email;
+
+		private final String message;
+
+		public RowError(int row, String email, String message) {
+			this.row = row;
+			this.email = email;
+			this.message = message;
+		}
+
+		/**
+		 * Number of the row in the import, starting with 1 (not counting the
+		 * CSV header)
+		 */
+		public int getRow() {
+			return row;
+		}
+
+		public String getEmail() {
+			return email;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+	}
+
+}
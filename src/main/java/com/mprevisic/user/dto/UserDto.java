@@ -1,5 +1,6 @@
 package com.mprevisic.user.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonProperty.Access;
 
@@ -30,6 +31,12 @@ public class UserDto {
 	
 	private Integer role;
 
+	/**
+	 * Version of the stored user, sent as entity tag instead of in the body
+	 */
+	@JsonIgnore
+	private long version;
+
 	public long getUserId() {
 		return userId;
 	}
@@ -111,4 +118,13 @@ public class UserDto {
 		return this;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
+	public UserDto setVersion(long version) {
+		this.version = version;
+		return this;
+	}
+
 }
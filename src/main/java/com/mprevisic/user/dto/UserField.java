@@ -0,0 +1,108 @@
+package com.mprevisic.user.dto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Properties of a user which can be selected when listing or exporting
+ * users, with the database column they are read from. The password is not
+ * one of them.
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public enum UserField {
+
+	USER_ID("userId", "id"),
+	EMAIL("email", "email"),
+	FIRST_NAME("firstName", "first_name"),
+	LAST_NAME("lastName", "last_name"),
+	TITLE("title", "title"),
+	PHONE_CODE("phoneCode", "phone_code"),
+	PHONE_NUMBER("phoneNumber", "phone_number"),
+	ROLE("role", "role");
+
+	/**
+	 * All fields in the order of {@link UserDto}
+	 */
+	public static final List<UserField> ALL = Collections.unmodifiableList(Arrays.asList(values()));
+
+	private final String property;
+
+	private final String column;
+
+	private UserField(String property, String column) {
+		this.property = property;
+		this.column = column;
+	}
+
+	/**
+	 * Name of the property in JSON and of the column in CSV
+	 */
+	public String getProperty() {
+		return property;
+	}
+
+	/**
+	 * Name of the database column
+	 */
+	public String getColumn() {
+		return column;
+	}
+
+	/**
+	 * Reads the value of the field from the current row
+	 * 
+	 * @param rs
+	 *            result set positioned on a user
+	 * @param index
+	 *            index of the column in the result set
+	 * @return the value, either a Long, String or Integer, or null
+	 */
+	public Object read(ResultSet rs, int index) throws SQLException {
+		switch (this) {
+		case USER_ID:
+			return rs.getLong(index);
+		case ROLE:
+			int role = rs.getInt(index);
+			return rs.wasNull() ? null : role;
+		default:
+			return rs.getString(index);
+		}
+	}
+
+	/**
+	 * Parses a comma-separated list of property names
+	 * 
+	 * @param fields
+	 *            property names, null or empty for all fields
+	 * @return the fields in the given order
+	 * @throws IllegalArgumentException
+	 *             if a property is unknown
+	 */
+	public static List<UserField> parse(String fields) {
+		if (fields == null || fields.trim().isEmpty()) {
+			return ALL;
+		}
+
+		List<UserField> result = new ArrayList<>();
+		for (String name : fields.split(",")) {
+			result.add(ofProperty(name.trim()));
+		}
+		return result;
+	}
+
+	private static UserField ofProperty(String property) {
+		for (UserField field : values()) {
+			if (field.property.equals(property)) {
+				return field;
+			}
+		}
+		throw new IllegalArgumentException("Unknown field '" + property + "'!");
+	}
+
+}
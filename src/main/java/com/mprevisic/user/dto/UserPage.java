@@ -0,0 +1,38 @@
+package com.mprevisic.user.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page of users ordered by ID
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class UserPage {
+
+	private final List<Map<String, Object>> users;
+
+	private final Long nextAfterId;
+
+	public UserPage(List<Map<String, Object>> users, Long nextAfterId) {
+		this.users = users;
+		this.nextAfterId = nextAfterId;
+	}
+
+	/**
+	 * Users with the selected fields
+	 */
+	public List<Map<String, Object>> getUsers() {
+		return users;
+	}
+
+	/**
+	 * Value of the "afterId" parameter for the next page, null if this is
+	 * the last page
+	 */
+	public Long getNextAfterId() {
+		return nextAfterId;
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.mprevisic.user.dto;
+
+import com.mprevisic.user.domain.UserEntity;
+
+/**
+ * Read-only view of a user without the password hash. Read directly from the
+ * database with a constructor expression, so reading a user doesn't create a
+ * managed entity and doesn't load the password column. Immutable, so it can
+ * be shared between threads.
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public final class UserView {
+
+	private final long id;
+
+	private final String email;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String title;
+
+	private final String phoneCode;
+
+	private final String phoneNumber;
+
+	private final Integer role;
+
+	private final long version;
+
+	private final long passwordChanged;
+
+	public UserView(long id, String email, String firstName, String lastName, String title, String phoneCode,
+			String phoneNumber, Integer role, long version, long passwordChanged) {
+		this.id = id;
+		this.email = email;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.title = title;
+		this.phoneCode = phoneCode;
+		this.phoneNumber = phoneNumber;
+		this.role = role;
+		this.version = version;
+		this.passwordChanged = passwordChanged;
+	}
+
+	/**
+	 * Creates a view of the entity
+	 */
+	public static UserView of(UserEntity user) {
+		return new UserView(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), user.getTitle(),
+				user.getPhoneCode(), user.getPhoneNumber(), user.getRole(), user.getVersion(),
+				user.getPasswordChanged());
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getPhoneCode() {
+		return phoneCode;
+	}
+
+	public String getPhoneNumber() {
+		return phoneNumber;
+	}
+
+	public Integer getRole() {
+		return role;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the time of the last password change in milliseconds, which
+	 * isn't part of the DTO
+	 */
+	public long getPasswordChanged() {
+		return passwordChanged;
+	}
+
+	/**
+	 * Creates a DTO of the user, without password
+	 */
+	public UserDto toDto() {
+		return new UserDto().setUserId(id).setEmail(email).setFirstName(firstName).setLastName(lastName)
+				.setPhoneCode(phoneCode).setPhoneNumber(phoneNumber).setRole(role).setTitle(title)
+				.setVersion(version);
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.mprevisic.user.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter, cheap to update from many threads
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class Counter extends Metric {
+
+	private final LongAdder count = new LongAdder();
+
+	Counter(String help) {
+		super(help);
+	}
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long value) {
+		count.add(value);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+
+	@Override
+	String getType() {
+		return "counter";
+	}
+
+	@Override
+	void write(String name, StringBuilder out) {
+		writeSample(out, name, get());
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.mprevisic.user.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Counter whose value is counted by another component and read on export
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+class FunctionCounter extends Metric {
+
+	private final LongSupplier value;
+
+	FunctionCounter(String help, LongSupplier value) {
+		super(help);
+		this.value = value;
+	}
+
+	@Override
+	String getType() {
+		return "counter";
+	}
+
+	@Override
+	void write(String name, StringBuilder out) {
+		writeSample(out, name, value.getAsLong());
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.mprevisic.user.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Metric whose current value is read on export
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+class Gauge extends Metric {
+
+	private final DoubleSupplier value;
+
+	Gauge(String help, DoubleSupplier value) {
+		super(help);
+		this.value = value;
+	}
+
+	@Override
+	String getType() {
+		return "gauge";
+	}
+
+	@Override
+	void write(String name, StringBuilder out) {
+		writeSample(out, name, value.getAsDouble());
+	}
+
+}
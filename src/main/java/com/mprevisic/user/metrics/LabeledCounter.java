@@ -0,0 +1,54 @@
+package com.mprevisic.user.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a fixed set of values of one label, e.g. the causes of
+ * rejected requests. The values are addressed by their index, so counting
+ * doesn't allocate.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class LabeledCounter extends Metric {
+
+	private final String label;
+
+	private final String[] values;
+
+	private final LongAdder[] counts;
+
+	LabeledCounter(String help, String label, String[] values) {
+		super(help);
+		this.label = label;
+		this.values = values.clone();
+		this.counts = new LongAdder[values.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Increments the counter of the label value with given index
+	 */
+	public void increment(int index) {
+		counts[index].increment();
+	}
+
+	public long get(int index) {
+		return counts[index].sum();
+	}
+
+	@Override
+	String getType() {
+		return "counter";
+	}
+
+	@Override
+	void write(String name, StringBuilder out) {
+		for (int i = 0; i < values.length; i++) {
+			writeSample(out, name + '{' + label + "=\"" + values[i] + "\"}", get(i));
+		}
+	}
+
+}
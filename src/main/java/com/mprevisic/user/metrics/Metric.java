@@ -0,0 +1,41 @@
+package com.mprevisic.user.metrics;
+
+/**
+ * Metric which can be exported in the Prometheus text format
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+abstract class Metric {
+
+	private final String help;
+
+	protected Metric(String help) {
+		this.help = help;
+	}
+
+	String getHelp() {
+		return help;
+	}
+
+	/**
+	 * Returns the Prometheus metric type (counter, gauge, summary, ...)
+	 */
+	abstract String getType();
+
+	/**
+	 * Appends the samples of the metric to the output
+	 */
+	abstract void write(String name, StringBuilder out);
+
+	static void writeSample(StringBuilder out, String name, double value) {
+		out.append(name).append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.mprevisic.user.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the application metrics. Metrics are registered once by the
+ * components which update them and exported in the Prometheus text format.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class MetricsRegistry {
+
+	private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Returns the counter with given name, registers it if it doesn't exist
+	 */
+	public Counter counter(String name, String help) {
+		return register(name, new Counter(help), Counter.class);
+	}
+
+	/**
+	 * Returns the counter with given name and one counter per label value,
+	 * registers it if it doesn't exist
+	 */
+	public LabeledCounter counter(String name, String help, String label, String... values) {
+		return register(name, new LabeledCounter(help, label, values), LabeledCounter.class);
+	}
+
+	/**
+	 * Registers a counter which reads its value from the given supplier, for
+	 * counts kept by other components. A counter registered before with the
+	 * same name is replaced.
+	 */
+	public void counter(String name, String help, LongSupplier value) {
+		metrics.put(name, new FunctionCounter(help, value));
+	}
+
+	/**
+	 * Returns the timer with given name, registers it if it doesn't exist
+	 */
+	public Timer timer(String name, String help) {
+		return register(name, new Timer(help), Timer.class);
+	}
+
+	/**
+	 * Registers a gauge which reads its value from the given supplier. A gauge
+	 * registered before with the same name is replaced.
+	 */
+	public void gauge(String name, String help, DoubleSupplier value) {
+		metrics.put(name, new Gauge(help, value));
+	}
+
+	private <T extends Metric> T register(String name, T metric, Class<T> type) {
+		Metric existing = metrics.putIfAbsent(name, metric);
+
+		if (existing == null) {
+			return metric;
+		}
+
+		if (!type.isInstance(existing)) {
+			throw new IllegalArgumentException("Metric '" + name + "' is already registered as " + existing.getType());
+		}
+
+		return type.cast(existing);
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format
+	 */
+	public String export() {
+		StringBuilder out = new StringBuilder(1024);
+
+		metrics.forEach((name, metric) -> {
+			out.append("# HELP ").append(name).append(' ').append(metric.getHelp()).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(metric.getType()).append('\n');
+			metric.write(name, out);
+		});
+
+		return out.toString();
+	}
+
+}
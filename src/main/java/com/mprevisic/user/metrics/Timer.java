@@ -0,0 +1,116 @@
+package com.mprevisic.user.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the number and duration of events in a log-linear histogram (as in
+ * HdrHistogram): each power of two between {@value #MIN_NANOS} ns and about
+ * 17 seconds is split into {@value #SUB_BUCKETS} buckets of equal width, so
+ * the relative error of each bucket stays below 25%. Recording an event
+ * doesn't allocate. Exported as a Prometheus histogram in seconds.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class Timer extends Metric {
+
+	private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+	/**
+	 * Lower bound of the first power of two, shorter events are counted in
+	 * its first bucket
+	 */
+	static final long MIN_NANOS = 1L << 10;
+
+	static final int SUB_BUCKETS = 4;
+
+	private static final int SUB_BUCKET_BITS = 2;
+
+	private static final int MIN_EXPONENT = 10;
+
+	private static final int MAX_EXPONENT = 34;
+
+	/**
+	 * Number of buckets with an upper bound, longer events are only counted
+	 * in the +Inf bucket
+	 */
+	static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS;
+
+	private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	Timer(String help) {
+		super(help);
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records an event with the given duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts[bucket(nanos)].increment();
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * Returns the index of the bucket of the duration
+	 */
+	static int bucket(long nanos) {
+		if (nanos < MIN_NANOS) {
+			return 0;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKETS;
+		}
+
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the exclusive upper bound of the bucket in nanoseconds
+	 */
+	static long upperBound(int bucket) {
+		int exponent = MIN_EXPONENT + bucket / SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (1L << exponent) + (bucket % SUB_BUCKETS + 1) * width;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder c : counts) {
+			count += c.sum();
+		}
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	@Override
+	String getType() {
+		return "histogram";
+	}
+
+	@Override
+	void write(String name, StringBuilder out) {
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += counts[i].sum();
+			out.append(name).append("_bucket{le=\"").append(upperBound(i) / NANOS_PER_SECOND).append("\"} ")
+					.append(cumulative).append('\n');
+		}
+		cumulative += counts[BUCKETS].sum();
+		out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+
+		writeSample(out, name + "_count", cumulative);
+		writeSample(out, name + "_sum", getTotalNanos() / NANOS_PER_SECOND);
+	}
+
+}
@@ -26,4 +26,11 @@ public interface KeyRepository extends JpaRepository<KeyEntity, Long> {
 	@Transactional(readOnly=true)
 	KeyEntity findByName(String name);
 
+	/**
+	 * Deletes private and public key with given key ID
+	 * 
+	 * @param kid key ID
+	 */
+	void deleteByKid(String kid);
+
 }
@@ -0,0 +1,150 @@
+package com.mprevisic.user.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository of opaque refresh tokens. Tokens are only stored and looked
+ * up by their hash, every lookup is a single primary key access.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Repository
+@Transactional(propagation=Propagation.REQUIRED)
+public class RefreshTokenRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public RefreshTokenRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Stores a new unused token
+	 *
+	 * @param tokenHash
+	 *            hash of the token
+	 * @param family
+	 *            family of the token, all tokens rotated from the token
+	 *            issued on login share it
+	 * @param userId
+	 *            ID of the user holding the token
+	 * @param expires
+	 *            expiration time in milliseconds
+	 */
+	public void insert(String tokenHash, String family, long userId, long expires) {
+		jdbcTemplate.update("INSERT INTO refresh_tokens (token_hash, family, user_id, expires) VALUES (?, ?, ?, ?)",
+				tokenHash, family, userId, expires);
+	}
+
+	/**
+	 * Stores a token which is already used, so that presenting it is
+	 * detected as reuse
+	 *
+	 * @throws org.springframework.dao.DuplicateKeyException
+	 *             if the token is already stored
+	 */
+	public void insertUsed(String tokenHash, String family, long userId, long expires) {
+		jdbcTemplate.update(
+				"INSERT INTO refresh_tokens (token_hash, family, user_id, expires, used) VALUES (?, ?, ?, ?, TRUE)",
+				tokenHash, family, userId, expires);
+	}
+
+	/**
+	 * Returns the token with the given hash
+	 */
+	@Transactional(readOnly=true)
+	public Optional<StoredToken> find(String tokenHash) {
+		List<StoredToken> tokens = jdbcTemplate.query(
+				"SELECT family, user_id, expires, used FROM refresh_tokens WHERE token_hash = ?",
+				(rs, row) -> new StoredToken(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getBoolean(4)),
+				tokenHash);
+		return tokens.isEmpty() ? Optional.empty() : Optional.of(tokens.get(0));
+	}
+
+	/**
+	 * Marks the token as used, unless it was already used concurrently
+	 *
+	 * @return true if the token was marked by this call
+	 */
+	public boolean markUsed(String tokenHash) {
+		return jdbcTemplate.update("UPDATE refresh_tokens SET used = TRUE WHERE token_hash = ? AND used = FALSE",
+				tokenHash) == 1;
+	}
+
+	/**
+	 * Deletes all tokens of the family
+	 *
+	 * @return number of deleted tokens
+	 */
+	public int deleteFamily(String family) {
+		return jdbcTemplate.update("DELETE FROM refresh_tokens WHERE family = ?", family);
+	}
+
+	/**
+	 * Deletes all tokens of the user
+	 *
+	 * @return number of deleted tokens
+	 */
+	public int deleteByUser(long userId) {
+		return jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id = ?", userId);
+	}
+
+	/**
+	 * Deletes all tokens which expired before the given time
+	 *
+	 * @param time
+	 *            time in milliseconds
+	 * @return number of deleted tokens
+	 */
+	public int deleteExpiredBefore(long time) {
+		return jdbcTemplate.update("DELETE FROM refresh_tokens WHERE expires < ?", time);
+	}
+
+	/**
+	 * Stored refresh token
+	 */
+	public static final class StoredToken {
+
+		private final String family;
+
+		private final long userId;
+
+		private final long expires;
+
+		private final boolean used;
+
+		public StoredToken(String family, long userId, long expires, boolean used) {
+			this.family = family;
+			this.userId = userId;
+			this.expires = expires;
+			this.used = used;
+		}
+
+		public String getFamily() {
+			return family;
+		}
+
+		public long getUserId() {
+			return userId;
+		}
+
+		public long getExpires() {
+			return expires;
+		}
+
+		public boolean isUsed() {
+			return used;
+		}
+
+	}
+
+}
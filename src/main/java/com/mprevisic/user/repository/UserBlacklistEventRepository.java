@@ -0,0 +1,50 @@
+package com.mprevisic.user.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mprevisic.user.domain.UserBlacklistEventEntity;
+
+/**
+ * JPA repository for user blacklist event entity
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Repository
+@Transactional(propagation=Propagation.REQUIRED)
+public interface UserBlacklistEventRepository extends JpaRepository<UserBlacklistEventEntity, Long> {
+
+	/**
+	 * Finds the next events after the given event ID
+	 * 
+	 * @param id ID of the last event already read
+	 * @return at most 500 events ordered by ID
+	 */
+	@Transactional(readOnly=true)
+	List<UserBlacklistEventEntity> findTop500ByIdGreaterThanOrderByIdAsc(long id);
+
+	/**
+	 * Returns the ID of the latest event or 0 if there are no events
+	 */
+	@Transactional(readOnly=true)
+	@Query("select coalesce(max(e.id), 0) from UserBlacklistEventEntity e")
+	long findMaxId();
+
+	/**
+	 * Deletes events created before the given time
+	 * 
+	 * @param dateTime time in milliseconds
+	 * @return number of deleted events
+	 */
+	@Modifying
+	@Query("delete from UserBlacklistEventEntity e where e.dateTime < ?1")
+	int deleteCreatedBefore(long dateTime);
+
+}
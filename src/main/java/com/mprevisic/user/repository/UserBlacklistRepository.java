@@ -1,7 +1,8 @@
 package com.mprevisic.user.repository;
 
-
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,4 +24,25 @@ public interface UserBlacklistRepository extends JpaRepository<UserBlacklistEnti
 	 * @param email e-mail address of the user removed from the blacklist
 	 */
 	void deleteByEmail(String email);
+
+	/**
+	 * Sets the time the user was added to the blacklist
+	 * 
+	 * @param email e-mail address of the user
+	 * @param dateTime time in milliseconds
+	 * @return number of updated users, 0 if the user isn't blacklisted
+	 */
+	@Modifying
+	@Query("update UserBlacklistEntity b set b.dateTime = ?2 where b.email = ?1")
+	int updateDateTime(String email, long dateTime);
+
+	/**
+	 * Deletes all users added to the blacklist before the given time
+	 * 
+	 * @param dateTime time in milliseconds
+	 * @return number of deleted users
+	 */
+	@Modifying
+	@Query("delete from UserBlacklistEntity b where b.dateTime < ?1")
+	int deleteAddedBefore(long dateTime);
 }
@@ -0,0 +1,175 @@
+package com.mprevisic.user.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserField;
+
+/**
+ * JDBC repository for inserting and reading many users at once. The users are
+ * inserted with JDBC batches instead of through JPA, where each insert of an
+ * entity with a database-generated ID is a separate round-trip. Users are
+ * read row by row without creating entities and updated without reading
+ * them first.
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Repository
+@Transactional(propagation=Propagation.REQUIRED)
+public class UserJdbcRepository {
+
+	private static final String INSERT_USER = "INSERT INTO users "
+			+ "(email, password, first_name, last_name, title, phone_code, phone_number, role) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JdbcTemplate streamingJdbcTemplate;
+
+	/**
+	 * @param fetchSize
+	 *            number of rows fetched at once when reading users
+	 */
+	@Autowired
+	public UserJdbcRepository(JdbcTemplate jdbcTemplate, @Value("${user-export.fetch-size:1000}") int fetchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+		this.streamingJdbcTemplate.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * Inserts all users in a single batch and transaction
+	 * 
+	 * @param users new users with encoded passwords
+	 * @throws org.springframework.dao.DataIntegrityViolationException
+	 *             if one of the e-mail addresses is already used, no user is
+	 *             inserted in this case
+	 */
+	public void insertAll(List<UserEntity> users) {
+		jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), this::setValues);
+	}
+
+	/**
+	 * Inserts a single user
+	 * 
+	 * @param user new user with encoded password
+	 * @throws org.springframework.dao.DataIntegrityViolationException
+	 *             if the e-mail address is already used
+	 */
+	public void insert(UserEntity user) {
+		jdbcTemplate.update(INSERT_USER, ps -> setValues(ps, user));
+	}
+
+	/**
+	 * Updates only the given columns of a user, if the user still has the
+	 * expected version. The version is incremented.
+	 * 
+	 * @param id
+	 *            ID of the user
+	 * @param version
+	 *            version the changes are based on
+	 * @param columns
+	 *            new values by column name
+	 * @return true if the user was updated, false if it doesn't exist or has
+	 *         another version
+	 */
+	public boolean update(long id, long version, Map<String, Object> columns) {
+		StringBuilder sql = new StringBuilder("UPDATE users SET ");
+		List<Object> args = new ArrayList<>(columns.size() + 2);
+		columns.forEach((column, value) -> {
+			sql.append(column).append(" = ?, ");
+			args.add(value);
+		});
+		sql.append("version = version + 1 WHERE id = ? AND version = ?");
+		args.add(id);
+		args.add(version);
+
+		return jdbcTemplate.update(sql.toString(), args.toArray()) == 1;
+	}
+
+	/**
+	 * Reads users ordered by ID with a forward-only cursor and passes each
+	 * one to the handler while reading, so that no more than the fetched
+	 * rows are held in memory
+	 * 
+	 * @param fields
+	 *            fields to read
+	 * @param afterId
+	 *            only users with a greater ID are read
+	 * @param limit
+	 *            maximum number of users, 0 for all
+	 * @param handler
+	 *            handler called for each user
+	 */
+	@Transactional(readOnly=true)
+	public void forEachUser(List<UserField> fields, long afterId, int limit, UserRowHandler handler) {
+		StringBuilder sql = new StringBuilder("SELECT id");
+		fields.forEach(f -> sql.append(", ").append(f.getColumn()));
+		sql.append(" FROM users WHERE id > ? ORDER BY id");
+
+		Object[] args;
+		if (limit > 0) {
+			sql.append(" LIMIT ?");
+			args = new Object[] { afterId, limit };
+		} else {
+			args = new Object[] { afterId };
+		}
+
+		Object[] values = new Object[fields.size()];
+		streamingJdbcTemplate.query(sql.toString(), args, (RowCallbackHandler) rs -> {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = fields.get(i).read(rs, i + 2);
+			}
+			handler.handle(rs.getLong(1), values);
+		});
+	}
+
+	/**
+	 * Handler for users read by {@link UserJdbcRepository#forEachUser}
+	 */
+	@FunctionalInterface
+	public interface UserRowHandler {
+
+		/**
+		 * Handles a user
+		 * 
+		 * @param id
+		 *            ID of the user
+		 * @param values
+		 *            values of the selected fields, the array is reused for
+		 *            the next user
+		 */
+		void handle(long id, Object[] values) throws SQLException;
+
+	}
+
+	private void setValues(PreparedStatement ps, UserEntity user) throws SQLException {
+		ps.setString(1, user.getEmail());
+		ps.setString(2, user.getPassword());
+		ps.setString(3, user.getFirstName());
+		ps.setString(4, user.getLastName());
+		ps.setString(5, user.getTitle());
+		ps.setString(6, user.getPhoneCode());
+		ps.setString(7, user.getPhoneNumber());
+		if (user.getRole() != null) {
+			ps.setInt(8, user.getRole());
+		} else {
+			ps.setNull(8, Types.SMALLINT);
+		}
+	}
+
+}
@@ -1,13 +1,19 @@
 package com.mprevisic.user.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserView;
 
 /**
  * JPA repository for user entity
@@ -18,9 +24,16 @@ import com.mprevisic.user.domain.UserEntity;
 @Repository
 @Transactional(propagation=Propagation.REQUIRED)
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
+
+	/**
+	 * Constructor expression creating a {@link UserView} of the user "u"
+	 */
+	String VIEW = "com.mprevisic.user.dto.UserView(u.id, u.email, u.firstName, u.lastName, u.title, u.phoneCode, "
+			+ "u.phoneNumber, u.role, u.version, u.passwordChanged)";
 	
 	/**
-	 * Finds user with given e-mail address
+	 * Finds user with given e-mail address, including the password hash. Only
+	 * used for authentication, other lookups use {@link #findViewByEmail}.
 	 * 
 	 * @param email e-mail of the user
 	 * @return user with given e-mail address
@@ -28,4 +41,61 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
 	@Transactional(readOnly=true)
 	Optional<UserEntity> findByEmail(String email);
 
+	/**
+	 * Finds the view of the user with given ID, without password
+	 * 
+	 * @param id ID of the user
+	 * @return user with given ID
+	 */
+	@Transactional(readOnly=true)
+	@Query("select new " + VIEW + " from UserEntity u where u.id = ?1")
+	Optional<UserView> findViewById(long id);
+
+	/**
+	 * Finds the view of the user with given e-mail address, without password
+	 * 
+	 * @param email e-mail of the user
+	 * @return user with given e-mail address
+	 */
+	@Transactional(readOnly=true)
+	@Query("select new " + VIEW + " from UserEntity u where u.email = ?1")
+	Optional<UserView> findViewByEmail(String email);
+
+	/**
+	 * Finds which of the given e-mail addresses are already used
+	 * 
+	 * @param emails e-mail addresses to check
+	 * @return e-mail addresses of existing users
+	 */
+	@Transactional(readOnly=true)
+	@Query("select u.email from UserEntity u where u.email in ?1")
+	List<String> findExistingEmails(Collection<String> emails);
+
+	/**
+	 * Finds users whose e-mail address, first name, last name or phone number
+	 * starts with the given prefix. Whether the search is case-sensitive
+	 * depends on the collation of the database.
+	 * 
+	 * @param pattern LIKE pattern of the prefix (ending with '%', with '!' as escape character)
+	 * @param pageable maximum number of users
+	 * @return matching users ordered by ID
+	 */
+	@Transactional(readOnly=true)
+	@Query("select new " + VIEW + " from UserEntity u where u.email like ?1 escape '!' or u.lastName like ?1 escape '!' "
+			+ "or u.firstName like ?1 escape '!' or u.phoneNumber like ?1 escape '!' order by u.id")
+	List<UserView> search(String pattern, Pageable pageable);
+
+	/**
+	 * Replaces the password hash of a user if it wasn't changed in the
+	 * meantime
+	 * 
+	 * @param id ID of the user
+	 * @param newPassword new password hash
+	 * @param oldPassword password hash which is replaced
+	 * @return number of updated users (0 or 1)
+	 */
+	@Modifying
+	@Query("update UserEntity u set u.password = ?2 where u.id = ?1 and u.password = ?3")
+	int updatePassword(long id, String newPassword, String oldPassword);
+
 }
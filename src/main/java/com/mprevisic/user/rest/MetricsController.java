@@ -0,0 +1,28 @@
+package com.mprevisic.user.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.mprevisic.user.metrics.MetricsRegistry;
+
+/**
+ * REST API endpoint exporting the application metrics in the Prometheus text
+ * format
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@RestController
+public class MetricsController {
+
+	@Autowired
+	private MetricsRegistry metricsRegistry;
+
+	@RequestMapping(path = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8", method = RequestMethod.GET)
+	public String getMetrics() {
+		return metricsRegistry.export();
+	}
+
+}
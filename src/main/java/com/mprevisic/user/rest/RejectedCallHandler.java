@@ -0,0 +1,34 @@
+package com.mprevisic.user.rest;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Answers requests whose database calls were rejected because the queue of
+ * the {@link com.mprevisic.user.service.JdbcExecutor} was full with 503, so
+ * that clients back off instead of waiting.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@ControllerAdvice
+public class RejectedCallHandler {
+
+	@Value("${jdbc.retry-after:1}")
+	private long retryAfter;
+
+	@ExceptionHandler(RejectedExecutionException.class)
+	public ResponseEntity<Object> rejected() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+		return new ResponseEntity<>(new Message("Too many requests, please retry later!"), headers,
+				HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+}
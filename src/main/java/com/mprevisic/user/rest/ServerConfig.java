@@ -0,0 +1,70 @@
+package com.mprevisic.user.rest;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.mprevisic.user.util.VirtualThreads;
+
+/**
+ * Configuration of the embedded Tomcat. With "server.virtual-threads"
+ * enabled and Java 21 or newer, every request is handled by a new virtual
+ * thread instead of a thread of the fixed Tomcat pool
+ * ("server.tomcat.max-threads"). Blocking JDBC calls are then moved to the
+ * bounded pool of the {@link com.mprevisic.user.service.JdbcExecutor}.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Configuration
+public class ServerConfig {
+
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+	@Value("${server.virtual-threads:false}")
+	private boolean virtualThreads;
+
+	private ExecutorService requestExecutor;
+
+	@Bean
+	public EmbeddedServletContainerCustomizer requestThreadCustomizer() {
+		return container -> {
+			if (!virtualThreads || !(container instanceof TomcatEmbeddedServletContainerFactory)) {
+				return;
+			}
+
+			if (!VirtualThreads.isSupported()) {
+				LOG.warn("Virtual threads require Java 21 or newer, requests are handled by the Tomcat thread pool");
+				return;
+			}
+
+			requestExecutor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+			((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+				if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+					((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(requestExecutor);
+				}
+			});
+			LOG.info("Requests are handled by virtual threads");
+		};
+	}
+
+	/**
+	 * Tomcat doesn't shut down executors it didn't create
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (requestExecutor != null) {
+			requestExecutor.shutdown();
+		}
+	}
+
+}
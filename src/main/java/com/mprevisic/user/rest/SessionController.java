@@ -2,6 +2,7 @@ package com.mprevisic.user.rest;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -9,6 +10,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,12 +18,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.mprevisic.user.Constants;
 import com.mprevisic.user.Credentials;
 import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.security.CookieIssuer;
+import com.mprevisic.user.security.LoginRateLimiter;
+import com.mprevisic.user.service.JdbcExecutor;
+import com.mprevisic.user.service.RefreshTokenService;
 import com.mprevisic.user.service.UserService;
-import com.mprevisic.user.util.CsrfTokenUtil;
 import com.mprevisic.user.util.JwtUtil;
 
 /**
@@ -44,10 +50,19 @@ public class SessionController {
 	private JwtUtil JwtUtil;
 
 	@Autowired
-	private CsrfTokenUtil csrfUtil;
+	private CookieIssuer cookieIssuer;
 
-	@Value("server.ssl.key-store")
-	private String sslKeyStore;
+	@Autowired
+	private LoginRateLimiter loginRateLimiter;
+
+	@Autowired
+	private RefreshTokenService refreshTokens;
+
+	@Autowired
+	private JdbcExecutor jdbcExecutor;
+
+	@Value("${security.password.retry-after:1}")
+	private long retryAfter;
 	
 	@RequestMapping(value = "/session", method = RequestMethod.OPTIONS)
 	public ResponseEntity<Object> getSessionOptions(HttpServletResponse response) {
@@ -60,19 +75,75 @@ public class SessionController {
 	 * with the following cookies: - JWT refresh token - JWT access token -
 	 * Anti-CSRF token
 	 * 
-	 * Returns HTTP status 401 (Unauthorized) if authentication failed.
+	 * Returns HTTP status 401 (Unauthorized) if authentication failed, 429
+	 * (Too Many Requests) with a Retry-After header if the client IP or the
+	 * e-mail address exceeded their login rate and 503 (Service Unavailable)
+	 * with a Retry-After header if too many logins are pending. The password
+	 * is verified asynchronously, so the request thread is released in the
+	 * meantime, and the session is issued on the JDBC executor.
 	 */
 	@RequestMapping(path = "/session", consumes = "application/json", method = RequestMethod.POST)
-	public ResponseEntity<Object> login(@RequestBody Credentials credentials) {
-		boolean authenticated = userService.authenticate(credentials);
+	public DeferredResult<ResponseEntity<Object>> login(@RequestBody Credentials credentials) {
+		DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(null, serviceUnavailable());
+
+		long wait = loginRateLimiter.tryAcquire(request.getRemoteAddr(), credentials.getEmail());
+		if (wait > 0) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.RETRY_AFTER, Long.toString(wait));
+			result.setResult(new ResponseEntity<>(headers, HttpStatus.TOO_MANY_REQUESTS));
+			return result;
+		}
 
-		if (!authenticated) {
-			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+		try {
+			userService.authenticateAsync(credentials).whenComplete((user, ex) -> {
+				if (ex != null) {
+					result.setErrorResult(ex);
+				} else if (!user.isPresent()) {
+					result.setResult(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+				} else {
+					issueSession(user.get(), result);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.setResult(serviceUnavailable());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Issues the session on the JDBC executor, so that the thread of the
+	 * password verifier doesn't wait for the database
+	 */
+	private void issueSession(UserDto user, DeferredResult<ResponseEntity<Object>> result) {
+		try {
+			jdbcExecutor.execute(() -> {
+				try {
+					result.setResult(new ResponseEntity<>(issueSession(user), HttpStatus.OK));
+				} catch (RuntimeException e) {
+					result.setErrorResult(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.setResult(serviceUnavailable());
 		}
+	}
 
-		HttpHeaders headers = setCookies(credentials.getEmail(), true);
+	/**
+	 * Returns the headers setting new access and refresh tokens, the refresh
+	 * token is opaque if enabled
+	 */
+	private HttpHeaders issueSession(UserDto user) {
+		if (refreshTokens.isEnabled()) {
+			return cookieIssuer.issue(user, refreshTokens.create(user.getUserId()));
+		}
+		return cookieIssuer.issue(user, true);
+	}
 
-		return new ResponseEntity<>(headers, HttpStatus.OK);
+	private ResponseEntity<Object> serviceUnavailable() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+		return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
 	}
 	
 	@RequestMapping(value = "/token", method = RequestMethod.OPTIONS)
@@ -83,59 +154,54 @@ public class SessionController {
 
 	/**
 	 * Refreshes the JWT access token. Expects a valid refresh token provided
-	 * through a cookie.
+	 * through a cookie. An opaque refresh token is rotated, i.e. replaced by
+	 * a new one. With opaque refresh tokens enabled, JWT refresh tokens
+	 * issued before are accepted once and exchanged for an opaque one,
+	 * presenting them again revokes the opaque token family.
 	 */
 	@RequestMapping(path = "/token", consumes = "application/json", method = RequestMethod.POST)
 	public ResponseEntity<Object> refreshToken() {
 		String refToken = getRefreshToken();
-
-		Optional<String> user = JwtUtil.validateRefreshToken(refToken);
-
-		if (user.isPresent()) {
-			HttpHeaders headers = setCookies(user.get(), false);
-
-			return new ResponseEntity<>(headers, HttpStatus.OK);
+		if (refToken == null) {
+			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 		}
 
-		return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
-	}
-
-	private HttpHeaders setCookies(String user, boolean setRefreshToken) {
-		Optional<UserDto> userDto = userService.findByEmail(user);
-
-		String accessToken = JwtUtil.createAccessToken(user, userDto.get().getRole());
-		String csrfToken = csrfUtil.generateToken();
+		if (refreshTokens.isEnabled() && RefreshTokenService.isOpaque(refToken)) {
+			Optional<RefreshTokenService.Rotation> rotation = refreshTokens.rotate(refToken);
+			Optional<UserDto> user = rotation.isPresent()
+					? userService.findById(rotation.get().getUserId()) : Optional.empty();
 
-		// access token duration is 1 hour
-		long accessTokenMaxAge = Constants.ACCESS_TOKEN_TTL / 1000L;
-
-		String accessTokenCookie = Constants.JWT_ACCESS_TOKEN + "=" + accessToken + "; HttpOnly; max-age="
-				+ accessTokenMaxAge + ";";
+			if (user.isPresent()) {
+				HttpHeaders headers = cookieIssuer.issue(user.get(), rotation.get().getToken());
+				return new ResponseEntity<>(headers, HttpStatus.OK);
+			}
 
-		// set 'secure' attribute only if HTTPS is used
-		if (httpsEnabled()) {
-			accessTokenCookie += "secure; ";
+			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 		}
 
-		HttpHeaders headers = new HttpHeaders();
-		headers.add("Set-Cookie", accessTokenCookie);
-		headers.add("Set-Cookie", Constants.CSRF_TOKEN + "=" + csrfToken);
+		Optional<UserDto> user = JwtUtil.validateRefreshToken(refToken);
 
-		if (setRefreshToken) {
-			String refreshToken = JwtUtil.createRefreshToken(user, userDto.get().getRole());
-			long refTokenMaxAge = Constants.REFRESH_TOKEN_TTL / 1000L;
+		if (!user.isPresent()) {
+			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+		}
 
-			String refreshTokenCookie = Constants.JWT_REFRESH_TOKEN + "=" + refreshToken + "; HttpOnly; max-age="
-					+ refTokenMaxAge + ";";
+		if (!refreshTokens.isEnabled()) {
+			return new ResponseEntity<>(cookieIssuer.issue(user.get(), false), HttpStatus.OK);
+		}
 
-			if (httpsEnabled()) {
-				refreshTokenCookie += "secure; ";
-			}
+		Optional<String> opaqueToken;
+		try {
+			opaqueToken = refreshTokens.exchange(refToken, user.get().getUserId());
+		} catch (DuplicateKeyException e) {
+			// exchanged by a concurrent request
+			opaqueToken = Optional.empty();
+		}
 
-			headers.add("Set-Cookie", refreshTokenCookie);
+		if (opaqueToken.isPresent()) {
+			return new ResponseEntity<>(cookieIssuer.issue(user.get(), opaqueToken.get()), HttpStatus.OK);
 		}
 
-		return headers;
+		return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 	}
 
 	/**
@@ -145,6 +211,9 @@ public class SessionController {
 	 */
 	private String getRefreshToken() {
 		Cookie[] cookies = request.getCookies();
+		if (cookies == null) {
+			return null;
+		}
 
 		Optional<Cookie> cookie = Arrays.stream(cookies).filter(c -> Constants.JWT_REFRESH_TOKEN.equals(c.getName()))
 				.findFirst();
@@ -156,12 +225,4 @@ public class SessionController {
 		return null;
 	}
 
-	/**
-	 * Checks if HTTPS enabled by checking SSL config from
-	 * application.properties
-	 */
-	private boolean httpsEnabled() {
-		return sslKeyStore != null;
-	}
-
 }
@@ -1,25 +1,49 @@
 package com.mprevisic.user.rest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.Credentials;
 import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserField;
+import com.mprevisic.user.security.LoginRateLimiter;
+import com.mprevisic.user.service.JdbcExecutor;
+import com.mprevisic.user.service.UserExporter;
+import com.mprevisic.user.service.UserImporter;
 import com.mprevisic.user.service.UserService;
+import com.mprevisic.user.util.CsvUserReader;
 
 /**
  * REST API endpoint of the user management API.
@@ -33,14 +57,35 @@ public class UserController {
 	
 	private final Logger LOG = LoggerFactory.getLogger(this.getClass()); 
 
-	private static final String EMAIL_REGEX = "^(.+)@(.+)$";
+	private static final int MAX_PAGE_SIZE = 1000;
 
 	@Autowired
 	private UserService userService;
+
+	@Autowired
+	private UserImporter userImporter;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private UserExporter userExporter;
+
+	@Autowired
+	private LoginRateLimiter loginRateLimiter;
+
+	@Autowired
+	private HttpServletRequest request;
+
+	@Autowired
+	private JdbcExecutor jdbcExecutor;
+
+	@Value("${security.password.retry-after:1}")
+	private long retryAfter;
 	
 	@RequestMapping(method = RequestMethod.OPTIONS)
 	public ResponseEntity<Object> getOptions(HttpServletResponse response) {
-	    response.setHeader("Allow", "OPTIONS,POST");
+	    response.setHeader("Allow", "OPTIONS,GET,POST");
 	    return new ResponseEntity<>(HttpStatus.OK);
 	}
 	
@@ -59,7 +104,7 @@ public class UserController {
 			return new ResponseEntity<>(new Message("E-mail address is missing!"), HttpStatus.BAD_REQUEST);
 		}
 
-		if (!user.getEmail().matches(EMAIL_REGEX)) {
+		if (!user.getEmail().matches(Constants.EMAIL_REGEX)) {
 			return new ResponseEntity<>(new Message("E-mail address has invalid format!"), HttpStatus.BAD_REQUEST);
 		}
 
@@ -67,6 +112,10 @@ public class UserController {
 			return new ResponseEntity<>(new Message("Password is missing!"), HttpStatus.BAD_REQUEST);
 		}
 
+		if (user.getRole() != null && user.getRole() == Constants.ADMIN_ROLE) {
+			return new ResponseEntity<>(new Message("Administrators can't be registered!"), HttpStatus.FORBIDDEN);
+		}
+
 		Optional<UserDto> existingUser = userService.findByEmail(user.getEmail());
 
 		if (existingUser.isPresent()) {
@@ -81,6 +130,109 @@ public class UserController {
 		return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
 	}
 
+	/**
+	 * Imports users from a JSON array. The array is read element by element
+	 * while importing, up to the maximum number of rows. Only for
+	 * administrators.
+	 */
+	@RequestMapping(path = "/import", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_UTF8_VALUE, method = RequestMethod.POST)
+	public ResponseEntity<Object> importJson(HttpServletRequest request) throws IOException {
+		Iterator<UserDto> users = objectMapper.readerFor(UserDto.class).readValues(request.getInputStream());
+
+		return new ResponseEntity<>(userImporter.importUsers(users), HttpStatus.OK);
+	}
+
+	/**
+	 * Imports users from CSV with a header row naming the columns, e.g.
+	 * "email,password,firstName,lastName". Only for administrators.
+	 */
+	@RequestMapping(path = "/import", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_UTF8_VALUE,
+			method = RequestMethod.POST)
+	public ResponseEntity<Object> importCsv(HttpServletRequest request) throws IOException {
+		CsvUserReader users;
+		try {
+			users = new CsvUserReader(new BufferedReader(new InputStreamReader(request.getInputStream(),
+					request.getCharacterEncoding() != null ? request.getCharacterEncoding() : "UTF-8")));
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity<>(new Message(e.getMessage()), HttpStatus.BAD_REQUEST);
+		}
+
+		return new ResponseEntity<>(userImporter.importUsers(users), HttpStatus.OK);
+	}
+
+	/**
+	 * Returns a page of users ordered by ID. The next page is requested with
+	 * the "nextAfterId" of the returned page.
+	 */
+	@RequestMapping(produces = MediaType.APPLICATION_JSON_UTF8_VALUE, method = RequestMethod.GET)
+	public ResponseEntity<Object> listUsers(@RequestParam(name = "afterId", defaultValue = "0") long afterId,
+			@RequestParam(name = "limit", defaultValue = "100") int limit,
+			@RequestParam(name = "fields", required = false) String fields) {
+		if (limit < 1 || limit > MAX_PAGE_SIZE) {
+			return new ResponseEntity<>(new Message("Limit must be between 1 and " + MAX_PAGE_SIZE + '!'),
+					HttpStatus.BAD_REQUEST);
+		}
+
+		List<UserField> userFields;
+		try {
+			userFields = UserField.parse(fields);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity<>(new Message(e.getMessage()), HttpStatus.BAD_REQUEST);
+		}
+
+		return new ResponseEntity<>(userExporter.findPage(afterId, limit, userFields), HttpStatus.OK);
+	}
+
+	/**
+	 * Exports all users as newline-delimited JSON or CSV. The users are
+	 * written to the response while they are read from the database.
+	 */
+	@RequestMapping(path = "/export", method = RequestMethod.GET)
+	public void exportUsers(@RequestParam(name = "format", defaultValue = UserExporter.NDJSON) String format,
+			@RequestParam(name = "fields", required = false) String fields, HttpServletResponse response)
+			throws IOException {
+		List<UserField> userFields;
+		try {
+			userFields = UserField.parse(fields);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		if (UserExporter.CSV.equals(format)) {
+			response.setContentType("text/csv;charset=UTF-8");
+		} else if (UserExporter.NDJSON.equals(format)) {
+			response.setContentType("application/x-ndjson;charset=UTF-8");
+		} else {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format '" + format + "'!");
+			return;
+		}
+
+		LOG.debug("Exporting users [format=" + format + ']');
+
+		userExporter.export(userFields, format, response.getOutputStream());
+	}
+
+	/**
+	 * Searches users by the prefix of their e-mail address, first name, last
+	 * name or phone number
+	 */
+	@RequestMapping(path = "/search", produces = MediaType.APPLICATION_JSON_UTF8_VALUE, method = RequestMethod.GET)
+	public ResponseEntity<Object> searchUsers(@RequestParam(name = "q") String query,
+			@RequestParam(name = "limit", defaultValue = "20") int limit) {
+		if (query.trim().isEmpty()) {
+			return new ResponseEntity<>(new Message("Query is missing!"), HttpStatus.BAD_REQUEST);
+		}
+
+		if (limit < 1 || limit > MAX_PAGE_SIZE) {
+			return new ResponseEntity<>(new Message("Limit must be between 1 and " + MAX_PAGE_SIZE + '!'),
+					HttpStatus.BAD_REQUEST);
+		}
+
+		return new ResponseEntity<>(userService.search(query, limit), HttpStatus.OK);
+	}
+
 	/**
 	 * Returns user with given ID
 	 */
@@ -92,26 +244,143 @@ public class UserController {
 			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 		}
 
-		return new ResponseEntity<>(user.get(), HttpStatus.OK);
+		return ResponseEntity.ok().eTag(eTag(user.get())).body(user.get());
 	}
 
 	/**
-	 * Updates a user
+	 * Updates the changed properties of a user. With an If-Match header the
+	 * user is only updated if it still has the given entity tag. The
+	 * password can only be changed by the user, who has to send the current
+	 * password as "currentPassword". It is verified asynchronously like the
+	 * password of a login and counts against the login rate of the client IP
+	 * and the e-mail address. A request is rejected with status 429 and a
+	 * Retry-After header if the login rate is exceeded, and with status 503
+	 * if too many verifications or database calls are pending.
 	 */
 	@RequestMapping(path = "/{userId}", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
 			produces = MediaType.APPLICATION_JSON_UTF8_VALUE, method = RequestMethod.PATCH)
-	public ResponseEntity<Object> updateUser(@PathVariable("userId") final Long userId,
-			@RequestBody final Map<String, Object> newData) {
+	public DeferredResult<ResponseEntity<Object>> updateUser(@PathVariable("userId") final Long userId,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) final String ifMatch,
+			@RequestBody final Map<String, Object> newData, final Principal principal) {
+		DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(null, serviceUnavailable());
 		Optional<UserDto> user = userService.findById(userId);
 
 		if (!user.isPresent()) {
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			result.setResult(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+			return result;
+		}
+
+		if (ifMatch != null && !ifMatch.trim().equals("*") && !ifMatch.contains(eTag(user.get()))) {
+			result.setResult(new ResponseEntity<>(new Message("User was changed in the meantime!"),
+					HttpStatus.PRECONDITION_FAILED));
+			return result;
+		}
+
+		if (!newData.containsKey("password")) {
+			result.setResult(update(user.get(), newData));
+			return result;
+		}
+
+		if (principal == null || !user.get().getEmail().equals(principal.getName())) {
+			result.setResult(new ResponseEntity<>(new Message("Only the user can change the password!"),
+					HttpStatus.FORBIDDEN));
+			return result;
+		}
+
+		Object currentPassword = newData.get("currentPassword");
+		if (!(currentPassword instanceof String)) {
+			result.setResult(wrongPassword());
+			return result;
+		}
+
+		// guessing the current password is limited like guessing it on login
+		long wait = loginRateLimiter.tryAcquire(request.getRemoteAddr(), user.get().getEmail());
+		if (wait > 0) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.RETRY_AFTER, Long.toString(wait));
+			result.setResult(new ResponseEntity<>(headers, HttpStatus.TOO_MANY_REQUESTS));
+			return result;
+		}
+
+		Credentials credentials = new Credentials();
+		credentials.setEmail(user.get().getEmail());
+		credentials.setPassword((String) currentPassword);
+
+		try {
+			userService.authenticateAsync(credentials).whenComplete((authenticated, ex) -> {
+				try {
+					if (ex != null) {
+						result.setErrorResult(ex);
+					} else if (!authenticated.isPresent()) {
+						result.setResult(wrongPassword());
+					} else {
+						update(user.get(), newData, result);
+					}
+				} catch (RuntimeException e) {
+					result.setErrorResult(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.setResult(serviceUnavailable());
 		}
 
-		LOG.debug("Updating user " + user.get().getEmail());
-		UserDto savedUser = userService.updateUser(user.get(), newData);
+		return result;
+	}
+
+	/**
+	 * Updates the user on the JDBC executor, so that the thread of the
+	 * password verifier doesn't wait for the database
+	 */
+	private void update(UserDto user, Map<String, Object> newData, DeferredResult<ResponseEntity<Object>> result) {
+		try {
+			jdbcExecutor.execute(() -> {
+				try {
+					result.setResult(update(user, newData));
+				} catch (RuntimeException e) {
+					result.setErrorResult(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.setResult(serviceUnavailable());
+		}
+	}
+
+	private ResponseEntity<Object> update(UserDto user, Map<String, Object> newData) {
+		LOG.debug("Updating user " + user.getEmail());
 
-		return new ResponseEntity<>(savedUser, HttpStatus.OK);
+		UserDto savedUser;
+		try {
+			savedUser = userService.updateUser(user, newData);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity<>(new Message(e.getMessage()), HttpStatus.BAD_REQUEST);
+		} catch (DuplicateKeyException e) {
+			return new ResponseEntity<>(new Message("Another user already has the given e-mail address!"),
+					HttpStatus.CONFLICT);
+		} catch (DataIntegrityViolationException e) {
+			return new ResponseEntity<>(new Message("User data is invalid!"), HttpStatus.BAD_REQUEST);
+		} catch (OptimisticLockingFailureException e) {
+			return new ResponseEntity<>(new Message("User was changed in the meantime, please retry!"),
+					HttpStatus.CONFLICT);
+		}
+
+		return ResponseEntity.ok().eTag(eTag(savedUser)).body(savedUser);
+	}
+
+	private static ResponseEntity<Object> wrongPassword() {
+		return new ResponseEntity<>(new Message("Current password is wrong!"), HttpStatus.FORBIDDEN);
+	}
+
+	private ResponseEntity<Object> serviceUnavailable() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+		return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	/**
+	 * Returns the entity tag of the user, derived from its version
+	 */
+	private static String eTag(UserDto user) {
+		return "\"" + user.getVersion() + '"';
 	}
 	
 	/**
@@ -0,0 +1,24 @@
+package com.mprevisic.user.rest;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Spring MVC configuration. Paths with a suffix (e.g. "/api/v1/users.json")
+ * are not mapped to the handler of the path without suffix, so the request
+ * matchers of the security configuration see the same paths as the
+ * handlers.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Configuration
+public class WebConfig extends WebMvcConfigurerAdapter {
+
+	@Override
+	public void configurePathMatch(PathMatchConfigurer configurer) {
+		configurer.setUseSuffixPatternMatch(false);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.mprevisic.user.security;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import com.mprevisic.user.Constants;
+
+/**
+ * Values of the authentication cookies (JWT access token and CSRF token) of a
+ * request. Both values are extracted with a single scan of the Cookie header,
+ * without letting the servlet container parse all cookies into
+ * {@link Cookie} objects.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+final class AuthCookies {
+
+	private static final String COOKIE_HEADER = "Cookie";
+
+	private String accessToken;
+
+	private String csrfToken;
+
+	private AuthCookies() {
+	}
+
+	/**
+	 * Extracts the authentication cookies from the request. User agents send
+	 * all cookies in a single Cookie header (RFC 6265), if there is none the
+	 * cookies parsed by the servlet container are used.
+	 */
+	static AuthCookies of(HttpServletRequest req) {
+		String header = req.getHeader(COOKIE_HEADER);
+		if (header != null) {
+			return parse(header);
+		}
+
+		AuthCookies authCookies = new AuthCookies();
+
+		Cookie[] cookies = req.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (authCookies.accessToken == null && Constants.JWT_ACCESS_TOKEN.equals(cookie.getName())) {
+					authCookies.accessToken = cookie.getValue();
+				} else if (authCookies.csrfToken == null && Constants.CSRF_TOKEN.equals(cookie.getName())) {
+					authCookies.csrfToken = cookie.getValue();
+				}
+			}
+		}
+
+		return authCookies;
+	}
+
+	/**
+	 * Parses a Cookie header of the form "name1=value1; name2=value2". Only
+	 * the values of the authentication cookies are copied, the first
+	 * occurrence of a cookie wins.
+	 */
+	static AuthCookies parse(String header) {
+		AuthCookies authCookies = new AuthCookies();
+
+		int length = header.length();
+		int pos = 0;
+
+		while (pos < length) {
+			char c = header.charAt(pos);
+			if (c == ' ' || c == '\t' || c == ';') {
+				pos++;
+				continue;
+			}
+
+			int end = header.indexOf(';', pos);
+			if (end < 0) {
+				end = length;
+			}
+
+			int separator = header.indexOf('=', pos);
+			if (separator > pos && separator < end) {
+				int nameEnd = trimEnd(header, pos, separator);
+				int nameLength = nameEnd - pos;
+
+				if (authCookies.accessToken == null && nameLength == Constants.JWT_ACCESS_TOKEN.length()
+						&& header.regionMatches(pos, Constants.JWT_ACCESS_TOKEN, 0, nameLength)) {
+					authCookies.accessToken = value(header, separator + 1, end);
+				} else if (authCookies.csrfToken == null && nameLength == Constants.CSRF_TOKEN.length()
+						&& header.regionMatches(pos, Constants.CSRF_TOKEN, 0, nameLength)) {
+					authCookies.csrfToken = value(header, separator + 1, end);
+				}
+			}
+
+			pos = end + 1;
+		}
+
+		return authCookies;
+	}
+
+	private static String value(String header, int start, int end) {
+		while (start < end && header.charAt(start) == ' ') {
+			start++;
+		}
+		end = trimEnd(header, start, end);
+
+		// quoted values are allowed by RFC 6265
+		if (end - start >= 2 && header.charAt(start) == '"' && header.charAt(end - 1) == '"') {
+			start++;
+			end--;
+		}
+
+		return header.substring(start, end);
+	}
+
+	private static int trimEnd(String header, int start, int end) {
+		while (end > start && (header.charAt(end - 1) == ' ' || header.charAt(end - 1) == '\t')) {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the JWT access token or null if the cookie is missing
+	 */
+	String getAccessToken() {
+		return accessToken;
+	}
+
+	/**
+	 * Returns the CSRF token or null if the cookie is missing
+	 */
+	String getCsrfToken() {
+		return csrfToken;
+	}
+
+}
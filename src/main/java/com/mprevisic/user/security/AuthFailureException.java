@@ -0,0 +1,61 @@
+package com.mprevisic.user.security;
+
+import java.util.Locale;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+/**
+ * Rejection of a request because of invalid authentication data, with the
+ * cause counted in the metrics. Rejections are expected on the hot path (e.g.
+ * expired tokens), so no stack trace is recorded.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class AuthFailureException extends BadCredentialsException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Causes of rejected requests
+	 */
+	public enum Cause {
+
+		MISSING_CSRF_COOKIE,
+		INVALID_CSRF_TOKEN,
+		MISSING_ACCESS_TOKEN,
+		MALFORMED_TOKEN,
+		UNSUPPORTED_TOKEN,
+		UNKNOWN_KEY,
+		INVALID_SIGNATURE,
+		EXPIRED_TOKEN,
+		INVALID_ISSUER,
+		REVOKED_TOKEN,
+		OTHER;
+
+		/**
+		 * Value of the "cause" label in the metrics
+		 */
+		public String getLabel() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+
+	}
+
+	private final Cause cause;
+
+	public AuthFailureException(Cause cause, String message) {
+		super(message);
+		this.cause = cause;
+	}
+
+	public Cause getFailureCause() {
+		return cause;
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+}
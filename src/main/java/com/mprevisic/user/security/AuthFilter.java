@@ -1,31 +1,24 @@
 package com.mprevisic.user.security;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.util.Arrays;
-import java.util.Optional;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
-import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.mprevisic.user.Constants;
-import com.nimbusds.jwt.JWT;
-import com.nimbusds.jwt.JWTParser;
+import com.mprevisic.user.security.AuthFailureException.Cause;
 
 /**
  * Spring Security authentication filter. Validates the authentication data
- * (CSRF token and JWT access token).
+ * (CSRF token and JWT access token). Rejected requests are counted by cause.
  * 
  * @author Marko Previsic
  * @created May 22, 2017
@@ -34,8 +27,11 @@ public class AuthFilter extends OncePerRequestFilter {
 
 	private AuthenticationManager authenticationManager;
 
-	public AuthFilter(AuthenticationManager authenticationManager) {
+	private AuthMetrics metrics;
+
+	public AuthFilter(AuthenticationManager authenticationManager, AuthMetrics metrics) {
 		this.authenticationManager = authenticationManager;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -44,29 +40,32 @@ public class AuthFilter extends OncePerRequestFilter {
 	@Override
 	public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
 			throws IOException, ServletException {
-		HttpServletRequest req = (HttpServletRequest) request;
-		HttpServletResponse res = (HttpServletResponse) response;
-
 		try {
 			// options method doesn't require authentication
-			if ("OPTIONS".equals(req.getMethod())) {
+			if ("OPTIONS".equals(request.getMethod())) {
 				chain.doFilter(request, response);
 				return;
 			}
 
-			validateCrsfToken(req);
+			// both cookies are read with a single scan of the Cookie header
+			long start = System.nanoTime();
+			AuthCookies cookies = AuthCookies.of(request);
+			long cookiesRead = System.nanoTime();
+			metrics.getCookieExtraction().record(cookiesRead - start);
 
-			String jwtTCookie = getJwtCookie(req);
+			validateCrsfToken(request, cookies);
+			metrics.getCsrfCheck().record(System.nanoTime() - cookiesRead);
 
-			JWT jwt = JWTParser.parse(jwtTCookie);
-			JwtToken jwtToken = new JwtToken(jwt);
+			JwtToken jwtToken = new JwtToken(getJwtCookie(cookies));
 
 			Authentication auth = authenticationManager.authenticate(jwtToken);
 			SecurityContextHolder.getContext().setAuthentication(auth);
 
 			chain.doFilter(request, response);
-		} catch (AuthenticationException | ParseException e) {
-			res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+		} catch (AuthenticationException e) {
+			metrics.failed(e instanceof AuthFailureException ? ((AuthFailureException) e).getFailureCause()
+					: Cause.OTHER);
+			response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
 			return;
 		} finally {
 			// Clear the security context after all filters in chain have
@@ -75,42 +74,18 @@ public class AuthFilter extends OncePerRequestFilter {
 		}
 	}
 
-	private String getJwtCookie(HttpServletRequest req) {
-		Cookie[] cookies = req.getCookies();
-		if (cookies == null) {
-			throw new InsufficientAuthenticationException("JWT cookie not found");
-		}
-
-		Optional<Cookie> cookie = Arrays.stream(cookies).filter(c -> Constants.JWT_ACCESS_TOKEN.equals(c.getName()))
-				.findFirst();
-
-		if (!cookie.isPresent()) {
-			throw new InsufficientAuthenticationException("JWT cookie not found");
-		}
-
-		String jwtTCookie = cookie.get().getValue();
+	private String getJwtCookie(AuthCookies cookies) {
+		String jwtTCookie = cookies.getAccessToken();
 		if (jwtTCookie == null) {
-			throw new InsufficientAuthenticationException("JWT cookie not found");
+			throw new AuthFailureException(Cause.MISSING_ACCESS_TOKEN, "JWT cookie not found");
 		}
 		return jwtTCookie;
 	}
 
-	private String getCsrfCookie(HttpServletRequest req) {
-		Cookie[] cookies = req.getCookies();
-		if (cookies == null) {
-			throw new InsufficientAuthenticationException("CSRF cookie not found");
-		}
-
-		Optional<Cookie> cookie = Arrays.stream(cookies).filter(c -> Constants.CSRF_TOKEN.equals(c.getName()))
-				.findFirst();
-
-		if (!cookie.isPresent()) {
-			throw new InsufficientAuthenticationException("CSRF cookie not found");
-		}
-
-		String csrfCookie = cookie.get().getValue();
+	private String getCsrfCookie(AuthCookies cookies) {
+		String csrfCookie = cookies.getCsrfToken();
 		if (csrfCookie == null) {
-			throw new InsufficientAuthenticationException("CSRF cookie not found");
+			throw new AuthFailureException(Cause.MISSING_CSRF_COOKIE, "CSRF cookie not found");
 		}
 		return csrfCookie;
 	}
@@ -119,11 +94,11 @@ public class AuthFilter extends OncePerRequestFilter {
 	 * Validates CSRF token by checking if CSRF token from HTTP header equals to
 	 * the token in the CSRF cookie
 	 */
-	private void validateCrsfToken(HttpServletRequest req) {
-		String cookie = getCsrfCookie(req);
+	private void validateCrsfToken(HttpServletRequest req, AuthCookies cookies) {
+		String cookie = getCsrfCookie(cookies);
 		String csrfHeader = req.getHeader(Constants.CSRF_TOKEN);
 		if (!cookie.equals(csrfHeader)) {
-			throw new BadCredentialsException("Invalid CSRF token");
+			throw new AuthFailureException(Cause.INVALID_CSRF_TOKEN, "Invalid CSRF token");
 		}
 	}
 
@@ -0,0 +1,144 @@
+package com.mprevisic.user.security;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.util.CsrfTokenUtil;
+import com.mprevisic.user.util.JwtUtil;
+
+/**
+ * Creates the token cookies of an authenticated user. The attributes of the
+ * cookies only depend on the configuration, so they are built once at
+ * startup and each Set-Cookie header is the cookie name, the token and the
+ * precomputed attributes.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class CookieIssuer {
+
+	private final JwtUtil jwtUtil;
+
+	private final CsrfTokenUtil csrfUtil;
+
+	private final boolean secure;
+
+	private final String accessTokenAttributes;
+
+	private final String refreshTokenAttributes;
+
+	private final String csrfTokenAttributes;
+
+	/**
+	 * @param keyStore
+	 *            SSL key store of the server, cookies are only sent over HTTPS
+	 *            if it is set
+	 * @param forceSecure
+	 *            sends cookies only over HTTPS even without key store (e.g.
+	 *            if HTTPS is terminated by a proxy)
+	 * @param sameSite
+	 *            value of the SameSite attribute, empty to omit it
+	 * @param path
+	 *            path the cookies are sent to
+	 */
+	@Autowired
+	public CookieIssuer(JwtUtil jwtUtil, CsrfTokenUtil csrfUtil, @Value("${server.ssl.key-store:}") String keyStore,
+			@Value("${security.cookie.secure:false}") boolean forceSecure,
+			@Value("${security.cookie.same-site:Lax}") String sameSite,
+			@Value("${security.cookie.path:/api/v1}") String path) {
+		this.jwtUtil = jwtUtil;
+		this.csrfUtil = csrfUtil;
+		this.secure = forceSecure || (keyStore != null && !keyStore.trim().isEmpty());
+
+		this.accessTokenAttributes = attributes(Constants.ACCESS_TOKEN_TTL / 1000L, path, true, sameSite);
+		this.refreshTokenAttributes = attributes(Constants.REFRESH_TOKEN_TTL / 1000L, path, true, sameSite);
+		// the CSRF token is read by the client and lives as long as the
+		// browser session
+		this.csrfTokenAttributes = attributes(-1, path, false, sameSite);
+	}
+
+	private String attributes(long maxAge, String path, boolean httpOnly, String sameSite) {
+		StringBuilder sb = new StringBuilder(64);
+		if (maxAge >= 0) {
+			sb.append("; Max-Age=").append(maxAge);
+		}
+		sb.append("; Path=").append(path);
+		if (httpOnly) {
+			sb.append("; HttpOnly");
+		}
+		if (secure) {
+			sb.append("; Secure");
+		}
+		if (sameSite != null && !sameSite.trim().isEmpty()) {
+			sb.append("; SameSite=").append(sameSite.trim());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns true if the cookies are only sent over HTTPS
+	 */
+	public boolean isSecure() {
+		return secure;
+	}
+
+	/**
+	 * Creates new tokens for the user and returns the headers setting them
+	 *
+	 * @param user
+	 *            authenticated user
+	 * @param withRefreshToken
+	 *            if a new refresh token is issued (on login) or only a new
+	 *            access token (on refresh)
+	 */
+	public HttpHeaders issue(UserDto user, boolean withRefreshToken) {
+		String accessToken = jwtUtil.createAccessToken(user.getEmail(), user.getRole());
+		String refreshToken = withRefreshToken ? jwtUtil.createRefreshToken(user.getEmail(), user.getRole()) : null;
+		return headers(accessToken, csrfUtil.generateToken(), refreshToken);
+	}
+
+	/**
+	 * Creates a new access token for the user and returns the headers
+	 * setting it together with the given refresh token
+	 *
+	 * @param refreshToken
+	 *            refresh token issued elsewhere (e.g. an opaque token)
+	 */
+	public HttpHeaders issue(UserDto user, String refreshToken) {
+		String accessToken = jwtUtil.createAccessToken(user.getEmail(), user.getRole());
+		return headers(accessToken, csrfUtil.generateToken(), refreshToken);
+	}
+
+	/**
+	 * Returns the headers setting the given tokens
+	 *
+	 * @param refreshToken
+	 *            refresh token, null if none is issued
+	 */
+	public HttpHeaders headers(String accessToken, String csrfToken, String refreshToken) {
+		String accessCookie = cookie(Constants.JWT_ACCESS_TOKEN, accessToken, accessTokenAttributes);
+		String csrfCookie = cookie(Constants.CSRF_TOKEN, csrfToken, csrfTokenAttributes);
+
+		HttpHeaders headers = new HttpHeaders();
+		if (refreshToken == null) {
+			headers.put(HttpHeaders.SET_COOKIE, Arrays.asList(accessCookie, csrfCookie));
+		} else {
+			headers.put(HttpHeaders.SET_COOKIE, Arrays.asList(accessCookie, csrfCookie,
+					cookie(Constants.JWT_REFRESH_TOKEN, refreshToken, refreshTokenAttributes)));
+		}
+		return headers;
+	}
+
+	private static String cookie(String name, String value, String attributes) {
+		return new StringBuilder(name.length() + 1 + value.length() + attributes.length()).append(name).append('=')
+				.append(value).append(attributes).toString();
+	}
+
+}
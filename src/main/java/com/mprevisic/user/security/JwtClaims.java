@@ -0,0 +1,547 @@
+package com.mprevisic.user.security;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.mprevisic.user.Constants;
+import com.nimbusds.jose.util.JSONObjectUtils;
+
+/**
+ * Claims of a JWT token. Only the claims needed for every request (subject,
+ * expiration and issue time, issuer, role and permissions) are read from the payload,
+ * by a scanner which decodes the payload once and only creates strings for
+ * these claims. The other claims are parsed on first access. Instances are
+ * immutable and shared between requests through the verified token cache,
+ * so derived values are computed only once per token.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public final class JwtClaims implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Authority of users with the administrator role
+	 */
+	public static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+	/**
+	 * Claim with the issue time in milliseconds since the epoch. The
+	 * registered "iat" claim only has a precision of seconds, which isn't
+	 * enough to tell tokens issued before and after a revocation apart.
+	 */
+	public static final String ISSUED_AT_CLAIM = "iat_ms";
+
+	private static final byte[] BASE64URL = new byte[128];
+
+	static {
+		Arrays.fill(BASE64URL, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64URL[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private final byte[] payload;
+
+	private final String subject;
+
+	private final String issuer;
+
+	private final long expirationTime;
+
+	private final long issuedAt;
+
+	private final Integer role;
+
+	private final String permissions;
+
+	private transient volatile Map<String, Object> all;
+
+	private transient volatile Collection<? extends GrantedAuthority> authorities;
+
+	private JwtClaims(byte[] payload, String subject, String issuer, long expirationTime, long issuedAt,
+			Integer role, String permissions) {
+		this.payload = payload;
+		this.subject = subject;
+		this.issuer = issuer;
+		this.expirationTime = expirationTime;
+		this.issuedAt = issuedAt;
+		this.role = role;
+		this.permissions = permissions;
+	}
+
+	/**
+	 * Reads the claims from the payload of a serialized JWS token. The
+	 * signature is not verified.
+	 *
+	 * @throws ParseException
+	 *             if the token or its payload is malformed
+	 */
+	public static JwtClaims parse(String token) throws ParseException {
+		int first = token.indexOf('.');
+		int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+		if (second < 0) {
+			throw new ParseException("Token has no payload", 0);
+		}
+
+		byte[] payload = decode(token, first + 1, second);
+		return new Scanner(payload).claims();
+	}
+
+	/**
+	 * Decodes unpadded base64url characters of the token
+	 */
+	private static byte[] decode(String s, int start, int end) throws ParseException {
+		int length = end - start;
+		if (length % 4 == 1) {
+			throw new ParseException("Invalid base64url length", start);
+		}
+
+		byte[] out = new byte[length * 3 / 4];
+		int o = 0;
+		int bits = 0;
+		int buffer = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			int value = c < 128 ? BASE64URL[c] : -1;
+			if (value < 0) {
+				throw new ParseException("Invalid base64url character", i);
+			}
+
+			buffer = (buffer << 6) | value;
+			bits += 6;
+			if (bits >= 8) {
+				bits -= 8;
+				out[o++] = (byte) (buffer >> bits);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Returns true if the character belongs to the base64url alphabet
+	 */
+	static boolean isBase64Url(char c) {
+		return c < 128 && BASE64URL[c] >= 0;
+	}
+
+	public String getSubject() {
+		return subject;
+	}
+
+	public String getIssuer() {
+		return issuer;
+	}
+
+	/**
+	 * Returns the expiration time in milliseconds since the epoch, 0 if the
+	 * token has none
+	 */
+	public long getExpirationTime() {
+		return expirationTime;
+	}
+
+	/**
+	 * Returns the issue time in milliseconds since the epoch from the
+	 * {@link #ISSUED_AT_CLAIM} claim, 0 if the token has none
+	 */
+	public long getIssuedAt() {
+		return issuedAt;
+	}
+
+	public Integer getRole() {
+		return role;
+	}
+
+	/**
+	 * Returns the authorities from the comma-separated "permissions" claim,
+	 * and {@link #ADMIN_AUTHORITY} for the administrator role
+	 */
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		Collection<? extends GrantedAuthority> result = authorities;
+		if (result == null) {
+			boolean admin = role != null && role == Constants.ADMIN_ROLE;
+			if (permissions == null && !admin) {
+				result = AuthorityUtils.NO_AUTHORITIES;
+			} else {
+				List<GrantedAuthority> list = new ArrayList<>();
+				if (permissions != null) {
+					list.addAll(AuthorityUtils.commaSeparatedStringToAuthorityList(permissions));
+				}
+				if (admin) {
+					list.add(new SimpleGrantedAuthority(ADMIN_AUTHORITY));
+				}
+				result = Collections.unmodifiableList(list);
+			}
+			authorities = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the claim with the given name, parsing all claims on first
+	 * access
+	 */
+	public Object getClaim(String name) {
+		return toMap().get(name);
+	}
+
+	/**
+	 * Returns all claims as an unmodifiable map, parsed on first access
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> result = all;
+		if (result == null) {
+			try {
+				result = Collections
+						.unmodifiableMap(JSONObjectUtils.parseJSONObject(new String(payload, StandardCharsets.UTF_8)));
+			} catch (ParseException e) {
+				// the payload was already scanned successfully
+				throw new IllegalStateException("Claims could not be parsed", e);
+			}
+			all = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Single pass over the JSON object of the payload. Values of unknown
+	 * claims are skipped without creating objects.
+	 */
+	private static final class Scanner {
+
+		private final byte[] json;
+
+		private int pos;
+
+		private Scanner(byte[] json) {
+			this.json = json;
+		}
+
+		private JwtClaims claims() throws ParseException {
+			String subject = null;
+			String issuer = null;
+			long expirationTime = 0;
+			long issuedAt = 0;
+			Integer role = null;
+			String permissions = null;
+
+			expect('{');
+			if (peek() == '}') {
+				pos++;
+			} else {
+				while (true) {
+					expect('"');
+					int keyStart = pos;
+					skipString();
+					int keyEnd = pos - 1;
+					for (int i = keyStart; i < keyEnd; i++) {
+						if (json[i] == '\\') {
+							// would be read differently by the full parse
+							throw error("Escaped claim names are not supported");
+						}
+					}
+					expect(':');
+
+					if (isKey(keyStart, keyEnd, "sub")) {
+						subject = readStringOrNull();
+					} else if (isKey(keyStart, keyEnd, "iss")) {
+						issuer = readStringOrNull();
+					} else if (isKey(keyStart, keyEnd, "exp")) {
+						expirationTime = readNumber() * 1000L;
+					} else if (isKey(keyStart, keyEnd, ISSUED_AT_CLAIM)) {
+						issuedAt = readNumber();
+					} else if (isKey(keyStart, keyEnd, "role")) {
+						role = peek() == 'n' ? readNull() : Integer.valueOf((int) readNumber());
+					} else if (isKey(keyStart, keyEnd, "permissions")) {
+						permissions = readStringOrNull();
+					} else {
+						skipValue();
+					}
+
+					byte b = next();
+					if (b == '}') {
+						break;
+					}
+					if (b != ',') {
+						throw error("Expected ',' or '}'");
+					}
+				}
+			}
+
+			if (skipWhitespace() < json.length) {
+				throw error("Unexpected data after claims");
+			}
+
+			return new JwtClaims(json, subject, issuer, expirationTime, issuedAt, role, permissions);
+		}
+
+		/**
+		 * Compares the key without escapes with the name
+		 */
+		private boolean isKey(int start, int end, String name) {
+			if (end - start != name.length()) {
+				return false;
+			}
+			for (int i = 0; i < name.length(); i++) {
+				if (json[start + i] != name.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private String readStringOrNull() throws ParseException {
+			if (peek() == 'n') {
+				return readNull();
+			}
+			expect('"');
+
+			int start = pos;
+			boolean simple = true;
+			while (true) {
+				byte b = at(pos);
+				if (b == '"') {
+					break;
+				}
+				if (b == '\\' || b < 0) {
+					simple = false;
+					break;
+				}
+				pos++;
+			}
+
+			if (simple) {
+				pos++;
+				return new String(json, start, pos - 1 - start, StandardCharsets.US_ASCII);
+			}
+
+			pos = start;
+			return readEscapedString();
+		}
+
+		/**
+		 * Slow path for strings with escapes or non-ASCII characters
+		 */
+		private String readEscapedString() throws ParseException {
+			StringBuilder sb = new StringBuilder();
+			int run = pos;
+			while (true) {
+				byte b = at(pos);
+				if (b == '"' || b == '\\') {
+					sb.append(new String(json, run, pos - run, StandardCharsets.UTF_8));
+					pos++;
+					if (b == '"') {
+						return sb.toString();
+					}
+
+					byte e = at(pos++);
+					switch (e) {
+					case '"':
+					case '\\':
+					case '/':
+						sb.append((char) e);
+						break;
+					case 'b':
+						sb.append('\b');
+						break;
+					case 'f':
+						sb.append('\f');
+						break;
+					case 'n':
+						sb.append('\n');
+						break;
+					case 'r':
+						sb.append('\r');
+						break;
+					case 't':
+						sb.append('\t');
+						break;
+					case 'u':
+						if (pos + 4 > json.length) {
+							throw error("Invalid unicode escape");
+						}
+						try {
+							sb.append((char) Integer.parseInt(new String(json, pos, 4, StandardCharsets.US_ASCII), 16));
+						} catch (NumberFormatException ex) {
+							throw error("Invalid unicode escape");
+						}
+						pos += 4;
+						break;
+					default:
+						throw error("Invalid escape");
+					}
+					run = pos;
+				} else {
+					pos++;
+				}
+			}
+		}
+
+		private <T> T readNull() throws ParseException {
+			skipLiteral("null");
+			return null;
+		}
+
+		/**
+		 * Reads a number, fractions are truncated
+		 */
+		private long readNumber() throws ParseException {
+			skipWhitespace();
+			int start = pos;
+			boolean negative = pos < json.length && json[pos] == '-';
+			if (negative) {
+				pos++;
+			}
+
+			long value = 0;
+			int digits = 0;
+			while (pos < json.length && json[pos] >= '0' && json[pos] <= '9') {
+				if (++digits > 18) {
+					throw error("Number too large");
+				}
+				value = value * 10 + (json[pos++] - '0');
+			}
+			if (digits == 0) {
+				throw error("Expected number");
+			}
+
+			if (pos < json.length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E')) {
+				skipNumber();
+				try {
+					return (long) Double.parseDouble(new String(json, start, pos - start, StandardCharsets.US_ASCII));
+				} catch (NumberFormatException e) {
+					throw error("Invalid number");
+				}
+			}
+
+			return negative ? -value : value;
+		}
+
+		private void skipValue() throws ParseException {
+			byte b = peek();
+			if (b == '"') {
+				pos++;
+				skipString();
+			} else if (b == '{' || b == '[') {
+				skipNested();
+			} else if (b == 't') {
+				skipLiteral("true");
+			} else if (b == 'f') {
+				skipLiteral("false");
+			} else if (b == 'n') {
+				skipLiteral("null");
+			} else {
+				readNumber();
+			}
+		}
+
+		/**
+		 * Skips an object or array, only strings and brackets are inspected
+		 */
+		private void skipNested() throws ParseException {
+			int depth = 0;
+			do {
+				byte b = at(pos++);
+				if (b == '"') {
+					skipString();
+				} else if (b == '{' || b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					depth--;
+				}
+			} while (depth > 0);
+		}
+
+		/**
+		 * Skips the rest of a string after its opening quote
+		 */
+		private void skipString() throws ParseException {
+			while (true) {
+				byte b = at(pos++);
+				if (b == '"') {
+					return;
+				}
+				if (b == '\\') {
+					pos++;
+				}
+			}
+		}
+
+		private void skipNumber() {
+			while (pos < json.length) {
+				byte b = json[pos];
+				if ((b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+					pos++;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void skipLiteral(String literal) throws ParseException {
+			skipWhitespace();
+			for (int i = 0; i < literal.length(); i++) {
+				if (at(pos++) != literal.charAt(i)) {
+					throw error("Expected " + literal);
+				}
+			}
+		}
+
+		private void expect(char c) throws ParseException {
+			if (next() != c) {
+				throw error("Expected '" + c + "'");
+			}
+		}
+
+		/**
+		 * Returns the next byte which is not whitespace and moves past it
+		 */
+		private byte next() throws ParseException {
+			byte b = peek();
+			pos++;
+			return b;
+		}
+
+		/**
+		 * Returns the next byte which is not whitespace
+		 */
+		private byte peek() throws ParseException {
+			return at(skipWhitespace());
+		}
+
+		private int skipWhitespace() {
+			while (pos < json.length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n'
+					|| json[pos] == '\r')) {
+				pos++;
+			}
+			return pos;
+		}
+
+		private byte at(int i) throws ParseException {
+			if (i >= json.length) {
+				throw error("Unexpected end of claims");
+			}
+			return json[i];
+		}
+
+		private ParseException error(String message) {
+			return new ParseException(message, pos);
+		}
+
+	}
+
+}
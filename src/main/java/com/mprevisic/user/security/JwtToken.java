@@ -1,17 +1,14 @@
 package com.mprevisic.user.security;
 
-import java.text.ParseException;
 import java.util.Collection;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 
-import com.nimbusds.jwt.JWT;
-import com.nimbusds.jwt.ReadOnlyJWTClaimsSet;
-
 /**
- * JWT access token authentication object
+ * JWT access token authentication object. Holds the serialized token until
+ * the authentication provider validates it and attaches the token claims.
  * 
  * @author Marko Previsic
  * @created May 22, 2017
@@ -22,24 +19,23 @@ public class JwtToken implements Authentication {
 
 	private boolean authenticated;
 
-	private ReadOnlyJWTClaimsSet claims;
+	private final String token;
 
-	private JWT jwt;
+	private JwtClaims claims;
 
-	public JwtToken(JWT jwt) throws ParseException {
-		claims = jwt.getJWTClaimsSet();
-		this.jwt = jwt;
+	public JwtToken(String token) {
+		this.token = token;
 	}
 
 	@Override
 	public String getName() {
-		return claims.getSubject();
+		return claims != null ? claims.getSubject() : null;
 	}
 
 	@Override
 	public Collection<? extends GrantedAuthority> getAuthorities() {
-		return AuthorityUtils.commaSeparatedStringToAuthorityList(
-				(String) claims.getCustomClaim("permissions"));
+		// memoized by the claims, authorization may ask several times
+		return claims != null ? claims.getAuthorities() : AuthorityUtils.NO_AUTHORITIES;
 	}
 
 	@Override
@@ -49,20 +45,32 @@ public class JwtToken implements Authentication {
 
 	@Override
 	public Object getDetails() {
-		return claims.toJSONObject();
+		// all claims are only parsed if the details are requested
+		return claims != null ? claims.toMap() : null;
 	}
 
 	@Override
 	public Object getPrincipal() {
-		return claims.getSubject();
+		return getName();
+	}
+
+	/**
+	 * Returns the serialized JWT access token
+	 */
+	public String getToken() {
+		return token;
 	}
 
-	public JWT getJwt() {
-		return jwt;
+	public JwtClaims getClaims() {
+		return claims;
 	}
 
-	public void setJwt(JWT jwt) {
-		this.jwt = jwt;
+	/**
+	 * Attaches the claims of the validated token. The claims are shared with
+	 * the verified token cache.
+	 */
+	public void setClaims(JwtClaims claims) {
+		this.claims = claims;
 	}
 
 	@Override
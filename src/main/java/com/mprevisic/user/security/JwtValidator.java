@@ -0,0 +1,174 @@
+package com.mprevisic.user.security;
+
+import java.text.ParseException;
+import java.util.Locale;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.security.AuthFailureException.Cause;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
+
+/**
+ * Validates serialized JWT tokens in stages ordered by cost, so that garbage,
+ * expired or foreign tokens are rejected before the signature is verified:
+ * <ol>
+ * <li>structure: length, three segments, base64url characters</li>
+ * <li>header: algorithm and key ID of a known verification key</li>
+ * <li>claims: expiration time and issuer from the unverified payload</li>
+ * <li>signature</li>
+ * </ol>
+ * A token is only accepted if all stages pass, so checking the claims before
+ * the signature doesn't let forged tokens through. Rejections are counted by
+ * stage.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class JwtValidator {
+
+	/**
+	 * Maximum length of a token, browsers don't store longer cookies
+	 */
+	static final int MAX_LENGTH = 4096;
+
+	/**
+	 * Stages of the validation, in the order they are run
+	 */
+	public enum Stage {
+
+		STRUCTURE, HEADER, CLAIMS, SIGNATURE;
+
+		private final String label = name().toLowerCase(Locale.ROOT);
+
+		/**
+		 * Returns the value of the metrics label
+		 */
+		public String getLabel() {
+			return label;
+		}
+
+	}
+
+	private final KeyPairContainer keyPairContainer;
+
+	private final AuthMetrics metrics;
+
+	public JwtValidator(KeyPairContainer keyPairContainer, AuthMetrics metrics) {
+		this.keyPairContainer = keyPairContainer;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Runs all stages
+	 *
+	 * @return claims of the valid token
+	 * @throws AuthFailureException
+	 *             if the token is invalid
+	 */
+	public JwtClaims validate(String token) {
+		checkStructure(token);
+		return verify(token);
+	}
+
+	/**
+	 * Checks the structure of the token without decoding it
+	 *
+	 * @throws AuthFailureException
+	 *             if the token is malformed
+	 */
+	public void checkStructure(String token) {
+		int length = token.length();
+		if (length == 0 || length > MAX_LENGTH) {
+			throw reject(Stage.STRUCTURE, Cause.MALFORMED_TOKEN, "JWT token has invalid length");
+		}
+
+		int dots = 0;
+		int segmentStart = 0;
+		for (int i = 0; i < length; i++) {
+			char c = token.charAt(i);
+			if (c == '.') {
+				if (i == segmentStart && dots < 2) {
+					throw reject(Stage.STRUCTURE, Cause.MALFORMED_TOKEN, "JWT token has empty segment");
+				}
+				dots++;
+				segmentStart = i + 1;
+			} else if (!JwtClaims.isBase64Url(c)) {
+				throw reject(Stage.STRUCTURE, Cause.MALFORMED_TOKEN, "JWT token has invalid character");
+			}
+		}
+
+		if (dots == 4) {
+			throw reject(Stage.STRUCTURE, Cause.UNSUPPORTED_TOKEN, "Encrypted tokens are not supported");
+		}
+		if (dots != 2) {
+			throw reject(Stage.STRUCTURE, Cause.MALFORMED_TOKEN, "JWT token must have three segments");
+		}
+		if (segmentStart == length) {
+			throw reject(Stage.STRUCTURE, Cause.UNSUPPORTED_TOKEN, "Unsecured plain tokens are not supported");
+		}
+	}
+
+	/**
+	 * Runs the stages after the structure check
+	 *
+	 * @return claims of the valid token
+	 * @throws AuthFailureException
+	 *             if the token is invalid
+	 */
+	public JwtClaims verify(String token) {
+		SignedJWT jwt;
+		SigningKey key;
+		JwtClaims claims;
+		long start = System.nanoTime();
+		try {
+			try {
+				jwt = SignedJWT.parse(token);
+			} catch (ParseException e) {
+				throw reject(Stage.HEADER, Cause.MALFORMED_TOKEN, "JWT token header could not be parsed");
+			}
+
+			// the verification key is selected by the key ID and must match
+			// the algorithm from the token header
+			key = keyPairContainer.getVerificationKey(jwt.getHeader());
+			if (key == null) {
+				throw reject(Stage.HEADER, Cause.UNKNOWN_KEY, "Unknown signing key");
+			}
+
+			try {
+				claims = JwtClaims.parse(token);
+			} catch (ParseException e) {
+				throw reject(Stage.CLAIMS, Cause.MALFORMED_TOKEN, "JWT token claims could not be parsed");
+			}
+		} finally {
+			metrics.getTokenParsing().record(System.nanoTime() - start);
+		}
+
+		if (claims.getExpirationTime() < System.currentTimeMillis()) {
+			throw reject(Stage.CLAIMS, Cause.EXPIRED_TOKEN, "JWT token is expired");
+		}
+		if (!Constants.TOKEN_ISSUER.equals(claims.getIssuer())) {
+			throw reject(Stage.CLAIMS, Cause.INVALID_ISSUER, "Invalid JWT token issuer");
+		}
+
+		boolean valid;
+		start = System.nanoTime();
+		try {
+			valid = jwt.verify(key.getVerifier());
+		} catch (JOSEException e) {
+			valid = false;
+		}
+		metrics.getSignatureVerification().record(System.nanoTime() - start);
+
+		if (!valid) {
+			throw reject(Stage.SIGNATURE, Cause.INVALID_SIGNATURE, "Signature validation failed");
+		}
+
+		return claims;
+	}
+
+	private AuthFailureException reject(Stage stage, Cause cause, String message) {
+		metrics.rejected(stage);
+		return new AuthFailureException(cause, message);
+	}
+
+}
@@ -1,120 +1,286 @@
 package com.mprevisic.user.security;
 
-import java.security.KeyFactory;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.mprevisic.user.Constants;
 import com.mprevisic.user.domain.KeyEntity;
 import com.mprevisic.user.repository.KeyRepository;
+import com.nimbusds.jose.JWSHeader;
 
 /**
- * Container for RSA encryption keys used for signing the JWT token contents.
- * Generates an initial key pair and persists it in the database for further
- * usage.
- * 
+ * Container for the key pairs used for signing the JWT token contents.
+ * Generates an initial key pair for the configured signing algorithm and
+ * persists it in the database for further usage. All key pairs found in the
+ * database can be used for verifying tokens, they are selected by the key ID
+ * ("kid") from the token header.
+ *
+ * Keys are rotated without downtime: a new key pair is generated when the
+ * signing key is older than the rotation interval. Every node reloads the
+ * keys periodically, so the new key is known to all verifiers before it is
+ * used for signing (activation delay). Superseded keys are kept until all
+ * tokens signed with them have expired.
+ *
  * @author Marko Previsic
  * @created May 22, 2017
  */
 @Component
 public class KeyPairContainer {
-	
-	private final Logger LOG = LoggerFactory.getLogger(this.getClass()); 
 
-	private RSAPublicKey publicKey;
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
 
-	private RSAPrivateKey privateKey;
+	/**
+	 * Key ID of the key pair which was created before key IDs were introduced.
+	 * Tokens without a "kid" header were signed with this key pair.
+	 */
+	public static final String LEGACY_KID = "legacy";
+
+	private static final String PRIVATE_KEY_TYPE = "private";
 
-	private static final String PRIVATE_KEY_NAME = "private";
+	private static final String PUBLIC_KEY_TYPE = "public";
 
-	private static final String PUBLIC_KEY_NAME = "public";
+	private static final SecureRandom RANDOM = new SecureRandom();
 
 	private final KeyRepository keyRepo;
 
+	private final SigningAlgorithm algorithm;
+
+	private final long rotationInterval;
+
+	private final long activationDelay;
+
+	/**
+	 * Current signing key and verification keys, replaced as a whole on reload
+	 */
+	private volatile KeySet keySet;
+
 	/**
-	 * Constructs the container and initializes it. If no keys are already in
-	 * DB, generates new key pair and stores it.
+	 * Constructs the container without key rotation
+	 */
+	public KeyPairContainer(KeyRepository keyRepo, String algorithm) {
+		this(keyRepo, algorithm, 0, 0);
+	}
+
+	/**
+	 * Constructs the container and initializes it. If no keys for the
+	 * configured signing algorithm are already in DB, generates new key pair
+	 * and stores it.
+	 *
+	 * @param rotationInterval
+	 *            maximum age of the signing key in milliseconds before a new
+	 *            key pair is generated (0 disables rotation)
+	 * @param activationDelay
+	 *            time in milliseconds between generating a key pair and using
+	 *            it for signing
 	 */
 	@Autowired
-	public KeyPairContainer(KeyRepository keyRepo) {
-		LOG.info("Initializing RSA key-pair container");
-		
+	public KeyPairContainer(KeyRepository keyRepo, @Value("${security.jwt.algorithm:RS256}") String algorithm,
+			@Value("${security.keys.rotation-interval:0}") long rotationInterval,
+			@Value("${security.keys.activation-delay:120000}") long activationDelay) {
+		LOG.info("Initializing key-pair container [algorithm=" + algorithm + ']');
+
 		this.keyRepo = keyRepo;
+		this.algorithm = SigningAlgorithm.valueOf(algorithm);
+		this.rotationInterval = rotationInterval;
+		this.activationDelay = activationDelay;
+		this.keySet = new KeySet(null, Collections.emptyMap());
 
 		try {
-			KeyPair kp = getKeyPairFromDb();
+			keySet = loadKeySet(System.currentTimeMillis());
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Key-pair container could not be initialized", e);
+		}
+	}
 
-			if (kp == null) {
-				KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance("RSA");
-				keyGenerator.initialize(1024);
-				kp = keyGenerator.genKeyPair();
+	/**
+	 * Reloads the keys from DB to pick up keys generated by other nodes,
+	 * rotates the signing key if it is due and removes expired keys. If
+	 * reloading fails, the current keys stay in use.
+	 */
+	@Scheduled(initialDelayString = "${security.keys.reload-interval:60000}",
+			fixedDelayString = "${security.keys.reload-interval:60000}")
+	public void reload() {
+		try {
+			keySet = loadKeySet(System.currentTimeMillis());
+		} catch (GeneralSecurityException | DataAccessException e) {
+			LOG.error("Reloading keys failed", e);
+		}
+	}
+
+	private KeySet loadKeySet(long now) throws GeneralSecurityException {
+		List<SigningKey> keys = getKeysFromDb(keySet);
+
+		SigningKey newest = null;
+		for (SigningKey key : keys) {
+			if (key.getAlgorithm() == algorithm) {
+				newest = key;
+			}
+		}
 
-				KeyEntity privKey = new KeyEntity();
-				privKey.setName(PRIVATE_KEY_NAME);
-				privKey.setValue(kp.getPrivate().getEncoded());
+		if (newest == null || (rotationInterval > 0 && newest.getCreated() + rotationInterval <= now)) {
+			keys.add(createKey(now));
+		}
 
-				KeyEntity pubKey = new KeyEntity();
-				pubKey.setName(PUBLIC_KEY_NAME);
-				pubKey.setValue(kp.getPublic().getEncoded());
+		// the most recent activated key of the configured algorithm is used
+		// for signing, a key which is not activated yet only if there is no
+		// other one
+		SigningKey signingKey = null;
+		for (SigningKey key : keys) {
+			if (key.getAlgorithm() == algorithm
+					&& (signingKey == null || key.getCreated() + activationDelay <= now)) {
+				signingKey = key;
+			}
+		}
 
-				keyRepo.save(privKey);
-				keyRepo.save(pubKey);
+		Map<String, SigningKey> verificationKeys = new HashMap<>();
+		for (SigningKey key : keys) {
+			if (key != signingKey && isExpired(key, keys, now)) {
+				LOG.info("Removing expired key pair [kid=" + key.getKid() + ']');
+				keyRepo.deleteByKid(key.getKid());
+			} else {
+				verificationKeys.put(key.getKid(), key);
 			}
+		}
 
-			publicKey = (RSAPublicKey) kp.getPublic();
-			privateKey = (RSAPrivateKey) kp.getPrivate();
-		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-			e.printStackTrace();
+		if (signingKey != keySet.signingKey) {
+			LOG.info("Using key pair for signing [kid=" + signingKey.getKid() + ']');
 		}
+
+		return new KeySet(signingKey, Collections.unmodifiableMap(verificationKeys));
 	}
-	
+
 	/**
-	 * Returns key pair from DB (if exists)
+	 * Checks if a key can't have signed any valid token anymore, i.e. a newer
+	 * key has been activated for longer than the lifetime of a token
 	 */
-	private KeyPair getKeyPairFromDb() throws NoSuchAlgorithmException, InvalidKeySpecException {
-		KeyEntity privKey = keyRepo.findByName(PRIVATE_KEY_NAME);
-		KeyEntity pubKey = keyRepo.findByName(PUBLIC_KEY_NAME);
-
-		if (privKey == null || pubKey == null) {
-			return null;
+	private boolean isExpired(SigningKey key, List<SigningKey> keys, long now) {
+		for (SigningKey other : keys) {
+			if (other.getCreated() > key.getCreated()
+					&& other.getCreated() + activationDelay + Constants.REFRESH_TOKEN_TTL <= now) {
+				return true;
+			}
 		}
+		return false;
+	}
+
+	/**
+	 * Generates a new key pair for the configured algorithm and stores it in DB
+	 */
+	private SigningKey createKey(long now) throws GeneralSecurityException {
+		KeyPair kp = algorithm.generateKeyPair();
 
-		KeyFactory rsaKeyFac = KeyFactory.getInstance("RSA");
-		PKCS8EncodedKeySpec encodedKeySpec = new PKCS8EncodedKeySpec(privKey.getValue());
-		RSAPrivateKey privateKey = (RSAPrivateKey) rsaKeyFac.generatePrivate(encodedKeySpec);
+		// random suffix avoids clashes when several nodes generate a key at once
+		String kid = String.format("%s-%s%04x", algorithm.name().toLowerCase(), Long.toString(now, 36),
+				RANDOM.nextInt(0x10000));
 
-		X509EncodedKeySpec keySpec = new X509EncodedKeySpec(pubKey.getValue());
-		RSAPublicKey publicKey = (RSAPublicKey) rsaKeyFac.generatePublic(keySpec);
+		LOG.info("Generated new key pair [kid=" + kid + ']');
 
-		KeyPair keyPair = new KeyPair(publicKey, privateKey);
+		keyRepo.save(createEntity(kid, PRIVATE_KEY_TYPE, kp.getPrivate().getEncoded(), now));
+		keyRepo.save(createEntity(kid, PUBLIC_KEY_TYPE, kp.getPublic().getEncoded(), now));
 
-		return keyPair;
+		return new SigningKey(kid, algorithm, kp, now);
 	}
 
-	public RSAPublicKey getPublicKey() {
-		return publicKey;
+	private KeyEntity createEntity(String kid, String keyType, byte[] value, long created) {
+		KeyEntity key = new KeyEntity();
+		key.setName(kid + '.' + keyType);
+		key.setKid(kid);
+		key.setAlgorithm(algorithm.name());
+		key.setKeyType(keyType);
+		key.setValue(value);
+		key.setCreated(created);
+		return key;
 	}
 
-	public void setPublicKey(RSAPublicKey publicKey) {
-		this.publicKey = publicKey;
+	/**
+	 * Returns all key pairs from DB ordered by creation. Keys which are already
+	 * loaded are reused instead of being decoded again.
+	 */
+	private List<SigningKey> getKeysFromDb(KeySet current) throws GeneralSecurityException {
+		List<KeyEntity> entities = keyRepo.findAll(new Sort(Sort.Direction.ASC, "created", "id"));
+
+		Map<String, KeyEntity> privateKeys = new LinkedHashMap<>();
+		Map<String, KeyEntity> publicKeys = new HashMap<>();
+		for (KeyEntity entity : entities) {
+			if (PRIVATE_KEY_TYPE.equals(entity.getKeyType())) {
+				privateKeys.put(entity.getKid(), entity);
+			} else if (PUBLIC_KEY_TYPE.equals(entity.getKeyType())) {
+				publicKeys.put(entity.getKid(), entity);
+			}
+		}
+
+		List<SigningKey> keys = new ArrayList<>();
+		for (KeyEntity privKey : privateKeys.values()) {
+			KeyEntity pubKey = publicKeys.get(privKey.getKid());
+			if (pubKey == null) {
+				continue;
+			}
+
+			SigningKey key = current.verificationKeys.get(privKey.getKid());
+			if (key == null) {
+				SigningAlgorithm keyAlgorithm = SigningAlgorithm.valueOf(privKey.getAlgorithm());
+				KeyPair keyPair = keyAlgorithm.decodeKeyPair(privKey.getValue(), pubKey.getValue());
+				key = new SigningKey(privKey.getKid(), keyAlgorithm, keyPair, privKey.getCreated());
+			}
+			keys.add(key);
+		}
+
+		return keys;
 	}
 
-	public RSAPrivateKey getPrivateKey() {
-		return privateKey;
+	/**
+	 * Returns the key used for signing new tokens
+	 */
+	public SigningKey getSigningKey() {
+		return keySet.signingKey;
+	}
+
+	/**
+	 * Returns the key which should be used for verifying a token with the
+	 * given header, or null if the key ID is unknown or the key doesn't match
+	 * the algorithm of the token
+	 */
+	public SigningKey getVerificationKey(JWSHeader header) {
+		String kid = header.getKeyID() != null ? header.getKeyID() : LEGACY_KID;
+		SigningKey key = keySet.verificationKeys.get(kid);
+
+		if (key == null || !key.getAlgorithm().getJwsAlgorithm().equals(header.getAlgorithm())) {
+			return null;
+		}
+
+		return key;
 	}
 
-	public void setPrivateKey(RSAPrivateKey privateKey) {
-		this.privateKey = privateKey;
+	/**
+	 * Immutable snapshot of the keys in use
+	 */
+	private static final class KeySet {
+
+		private final SigningKey signingKey;
+
+		private final Map<String, SigningKey> verificationKeys;
+
+		private KeySet(SigningKey signingKey, Map<String, SigningKey> verificationKeys) {
+			this.signingKey = signingKey;
+			this.verificationKeys = verificationKeys;
+		}
+
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.mprevisic.user.security;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+
+/**
+ * Limits the rate of logins per client IP and per e-mail address before the
+ * password is verified, so that credential stuffing and brute-force attacks
+ * can't use up the CPU with password hashing. The IP is checked first, so
+ * requests rejected for their IP don't count against the e-mail address.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class LoginRateLimiter {
+
+	private final RateLimiter ipLimiter;
+
+	private final RateLimiter emailLimiter;
+
+	private final Counter ipRejected;
+
+	private final Counter emailRejected;
+
+	/**
+	 * @param capacity
+	 *            maximum number of tracked IPs and of tracked e-mail addresses
+	 * @param ipBurst
+	 *            logins of an IP at once
+	 * @param ipPerMinute
+	 *            logins of an IP per minute in the long run
+	 * @param emailBurst
+	 *            logins with an e-mail address at once
+	 * @param emailPerMinute
+	 *            logins with an e-mail address per minute in the long run
+	 */
+	@Autowired
+	public LoginRateLimiter(@Value("${security.login-rate.capacity:65536}") int capacity,
+			@Value("${security.login-rate.ip.burst:100}") int ipBurst,
+			@Value("${security.login-rate.ip.per-minute:600}") double ipPerMinute,
+			@Value("${security.login-rate.email.burst:10}") int emailBurst,
+			@Value("${security.login-rate.email.per-minute:10}") double emailPerMinute, MetricsRegistry metrics) {
+		this.ipLimiter = new RateLimiter(capacity, ipBurst, ipPerMinute);
+		this.emailLimiter = new RateLimiter(capacity, emailBurst, emailPerMinute);
+
+		this.ipRejected = metrics.counter("login_rate_limited_ip_total",
+				"Logins rejected because of too many logins from the client IP");
+		this.emailRejected = metrics.counter("login_rate_limited_email_total",
+				"Logins rejected because of too many logins with the e-mail address");
+		metrics.counter("login_rate_limiter_evictions_total",
+				"Rate limiter buckets replaced because the table was full",
+				() -> ipLimiter.getEvictions() + emailLimiter.getEvictions());
+	}
+
+	/**
+	 * Takes a login attempt of the client IP and the e-mail address
+	 *
+	 * @return 0 if the login is permitted, otherwise the number of seconds
+	 *         the client should wait before retrying
+	 */
+	public long tryAcquire(String ip, String email) {
+		long wait = ipLimiter.tryAcquire(ip == null ? "" : ip);
+		if (wait > 0) {
+			ipRejected.increment();
+			return toSeconds(wait);
+		}
+
+		wait = emailLimiter.tryAcquire(email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+		if (wait > 0) {
+			emailRejected.increment();
+			return toSeconds(wait);
+		}
+
+		return 0;
+	}
+
+	private static long toSeconds(long nanos) {
+		return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.mprevisic.user.security;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter for many keys (e.g. e-mail addresses or client
+ * IPs) with fixed memory use. Each key has a bucket of up to "burst" tokens
+ * which is refilled continuously, every permitted request takes one token.
+ *
+ * The buckets are kept in preallocated arrays organized as a set-associative
+ * table: a key can only be stored in the {@value #WAYS} slots of the set
+ * selected by its hash. If all slots of the set are taken, the least recently
+ * used bucket is replaced. A bucket which wasn't used long enough to be full
+ * again is equivalent to a missing one, so no separate expiry is needed. Keys
+ * are stored as 64-bit hashes with a random seed, so long keys don't use more
+ * memory and colliding keys can't be chosen without knowing the seed.
+ *
+ * The sets are guarded by a fixed number of locks (lock striping), a request
+ * only holds the lock of its set while scanning its few slots.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class RateLimiter {
+
+	/**
+	 * Number of slots per set
+	 */
+	static final int WAYS = 8;
+
+	private static final int MAX_STRIPES = 64;
+
+	private final long seed = new SecureRandom().nextLong();
+
+	private final double burst;
+
+	private final double tokensPerNano;
+
+	private final LongSupplier nanoClock;
+
+	private final int setMask;
+
+	private final Object[] locks;
+
+	private final long[] keys;
+
+	private final double[] tokens;
+
+	private final long[] lastUsed;
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity
+	 *            maximum number of tracked keys, rounded up to a power of two
+	 * @param burst
+	 *            maximum number of requests of a key at once
+	 * @param perMinute
+	 *            number of requests of a key per minute in the long run
+	 */
+	public RateLimiter(int capacity, int burst, double perMinute) {
+		this(capacity, burst, perMinute, System::nanoTime);
+	}
+
+	RateLimiter(int capacity, int burst, double perMinute, LongSupplier nanoClock) {
+		if (burst < 1 || perMinute <= 0) {
+			throw new IllegalArgumentException("Burst and rate must be positive!");
+		}
+
+		this.burst = burst;
+		this.tokensPerNano = perMinute / 60e9;
+		this.nanoClock = nanoClock;
+
+		int minSets = (capacity + WAYS - 1) / WAYS;
+		int sets = minSets <= 1 ? 1 : Integer.highestOneBit(minSets - 1) << 1;
+		this.setMask = sets - 1;
+		this.keys = new long[sets * WAYS];
+		this.tokens = new double[sets * WAYS];
+		this.lastUsed = new long[sets * WAYS];
+
+		this.locks = new Object[Math.min(sets, MAX_STRIPES)];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Takes a token from the bucket of the key
+	 *
+	 * @return 0 if the request is permitted, otherwise the time in
+	 *         nanoseconds until the next token is available
+	 */
+	public long tryAcquire(String key) {
+		long hash = hash(key);
+		int set = (int) hash & setMask;
+		int first = set * WAYS;
+		long now = nanoClock.getAsLong();
+
+		synchronized (locks[set & (locks.length - 1)]) {
+			int slot = -1;
+			int victim = first;
+			for (int i = first; i < first + WAYS; i++) {
+				if (keys[i] == hash) {
+					slot = i;
+					break;
+				}
+				if (keys[victim] != 0 && (keys[i] == 0 || lastUsed[i] - lastUsed[victim] < 0)) {
+					victim = i;
+				}
+			}
+
+			if (slot < 0) {
+				if (keys[victim] != 0) {
+					evictions.increment();
+				}
+				slot = victim;
+				keys[slot] = hash;
+				tokens[slot] = burst;
+			} else {
+				tokens[slot] = Math.min(burst, tokens[slot] + (now - lastUsed[slot]) * tokensPerNano);
+			}
+			lastUsed[slot] = now;
+
+			if (tokens[slot] >= 1) {
+				tokens[slot] -= 1;
+				return 0;
+			}
+
+			return (long) Math.ceil((1 - tokens[slot]) / tokensPerNano);
+		}
+	}
+
+	/**
+	 * Returns the number of buckets replaced by buckets of other keys
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the maximum number of tracked keys
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Seeded 64-bit FNV-1a hash with the MurmurHash3 finalizer, never 0
+	 * (which marks an empty slot)
+	 */
+	private long hash(String key) {
+		long h = seed ^ 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h = (h ^ key.charAt(i)) * 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h == 0 ? 1 : h;
+	}
+
+}
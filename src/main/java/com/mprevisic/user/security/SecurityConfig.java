@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -15,7 +16,13 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
+import com.mprevisic.user.Constants;
 import com.mprevisic.user.util.UserBlacklistCache;
 
 /**
@@ -33,6 +40,12 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
 	@Autowired
 	private UserBlacklistCache deletedUserCache;
+
+	@Autowired
+	private AuthMetrics authMetrics;
+
+	@Value("${security.token-cache.max-size:10000}")
+	private long tokenCacheMaxSize;
 	
 	/**
 	 * {@inheritDoc}
@@ -59,7 +72,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 		http.csrf().disable();
 
 		List<AuthenticationProvider> authManagers = new ArrayList<AuthenticationProvider>();
-		authManagers.add(new JwtAuthProvider(keyPairContainer, deletedUserCache));
+		VerifiedTokenCache tokenCache = new VerifiedTokenCache(tokenCacheMaxSize, Constants.ACCESS_TOKEN_TTL);
+		authManagers.add(new JwtAuthProvider(keyPairContainer, deletedUserCache, tokenCache, authMetrics));
 		ProviderManager providerManager = new ProviderManager(authManagers);
 
 		// everyone can access session management API and user registration
@@ -67,11 +81,26 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 		http.authorizeRequests().antMatchers("/api/v1/session").permitAll().and().authorizeRequests()
 				.antMatchers("/api/v1/token").permitAll().and().authorizeRequests()
 				.antMatchers(HttpMethod.POST, "/api/v1/users").permitAll()
-				.antMatchers(HttpMethod.OPTIONS, "/api/v1/users/?*").permitAll();;
+				.antMatchers(HttpMethod.OPTIONS, "/api/v1/users/**").permitAll();
 
-		// only authenticated users can access user management API
-		http.antMatcher("/api/v1/users/?*")
-				.addFilterBefore(new AuthFilter(providerManager), BasicAuthenticationFilter.class).authorizeRequests()
+		// only authenticated users can access user management API, only
+		// administrators can import, list, export and search users and read
+		// the metrics. Paths with a trailing slash are mapped to the same
+		// handlers, so the rules use MVC matchers and all paths except the
+		// registration pass the authentication filter.
+		RequestMatcher registration = new OrRequestMatcher(
+				new AntPathRequestMatcher("/api/v1/users", HttpMethod.POST.name()),
+				new AntPathRequestMatcher("/api/v1/users/", HttpMethod.POST.name()));
+		http.requestMatcher(new OrRequestMatcher(
+				new AndRequestMatcher(new AntPathRequestMatcher("/api/v1/users/**"),
+						new NegatedRequestMatcher(registration)),
+				new AntPathRequestMatcher("/metrics/**")))
+				.addFilterBefore(new AuthFilter(providerManager, authMetrics), BasicAuthenticationFilter.class)
+				.authorizeRequests()
+				.mvcMatchers("/metrics").hasAuthority(JwtClaims.ADMIN_AUTHORITY)
+				.mvcMatchers(HttpMethod.POST, "/api/v1/users/import").hasAuthority(JwtClaims.ADMIN_AUTHORITY)
+				.mvcMatchers(HttpMethod.GET, "/api/v1/users", "/api/v1/users/export", "/api/v1/users/search")
+				.hasAuthority(JwtClaims.ADMIN_AUTHORITY)
 				.anyRequest().authenticated();
 	}
 
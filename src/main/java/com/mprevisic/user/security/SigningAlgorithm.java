@@ -0,0 +1,120 @@
+package com.mprevisic.user.security;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+
+/**
+ * Supported algorithms for signing JWT tokens. Each algorithm knows how to
+ * generate, decode and use its key pairs.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public enum SigningAlgorithm {
+
+	/**
+	 * RSASSA-PKCS1-v1_5 using SHA-256 with a 1024 bit RSA key
+	 */
+	RS256(JWSAlgorithm.RS256, "RSA") {
+
+		@Override
+		protected void initialize(KeyPairGenerator keyGenerator) {
+			keyGenerator.initialize(1024);
+		}
+
+		@Override
+		public JWSSigner createSigner(KeyPair keyPair) {
+			return new RSASSASigner((RSAPrivateKey) keyPair.getPrivate());
+		}
+
+		@Override
+		public JWSVerifier createVerifier(KeyPair keyPair) {
+			return new RSASSAVerifier((RSAPublicKey) keyPair.getPublic());
+		}
+	},
+
+	/**
+	 * ECDSA using the P-256 curve and SHA-256. The signature is half the size of
+	 * a RS256 signature with a 1024 bit key.
+	 */
+	ES256(JWSAlgorithm.ES256, "EC") {
+
+		@Override
+		protected void initialize(KeyPairGenerator keyGenerator) throws GeneralSecurityException {
+			keyGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+		}
+
+		@Override
+		public JWSSigner createSigner(KeyPair keyPair) {
+			return new ECDSASigner(((ECPrivateKey) keyPair.getPrivate()).getS());
+		}
+
+		@Override
+		public JWSVerifier createVerifier(KeyPair keyPair) {
+			ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+			return new ECDSAVerifier(publicKey.getW().getAffineX(), publicKey.getW().getAffineY());
+		}
+	};
+
+	private final JWSAlgorithm jwsAlgorithm;
+
+	private final String keyType;
+
+	private SigningAlgorithm(JWSAlgorithm jwsAlgorithm, String keyType) {
+		this.jwsAlgorithm = jwsAlgorithm;
+		this.keyType = keyType;
+	}
+
+	public JWSAlgorithm getJwsAlgorithm() {
+		return jwsAlgorithm;
+	}
+
+	/**
+	 * Generates a new key pair for this algorithm
+	 */
+	public KeyPair generateKeyPair() throws GeneralSecurityException {
+		KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance(keyType);
+		initialize(keyGenerator);
+		return keyGenerator.genKeyPair();
+	}
+
+	/**
+	 * Decodes a key pair from its PKCS#8 (private key) and X.509 (public key)
+	 * encoded form
+	 */
+	public KeyPair decodeKeyPair(byte[] privateKey, byte[] publicKey) throws GeneralSecurityException {
+		KeyFactory keyFactory = KeyFactory.getInstance(keyType);
+		return new KeyPair(keyFactory.generatePublic(new X509EncodedKeySpec(publicKey)),
+				keyFactory.generatePrivate(new PKCS8EncodedKeySpec(privateKey)));
+	}
+
+	protected abstract void initialize(KeyPairGenerator keyGenerator) throws GeneralSecurityException;
+
+	/**
+	 * Creates a signer using the private key of the given key pair
+	 */
+	public abstract JWSSigner createSigner(KeyPair keyPair);
+
+	/**
+	 * Creates a verifier using the public key of the given key pair
+	 */
+	public abstract JWSVerifier createVerifier(KeyPair keyPair);
+
+}
@@ -0,0 +1,65 @@
+package com.mprevisic.user.security;
+
+import java.security.KeyPair;
+
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+
+/**
+ * Key pair used for signing and verifying JWT tokens, identified by its key ID
+ * ("kid" header of the token)
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class SigningKey {
+
+	private final String kid;
+
+	private final SigningAlgorithm algorithm;
+
+	private final KeyPair keyPair;
+
+	private final long created;
+
+	private final JWSSigner signer;
+
+	private final JWSVerifier verifier;
+
+	public SigningKey(String kid, SigningAlgorithm algorithm, KeyPair keyPair, long created) {
+		this.kid = kid;
+		this.algorithm = algorithm;
+		this.keyPair = keyPair;
+		this.created = created;
+		this.signer = algorithm.createSigner(keyPair);
+		this.verifier = algorithm.createVerifier(keyPair);
+	}
+
+	public String getKid() {
+		return kid;
+	}
+
+	public SigningAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public KeyPair getKeyPair() {
+		return keyPair;
+	}
+
+	/**
+	 * Returns the creation time of the key in milliseconds
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	public JWSSigner getSigner() {
+		return signer;
+	}
+
+	public JWSVerifier getVerifier() {
+		return verifier;
+	}
+
+}
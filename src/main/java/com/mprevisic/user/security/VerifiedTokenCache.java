@@ -0,0 +1,124 @@
+package com.mprevisic.user.security;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded cache of JWT access tokens whose signature and claims were already
+ * validated. Tokens are keyed by the SHA-256 digest of their serialized form,
+ * so repeated requests carrying the same token skip signature verification and
+ * claim parsing. Entries are evicted when the cache is full, after the TTL
+ * passed or when the token itself expires.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class VerifiedTokenCache {
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	});
+
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[1024]);
+
+	private final Cache<ByteBuffer, VerifiedToken> cache;
+
+	/**
+	 * @param maxSize
+	 *            maximum number of cached tokens (0 disables caching)
+	 * @param ttl
+	 *            maximum time in milliseconds a token stays in the cache
+	 */
+	public VerifiedTokenCache(long maxSize, long ttl) {
+		this.cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, TimeUnit.MILLISECONDS).build();
+	}
+
+	/**
+	 * Returns the claims of an already verified token or null if the token is
+	 * not in the cache or has expired in the meantime
+	 */
+	public JwtClaims get(String token) {
+		ByteBuffer key = digest(token);
+		if (key == null) {
+			return null;
+		}
+
+		VerifiedToken verified = cache.getIfPresent(key);
+
+		if (verified == null) {
+			return null;
+		}
+
+		if (verified.expirationTime <= System.currentTimeMillis()) {
+			cache.invalidate(key);
+			return null;
+		}
+
+		return verified.claims;
+	}
+
+	/**
+	 * Stores claims of a token whose signature, expiration time and issuer were
+	 * successfully validated
+	 */
+	public void put(String token, JwtClaims claims) {
+		ByteBuffer key = digest(token);
+		if (key != null) {
+			cache.put(key, new VerifiedToken(claims, claims.getExpirationTime()));
+		}
+	}
+
+	/**
+	 * Returns the number of cached tokens
+	 */
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private static ByteBuffer digest(String token) {
+		MessageDigest md = DIGEST.get();
+
+		// serialized tokens are ASCII (base64url and dots), so the characters
+		// are copied into a reusable buffer instead of encoding the string.
+		// Other tokens are invalid anyway and never cached.
+		byte[] buffer = BUFFER.get();
+		int length = token.length();
+		for (int i = 0; i < length; i += buffer.length) {
+			int chunk = Math.min(buffer.length, length - i);
+			for (int j = 0; j < chunk; j++) {
+				char c = token.charAt(i + j);
+				if (c > 0x7f) {
+					md.reset();
+					return null;
+				}
+				buffer[j] = (byte) c;
+			}
+			md.update(buffer, 0, chunk);
+		}
+
+		return ByteBuffer.wrap(md.digest());
+	}
+
+	private static final class VerifiedToken {
+
+		private final JwtClaims claims;
+
+		private final long expirationTime;
+
+		private VerifiedToken(JwtClaims claims, long expirationTime) {
+			this.claims = claims;
+			this.expirationTime = expirationTime;
+		}
+
+	}
+
+}
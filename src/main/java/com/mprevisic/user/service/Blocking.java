@@ -0,0 +1,23 @@
+package com.mprevisic.user.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a bean (all of its public methods) or a single method doing blocking
+ * database calls. When requests are handled by virtual threads, calls from
+ * other beans are run on the pool of the {@link JdbcExecutor}, before a
+ * transaction is started.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Blocking {
+
+}
@@ -0,0 +1,60 @@
+package com.mprevisic.user.service;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the calls of methods marked as {@link Blocking} with the
+ * {@link JdbcExecutor}. The advice is applied before all other advice, so
+ * the transaction of a call is started on the thread doing the call.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class BlockingCallAdvisor extends AbstractPointcutAdvisor {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Pointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(Blocking.class))
+			.union(AnnotationMatchingPointcut.forMethodAnnotation(Blocking.class));
+
+	private final transient MethodInterceptor interceptor;
+
+	@Autowired
+	public BlockingCallAdvisor(JdbcExecutor jdbc) {
+		this.interceptor = invocation -> jdbc.call(() -> proceed(invocation));
+		setOrder(Ordered.HIGHEST_PRECEDENCE);
+	}
+
+	@Override
+	public Pointcut getPointcut() {
+		return pointcut;
+	}
+
+	@Override
+	public Advice getAdvice() {
+		return interceptor;
+	}
+
+	private static Object proceed(MethodInvocation invocation) throws Exception {
+		try {
+			return invocation.proceed();
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new UndeclaredThrowableException(t);
+		}
+	}
+
+}
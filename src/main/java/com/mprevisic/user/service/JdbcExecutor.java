@@ -0,0 +1,171 @@
+package com.mprevisic.user.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.metrics.Timer;
+import com.mprevisic.user.util.VirtualThreads;
+
+/**
+ * Runs calls doing blocking JDBC (and password hashing when saving users)
+ * on a bounded pool of platform threads when requests are handled by virtual
+ * threads. The JDBC driver and the connection pool block inside synchronized
+ * blocks, which would pin the few carrier threads of the virtual threads, so
+ * the virtual request thread only parks waiting for the result. The pool has
+ * as many threads as the connection pool has connections, so requests queue
+ * here instead of in the connection pool. The queue is bounded, calls beyond
+ * it are rejected so that the request can be answered with 503.
+ *
+ * Calls are offloaded by the {@link BlockingCallAdvisor} for the methods
+ * marked as {@link Blocking}, services which read request or write response
+ * data between database calls offload the database calls themselves. On
+ * platform request threads (the default) calls run directly on the calling
+ * thread. Blocking work following an asynchronous call, e.g. a password
+ * verification, is passed to {@link #execute(Runnable)} so that it doesn't
+ * occupy the thread which completed the call.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class JdbcExecutor {
+
+	private final Predicate<Thread> offload;
+
+	private final ThreadPoolExecutor executor;
+
+	private final Timer waitTime;
+
+	private final Counter rejected;
+
+	/**
+	 * @param virtualThreads
+	 *            if requests are handled by virtual threads
+	 * @param threads
+	 *            number of threads doing blocking calls, 0 uses the maximum
+	 *            size of the connection pool
+	 * @param queueSize
+	 *            maximum number of calls waiting for a thread
+	 * @param connections
+	 *            maximum size of the connection pool
+	 */
+	@Autowired
+	public JdbcExecutor(@Value("${server.virtual-threads:false}") boolean virtualThreads,
+			@Value("${jdbc.threads:0}") int threads, @Value("${jdbc.queue-size:1000}") int queueSize,
+			@Value("${spring.datasource.hikari.maximum-pool-size:10}") int connections, MetricsRegistry metrics) {
+		this(threads > 0 ? threads : connections, queueSize,
+				virtualThreads && VirtualThreads.isSupported() ? VirtualThreads::isVirtual : t -> false, metrics);
+	}
+
+	JdbcExecutor(int threads, int queueSize, Predicate<Thread> offload, MetricsRegistry metrics) {
+		this.offload = offload;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), r -> {
+					Thread t = new Thread(r, "jdbc-" + threadCount.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+
+		this.rejected = metrics.counter("jdbc_executor_rejected_total",
+				"Blocking calls rejected because the queue was full");
+		this.waitTime = metrics.timer("jdbc_executor_wait_seconds",
+				"Time offloaded blocking calls spent in the queue");
+		metrics.gauge("jdbc_executor_queue_depth", "Blocking calls waiting for a platform thread",
+				() -> executor.getQueue().size());
+		metrics.gauge("jdbc_executor_active_threads", "Platform threads currently doing blocking calls",
+				executor::getActiveCount);
+	}
+
+	/**
+	 * Runs the call on the pool if the calling thread is a virtual thread,
+	 * otherwise directly. Exceptions of the call are rethrown unchanged.
+	 *
+	 * @return result of the call
+	 * @throws RejectedExecutionException
+	 *             if too many calls are waiting for a thread
+	 */
+	@SuppressWarnings("unchecked")
+	public <T, E extends Exception> T call(BlockingCall<T, E> call) throws E {
+		if (!offload.test(Thread.currentThread())) {
+			return call.call();
+		}
+
+		long submitted = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				waitTime.record(System.nanoTime() - submitted);
+				return call.call();
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for blocking call", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			// the call can only throw unchecked exceptions and E
+			throw (E) cause;
+		}
+	}
+
+	/**
+	 * Runs the task on the pool whatever the calling thread is
+	 *
+	 * @throws RejectedExecutionException
+	 *             if too many calls are waiting for a thread
+	 */
+	public void execute(Runnable task) {
+		long submitted = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				waitTime.record(System.nanoTime() - submitted);
+				task.run();
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * Call doing blocking I/O
+	 */
+	@FunctionalInterface
+	public interface BlockingCall<T, E extends Exception> {
+
+		T call() throws E;
+
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.mprevisic.user.service;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hashes and checks user passwords. New hashes are created with the
+ * configured encoder and work factor, existing hashes are checked with the
+ * encoder they were created with, so the work factor can be changed at any
+ * time and stored hashes are upgraded on the next successful login.
+ *
+ * BCrypt hashes are stored without prefix (like before encoders were
+ * configurable), other hashes start with the ID of their encoder in braces.
+ * PBKDF2 hashes use HMAC-SHA256 with a random 16-byte salt and a 32-byte
+ * derived key, stored as "{pbkdf2}iterations$salt$key" with the salt and
+ * the key in Base64.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class PasswordHasher {
+
+	public static final String BCRYPT = "bcrypt";
+
+	public static final String PBKDF2 = "pbkdf2";
+
+	private static final String PBKDF2_PREFIX = "{" + PBKDF2 + "}";
+
+	private static final String BCRYPT_PREFIX = "{" + BCRYPT + "}";
+
+	private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+
+	private static final int PBKDF2_SALT_BYTES = 16;
+
+	private static final int PBKDF2_KEY_BITS = 256;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final String encoder;
+
+	private final int bcryptStrength;
+
+	private final int pbkdf2Iterations;
+
+	/**
+	 * @param encoder
+	 *            encoder used for new hashes, "bcrypt" or "pbkdf2"
+	 * @param bcryptStrength
+	 *            log2 of the number of BCrypt rounds (4 - 31)
+	 * @param pbkdf2Iterations
+	 *            number of PBKDF2 iterations
+	 */
+	@Autowired
+	public PasswordHasher(@Value("${security.password.encoder:bcrypt}") String encoder,
+			@Value("${security.password.bcrypt-strength:10}") int bcryptStrength,
+			@Value("${security.password.pbkdf2-iterations:600000}") int pbkdf2Iterations) {
+		if (!BCRYPT.equals(encoder) && !PBKDF2.equals(encoder)) {
+			throw new IllegalArgumentException("Unknown password encoder: " + encoder);
+		}
+
+		if (bcryptStrength < 4 || bcryptStrength > 31) {
+			throw new IllegalArgumentException("BCrypt strength must be between 4 and 31");
+		}
+
+		if (pbkdf2Iterations < 1) {
+			throw new IllegalArgumentException("Number of PBKDF2 iterations must be positive");
+		}
+
+		this.encoder = encoder;
+		this.bcryptStrength = bcryptStrength;
+		this.pbkdf2Iterations = pbkdf2Iterations;
+	}
+
+	/**
+	 * Hashes the password with the configured encoder and work factor
+	 */
+	public String encode(String password) {
+		if (PBKDF2.equals(encoder)) {
+			byte[] salt = new byte[PBKDF2_SALT_BYTES];
+			random.nextBytes(salt);
+			Base64.Encoder base64 = Base64.getEncoder();
+			return PBKDF2_PREFIX + pbkdf2Iterations + '$' + base64.encodeToString(salt) + '$'
+					+ base64.encodeToString(pbkdf2(password, salt, pbkdf2Iterations));
+		}
+
+		return BCrypt.hashpw(password, BCrypt.gensalt(bcryptStrength, random));
+	}
+
+	/**
+	 * Checks if the password matches the stored hash
+	 */
+	public boolean matches(String password, String hash) {
+		if (hash == null) {
+			return false;
+		}
+
+		if (hash.startsWith(PBKDF2_PREFIX)) {
+			int separator = hash.indexOf('$', PBKDF2_PREFIX.length());
+			if (separator < 0) {
+				return false;
+			}
+
+			int iterations;
+			try {
+				iterations = Integer.parseInt(hash.substring(PBKDF2_PREFIX.length(), separator));
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			int keySeparator = hash.indexOf('$', separator + 1);
+			if (iterations < 1 || keySeparator < 0) {
+				return false;
+			}
+
+			byte[] salt;
+			byte[] key;
+			try {
+				salt = Base64.getDecoder().decode(hash.substring(separator + 1, keySeparator));
+				key = Base64.getDecoder().decode(hash.substring(keySeparator + 1));
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+
+			return key.length == PBKDF2_KEY_BITS / 8
+					&& MessageDigest.isEqual(key, pbkdf2(password, salt, iterations));
+		}
+
+		if (hash.startsWith(BCRYPT_PREFIX)) {
+			hash = hash.substring(BCRYPT_PREFIX.length());
+		}
+
+		return BCrypt.checkpw(password, hash);
+	}
+
+	/**
+	 * Checks if the stored hash was created with another encoder or work
+	 * factor than the configured one and should be replaced
+	 */
+	public boolean needsUpgrade(String hash) {
+		if (PBKDF2.equals(encoder)) {
+			return !hash.startsWith(PBKDF2_PREFIX + pbkdf2Iterations + '$');
+		}
+
+		if (hash.startsWith(BCRYPT_PREFIX)) {
+			return true;
+		}
+
+		// BCrypt hashes have the format $2a$<strength>$<salt and hash>
+		return hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$'
+				|| !hash.startsWith(String.format("%02d", bcryptStrength), 4);
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, PBKDF2_KEY_BITS);
+		try {
+			return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			// every Java 8 runtime has to provide the algorithm
+			throw new IllegalStateException("PBKDF2 hash could not be computed", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.mprevisic.user.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.metrics.Timer;
+
+/**
+ * Verifies passwords against their hashes on a dedicated thread pool
+ * with a bounded queue, so that a burst of logins can't occupy all request
+ * threads. Verifications which don't fit into the queue are rejected.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class PasswordVerifier {
+
+	private final ThreadPoolExecutor executor;
+
+	private final PasswordHasher passwordHasher;
+
+	private final Timer waitTime;
+
+	private final Timer verificationTime;
+
+	private final Counter rejected;
+
+	/**
+	 * @param threads
+	 *            number of threads verifying passwords, 0 uses one thread per
+	 *            available processor
+	 * @param queueSize
+	 *            maximum number of verifications waiting for a thread
+	 */
+	@Autowired
+	public PasswordVerifier(@Value("${security.password.threads:0}") int threads,
+			@Value("${security.password.queue-size:100}") int queueSize, PasswordHasher passwordHasher,
+			MetricsRegistry metrics) {
+		this.passwordHasher = passwordHasher;
+
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), r -> {
+					Thread t = new Thread(r, "password-verifier-" + threadCount.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.AbortPolicy());
+
+		this.waitTime = metrics.timer("password_verification_wait_seconds",
+				"Time password verifications spent in the queue");
+		this.verificationTime = metrics.timer("password_verification_seconds",
+				"Time spent verifying passwords");
+		this.rejected = metrics.counter("password_verification_rejected_total",
+				"Password verifications rejected because the queue was full");
+		metrics.gauge("password_verification_queue_depth", "Password verifications waiting for a thread",
+				() -> executor.getQueue().size());
+		metrics.gauge("password_verification_active_threads", "Threads currently verifying a password",
+				executor::getActiveCount);
+	}
+
+	/**
+	 * Checks asynchronously if the password matches the hash
+	 *
+	 * @return future completed with true if the password matches
+	 * @throws RejectedExecutionException
+	 *             if the queue is full
+	 */
+	public CompletableFuture<Boolean> verify(String password, String hash) {
+		long submitted = System.nanoTime();
+
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				long started = System.nanoTime();
+				waitTime.record(started - submitted);
+
+				try {
+					return passwordHasher.matches(password, hash);
+				} finally {
+					verificationTime.record(System.nanoTime() - started);
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.mprevisic.user.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.RefreshTokenRepository;
+import com.mprevisic.user.repository.RefreshTokenRepository.StoredToken;
+
+/**
+ * Opaque refresh tokens stored on the server, used instead of JWT refresh
+ * tokens if "security.refresh-token.opaque" is enabled. A token is a random
+ * string like the CSRF token, the database only holds its SHA-256 hash, so
+ * validating it is a primary key lookup instead of a signature
+ * verification, and single tokens can be revoked.
+ *
+ * Every refresh rotates the token: the used token is marked and a new one of
+ * the same family is issued, which expires together with the token issued on
+ * login. If a used token is presented again, it was stolen (or the client
+ * retried concurrently), so the whole family is revoked and the user has to
+ * log in again. JWT refresh tokens exchanged for opaque ones are stored as
+ * used tokens of the new family, so they can only be exchanged once.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+@Transactional(propagation=Propagation.REQUIRED)
+public class RefreshTokenService {
+
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+	private static final int TOKEN_BYTES = 32;
+
+	/**
+	 * Length of an encoded token, base64url without padding
+	 */
+	private static final int TOKEN_LENGTH = (TOKEN_BYTES * 8 + 5) / 6;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final RefreshTokenRepository tokenRepo;
+
+	private final boolean enabled;
+
+	private final Counter rotated;
+
+	private final Counter reused;
+
+	@Autowired
+	public RefreshTokenService(RefreshTokenRepository tokenRepo,
+			@Value("${security.refresh-token.opaque:false}") boolean enabled, MetricsRegistry metrics) {
+		this.tokenRepo = tokenRepo;
+		this.enabled = enabled;
+		this.rotated = metrics.counter("refresh_tokens_rotated_total", "Opaque refresh tokens exchanged for new ones");
+		this.reused = metrics.counter("refresh_token_reuse_total",
+				"Used opaque refresh tokens presented again, each revokes the token family");
+	}
+
+	/**
+	 * Returns true if opaque refresh tokens are issued instead of JWT tokens
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns true if the token has the format of an opaque token (JWT tokens
+	 * contain dots)
+	 */
+	public static boolean isOpaque(String token) {
+		return token.length() == TOKEN_LENGTH && token.indexOf('.') < 0;
+	}
+
+	/**
+	 * Issues a token of a new family on login
+	 *
+	 * @return the token, which is not stored
+	 */
+	@Blocking
+	public String create(long userId) {
+		String token = generateToken();
+		String hash = hash(token);
+		tokenRepo.insert(hash, hash, userId, System.currentTimeMillis() + Constants.REFRESH_TOKEN_TTL);
+		return token;
+	}
+
+	/**
+	 * Exchanges a valid unused token for a new one
+	 *
+	 * @return ID of the user and new token, empty if the token is unknown,
+	 *         expired or was already used
+	 */
+	@Blocking
+	public Optional<Rotation> rotate(String token) {
+		if (token == null || !isOpaque(token)) {
+			return Optional.empty();
+		}
+
+		String hash = hash(token);
+		Optional<StoredToken> stored = tokenRepo.find(hash);
+		long now = System.currentTimeMillis();
+		if (!stored.isPresent() || stored.get().getExpires() <= now) {
+			return Optional.empty();
+		}
+
+		// the update only succeeds once, even for concurrent requests
+		if (stored.get().isUsed() || !tokenRepo.markUsed(hash)) {
+			reused.increment();
+			int revoked = tokenRepo.deleteFamily(stored.get().getFamily());
+			LOG.warn("Reuse of refresh token detected, revoked " + revoked + " tokens of user "
+					+ stored.get().getUserId());
+			return Optional.empty();
+		}
+
+		// the family isn't extended, the user has to log in again when it
+		// expires
+		String next = generateToken();
+		tokenRepo.insert(hash(next), stored.get().getFamily(), stored.get().getUserId(), stored.get().getExpires());
+		rotated.increment();
+
+		return Optional.of(new Rotation(stored.get().getUserId(), next));
+	}
+
+	/**
+	 * Exchanges a valid JWT refresh token, issued before opaque tokens were
+	 * enabled, for a token of a new family. The JWT token is stored as a used
+	 * token of the family until it has expired, so presenting it again
+	 * revokes the family.
+	 *
+	 * @param jwt
+	 *            the validated JWT refresh token
+	 * @return the new token, empty if the JWT token was already exchanged
+	 * @throws org.springframework.dao.DuplicateKeyException
+	 *             if the JWT token is exchanged concurrently
+	 */
+	@Blocking
+	public Optional<String> exchange(String jwt, long userId) {
+		String jwtHash = hash(jwt);
+		Optional<StoredToken> stored = tokenRepo.find(jwtHash);
+		if (stored.isPresent()) {
+			reused.increment();
+			int revoked = tokenRepo.deleteFamily(stored.get().getFamily());
+			LOG.warn("Reuse of exchanged JWT refresh token detected, revoked " + revoked + " tokens of user "
+					+ stored.get().getUserId());
+			return Optional.empty();
+		}
+
+		// the JWT token can't be valid for longer than a new token
+		long expires = System.currentTimeMillis() + Constants.REFRESH_TOKEN_TTL;
+		String token = generateToken();
+		String family = hash(token);
+		tokenRepo.insertUsed(jwtHash, family, userId, expires);
+		tokenRepo.insert(family, family, userId, expires);
+
+		return Optional.of(token);
+	}
+
+	/**
+	 * Revokes all tokens of the user, e.g. after a password change
+	 */
+	@Blocking
+	public void revokeAll(long userId) {
+		int revoked = tokenRepo.deleteByUser(userId);
+		LOG.debug("Revoked " + revoked + " refresh tokens of user " + userId);
+	}
+
+	/**
+	 * Deletes expired tokens, used tokens are kept until then to detect their
+	 * reuse
+	 */
+	@Scheduled(initialDelayString = "${security.refresh-token.sweep-interval:3600000}",
+			fixedDelayString = "${security.refresh-token.sweep-interval:3600000}")
+	public void deleteExpired() {
+		if (!enabled) {
+			return;
+		}
+		int count = tokenRepo.deleteExpiredBefore(System.currentTimeMillis());
+		LOG.debug("Deleted " + count + " expired refresh tokens");
+	}
+
+	private String generateToken() {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		random.nextBytes(bytes);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	static String hash(String token) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+
+	/**
+	 * Result of a successful rotation
+	 */
+	public static final class Rotation {
+
+		private final long userId;
+
+		private final String token;
+
+		private Rotation(long userId, String token) {
+			this.userId = userId;
+			this.token = token;
+		}
+
+		public long getUserId() {
+			return userId;
+		}
+
+		public String getToken() {
+			return token;
+		}
+
+	}
+
+}
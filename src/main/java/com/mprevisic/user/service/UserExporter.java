@@ -0,0 +1,214 @@
+package com.mprevisic.user.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mprevisic.user.dto.UserField;
+import com.mprevisic.user.dto.UserPage;
+import com.mprevisic.user.repository.UserJdbcRepository;
+
+/**
+ * Lists and exports users. Pages are selected by the ID of the last user of
+ * the previous page (keyset pagination), so every page is an index range
+ * scan no matter how deep into the table it is. Exports are read in pages of
+ * the same kind and each page is written to the output stream before the
+ * next one is read. Pages are read with the {@link JdbcExecutor}, so writing
+ * the response to a slow client doesn't hold one of its threads.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Service
+public class UserExporter {
+
+	public static final String NDJSON = "ndjson";
+
+	public static final String CSV = "csv";
+
+	private final UserJdbcRepository userJdbcRepo;
+
+	private final ObjectMapper objectMapper;
+
+	private final JdbcExecutor jdbc;
+
+	private final int pageSize;
+
+	/**
+	 * @param pageSize
+	 *            number of users read at once when exporting
+	 */
+	@Autowired
+	public UserExporter(UserJdbcRepository userJdbcRepo, ObjectMapper objectMapper, JdbcExecutor jdbc,
+			@Value("${user-export.fetch-size:1000}") int pageSize) {
+		this.userJdbcRepo = userJdbcRepo;
+		this.objectMapper = objectMapper;
+		this.jdbc = jdbc;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Returns users ordered by ID
+	 *
+	 * @param afterId
+	 *            ID of the last user of the previous page, 0 for the first
+	 *            page
+	 * @param limit
+	 *            maximum number of users
+	 * @param fields
+	 *            fields of the returned users
+	 */
+	@Blocking
+	public UserPage findPage(long afterId, int limit, List<UserField> fields) {
+		List<Map<String, Object>> users = new ArrayList<>(limit);
+		long[] lastId = { afterId };
+
+		userJdbcRepo.forEachUser(fields, afterId, limit, (id, values) -> {
+			Map<String, Object> user = new LinkedHashMap<>();
+			for (int i = 0; i < values.length; i++) {
+				user.put(fields.get(i).getProperty(), values[i]);
+			}
+			users.add(user);
+			lastId[0] = id;
+		});
+
+		return new UserPage(users, users.size() == limit ? lastId[0] : null);
+	}
+
+	/**
+	 * Writes all users ordered by ID to the output stream
+	 *
+	 * @param fields
+	 *            fields of the exported users
+	 * @param format
+	 *            {@link #NDJSON} (one JSON object per line) or {@link #CSV}
+	 *            (with a header row)
+	 */
+	public void export(List<UserField> fields, String format, OutputStream out) throws IOException {
+		try {
+			if (CSV.equals(format)) {
+				exportCsv(fields, out);
+			} else {
+				exportNdjson(fields, out);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void exportNdjson(List<UserField> fields, OutputStream out) throws IOException {
+		try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+			json.setRootValueSeparator(null);
+
+			forEachUser(fields, values -> {
+				try {
+					json.writeStartObject();
+					for (int i = 0; i < values.length; i++) {
+						json.writeObjectField(fields.get(i).getProperty(), values[i]);
+					}
+					json.writeEndObject();
+					json.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private void exportCsv(List<UserField> fields, OutputStream out) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+			for (int i = 0; i < fields.size(); i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(fields.get(i).getProperty());
+			}
+			writer.write("\r\n");
+
+			forEachUser(fields, values -> {
+				try {
+					for (int i = 0; i < values.length; i++) {
+						if (i > 0) {
+							writer.write(',');
+						}
+						if (values[i] != null) {
+							writeCsvValue(writer, values[i].toString());
+						}
+					}
+					writer.write("\r\n");
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Passes the values of all users ordered by ID to the handler on the
+	 * calling thread, while only one page is held in memory
+	 */
+	private void forEachUser(List<UserField> fields, Consumer<Object[]> handler) {
+		long[] lastId = { 0 };
+		while (true) {
+			List<Object[]> page = new ArrayList<>(pageSize);
+			long afterId = lastId[0];
+
+			jdbc.call(() -> {
+				userJdbcRepo.forEachUser(fields, afterId, pageSize, (id, values) -> {
+					page.add(values.clone());
+					lastId[0] = id;
+				});
+				return null;
+			});
+
+			page.forEach(handler);
+
+			if (page.size() < pageSize) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes a CSV field, quoted if it contains a separator, quote or line
+	 * break (RFC 4180)
+	 */
+	static void writeCsvValue(Writer writer, String value) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if (!quote) {
+			writer.write(value);
+			return;
+		}
+
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				writer.write('"');
+			}
+			writer.write(c);
+		}
+		writer.write('"');
+	}
+
+}
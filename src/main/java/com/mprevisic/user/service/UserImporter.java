@@ -0,0 +1,323 @@
+package com.mprevisic.user.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.ImportResult;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserJdbcRepository;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserSearchIndex;
+
+/**
+ * Imports many users at once. The users are read and processed in chunks, so
+ * the whole import never has to be held in memory. For each chunk the
+ * e-mail addresses are checked with a single query, the passwords are hashed
+ * in parallel and the users are inserted with a JDBC batch. Invalid users are
+ * skipped and reported with their row number. Only the database calls of a
+ * chunk are run with the {@link JdbcExecutor}, reading the request and
+ * hashing don't hold one of its threads.
+ *
+ * Hashing runs on all processors, so an import is limited to a maximum
+ * number of rows and larger imports have to be split. Imported users never
+ * get a role, roles (including the administrator role) are only assigned in
+ * the database.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Service
+public class UserImporter {
+
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+	private static final Pattern EMAIL_PATTERN = Pattern.compile(Constants.EMAIL_REGEX);
+
+	private final UserRepository userRepo;
+
+	private final UserJdbcRepository userJdbcRepo;
+
+	private final UserBlacklistCache deletedUserCache;
+
+	private final PasswordHasher passwordHasher;
+
+	private final UserSearchIndex searchIndex;
+
+	private final JdbcExecutor jdbc;
+
+	private final int chunkSize;
+
+	private final int maxRows;
+
+	private final ExecutorService executor;
+
+	private final Counter importedUsers;
+
+	/**
+	 * @param threads
+	 *            number of threads hashing passwords, 0 uses one thread per
+	 *            available processor
+	 * @param chunkSize
+	 *            number of users processed and inserted at once
+	 * @param maxRows
+	 *            maximum number of rows of an import
+	 */
+	@Autowired
+	public UserImporter(UserRepository userRepo, UserJdbcRepository userJdbcRepo, UserBlacklistCache deletedUserCache,
+			PasswordHasher passwordHasher, UserSearchIndex searchIndex, JdbcExecutor jdbc,
+			@Value("${user-import.threads:0}") int threads, @Value("${user-import.chunk-size:1000}") int chunkSize,
+			@Value("${user-import.max-rows:10000}") int maxRows, MetricsRegistry metrics) {
+		this.userRepo = userRepo;
+		this.userJdbcRepo = userJdbcRepo;
+		this.deletedUserCache = deletedUserCache;
+		this.passwordHasher = passwordHasher;
+		this.searchIndex = searchIndex;
+		this.jdbc = jdbc;
+		this.chunkSize = chunkSize;
+		this.maxRows = maxRows;
+
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(poolSize, r -> {
+			Thread t = new Thread(r, "user-import-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		this.importedUsers = metrics.counter("users_imported_total", "Users created by imports");
+	}
+
+	/**
+	 * Imports the users. An {@link IllegalArgumentException} thrown by the
+	 * iterator is reported as error of the row and the import continues, any
+	 * other exception (e.g. malformed JSON) and a row after the maximum
+	 * number of rows end the import. Rows before are imported.
+	 *
+	 * @param users
+	 *            users to import, each with e-mail address and password
+	 * @return number of imported users and errors of the rows which weren't
+	 *         imported
+	 */
+	public ImportResult importUsers(Iterator<UserDto> users) {
+		ImportResult result = new ImportResult();
+		List<Row> chunk = new ArrayList<>(chunkSize);
+		int rowNumber = 0;
+
+		while (true) {
+			UserDto user;
+			rowNumber++;
+			try {
+				if (!users.hasNext()) {
+					break;
+				}
+				user = users.next();
+			} catch (IllegalArgumentException e) {
+				result.addError(rowNumber, null, e.getMessage());
+				continue;
+			} catch (RuntimeException e) {
+				LOG.debug("Import aborted at row " + rowNumber, e);
+				result.addError(rowNumber, null, "Invalid input, import aborted!");
+				break;
+			}
+
+			if (rowNumber > maxRows) {
+				result.addError(rowNumber, user.getEmail(),
+						"An import can have at most " + maxRows + " rows, import aborted!");
+				break;
+			}
+
+			String error = validate(user);
+			if (error != null) {
+				result.addError(rowNumber, user.getEmail(), error);
+				continue;
+			}
+
+			chunk.add(new Row(rowNumber, user));
+			if (chunk.size() == chunkSize) {
+				importChunk(chunk, result);
+				chunk.clear();
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			importChunk(chunk, result);
+		}
+
+		// the IDs of the inserted users are unknown
+		if (result.getImported() > 0) {
+			jdbc.call(() -> {
+				searchIndex.rebuild();
+				return null;
+			});
+		}
+
+		// errors of rows checked with their chunk are added later
+		result.getErrors().sort(Comparator.comparingInt(ImportResult.RowError::getRow));
+
+		LOG.info("Imported " + result.getImported() + " users, " + result.getErrors().size() + " rows failed");
+
+		return result;
+	}
+
+	private static String validate(UserDto user) {
+		if (user.getEmail() == null || user.getEmail().isEmpty()) {
+			return "E-mail address is missing!";
+		}
+
+		if (!EMAIL_PATTERN.matcher(user.getEmail()).matches()) {
+			return "E-mail address has invalid format!";
+		}
+
+		if (user.getPassword() == null || user.getPassword().isEmpty()) {
+			return "Password is missing!";
+		}
+
+		return null;
+	}
+
+	private void importChunk(List<Row> chunk, ImportResult result) {
+		Set<String> emails = new HashSet<>();
+		List<Row> newRows = new ArrayList<>(chunk.size());
+
+		for (Row row : chunk) {
+			if (emails.add(row.user.getEmail())) {
+				newRows.add(row);
+			} else {
+				result.addError(row.number, row.user.getEmail(), "E-mail address is used by a previous row!");
+			}
+		}
+
+		// users of previous chunks are already in the database
+		Set<String> existingEmails = new HashSet<>(jdbc.call(() -> userRepo.findExistingEmails(emails)));
+		if (!existingEmails.isEmpty()) {
+			newRows.removeIf(row -> {
+				if (existingEmails.contains(row.user.getEmail())) {
+					result.addError(row.number, row.user.getEmail(),
+							"User with e-mail '" + row.user.getEmail() + "' already exists!");
+					return true;
+				}
+				return false;
+			});
+		}
+
+		if (newRows.isEmpty()) {
+			return;
+		}
+
+		List<UserEntity> entities = hashPasswords(newRows);
+
+		int imported = jdbc.call(() -> insert(newRows, entities, result));
+
+		result.addImported(imported);
+		importedUsers.add(imported);
+	}
+
+	/**
+	 * Inserts the users of a chunk
+	 *
+	 * @return number of inserted users
+	 */
+	private int insert(List<Row> rows, List<UserEntity> users, ImportResult result) {
+		int imported;
+		try {
+			userJdbcRepo.insertAll(users);
+			imported = users.size();
+		} catch (DataIntegrityViolationException e) {
+			// a user was registered concurrently, insert one by one to find it
+			imported = insertEach(rows, users, result);
+		}
+
+		// previously deleted users registered again get access
+		for (UserEntity user : users) {
+			if (deletedUserCache.checkUserDeleted(user.getEmail())) {
+				deletedUserCache.removeFromCache(user.getEmail());
+			}
+		}
+
+		return imported;
+	}
+
+	private List<UserEntity> hashPasswords(List<Row> rows) {
+		List<Callable<UserEntity>> tasks = new ArrayList<>(rows.size());
+		for (Row row : rows) {
+			tasks.add(() -> {
+				UserEntity user = UserEntity.fromDto(row.user).setId(0).setRole(null);
+				return user.setPassword(passwordHasher.encode(user.getPassword()));
+			});
+		}
+
+		try {
+			List<UserEntity> users = new ArrayList<>(rows.size());
+			for (Future<UserEntity> future : executor.invokeAll(tasks)) {
+				users.add(future.get());
+			}
+			return users;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Import interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Hashing password failed", e.getCause());
+		}
+	}
+
+	private int insertEach(List<Row> rows, List<UserEntity> users, ImportResult result) {
+		int imported = 0;
+
+		for (int i = 0; i < rows.size(); i++) {
+			try {
+				userJdbcRepo.insert(users.get(i));
+				imported++;
+			} catch (DataIntegrityViolationException e) {
+				result.addError(rows.get(i).number, users.get(i).getEmail(),
+						"User with e-mail '" + users.get(i).getEmail() + "' already exists!");
+			}
+		}
+
+		return imported;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static final class Row {
+
+		private final int number;
+
+		private final UserDto user;
+
+		private Row(int number, UserDto user) {
+			this.number = number;
+			this.user = user;
+		}
+
+	}
+
+}
@@ -1,20 +1,36 @@
 package com.mprevisic.user.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCrypt;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.mprevisic.user.Constants;
 import com.mprevisic.user.Credentials;
 import com.mprevisic.user.domain.UserEntity;
 import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.repository.UserJdbcRepository;
 import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.AuthMetrics;
 import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserCache;
+import com.mprevisic.user.util.UserSearchIndex;
 
 /**
  * Service for managing users
@@ -23,54 +39,136 @@ import com.mprevisic.user.util.UserBlacklistCache;
  * @created May 22, 2017
  */
 @Service
+@Blocking
 @Transactional(propagation=Propagation.REQUIRED)
 public class UserService {
+	
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass()); 
 
 	private UserRepository userRepo;
 
+	private UserJdbcRepository userJdbcRepo;
+
 	private UserBlacklistCache deletedUserCache;
 
-	private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+	private PasswordVerifier passwordVerifier;
+
+	private PasswordHasher passwordHasher;
+
+	private UserCache userCache;
+
+	private UserSearchIndex searchIndex;
+
+	private RefreshTokenService refreshTokens;
+
+	private AuthMetrics authMetrics;
 
 	@Autowired
-	public UserService(UserRepository userRepo, UserBlacklistCache deletedUserCache) {
+	public UserService(UserRepository userRepo, UserJdbcRepository userJdbcRepo, UserCache userCache,
+			UserSearchIndex searchIndex, UserBlacklistCache deletedUserCache, PasswordVerifier passwordVerifier,
+			PasswordHasher passwordHasher, RefreshTokenService refreshTokens, AuthMetrics authMetrics) {
 		this.userRepo = userRepo;
+		this.userJdbcRepo = userJdbcRepo;
+		this.userCache = userCache;
+		this.searchIndex = searchIndex;
 		this.deletedUserCache = deletedUserCache;
+		this.passwordVerifier = passwordVerifier;
+		this.passwordHasher = passwordHasher;
+		this.refreshTokens = refreshTokens;
+		this.authMetrics = authMetrics;
+	}
+
+	/**
+	 * Authenticates the user by checking the credentials. If the stored
+	 * password hash doesn't use the configured encoder or work factor, it is
+	 * replaced by a new hash. This is the only lookup which reads the
+	 * password hash, it always reads the user from DB.
+	 * 
+	 * @param credentials
+	 *            credentials of the user (e-mail and password)
+	 * @return the authenticated user, empty if authentication failed
+	 */
+	@Transactional(propagation=Propagation.SUPPORTS)
+	public Optional<UserDto> authenticate(Credentials credentials) {
+		Optional<UserEntity> user = findByEmailForLogin(credentials.getEmail());
+
+		if (!user.isPresent() || !passwordHasher.matches(credentials.getPassword(), user.get().getPassword())) {
+			return Optional.empty();
+		}
+
+		upgradePassword(user.get(), credentials.getPassword());
+
+		return Optional.of(UserView.of(user.get()).toDto());
 	}
 
 	/**
-	 * Authenticates the user by checking the credentials
+	 * Authenticates the user by checking the credentials. The user is looked
+	 * up on the calling thread, the password is verified (and its hash
+	 * upgraded if needed) on the thread pool of the password verifier.
 	 * 
 	 * @param credentials
 	 *            credentials of the user (e-mail and password)
-	 * @return true if authenticated, false if not
+	 * @return future completed with the authenticated user, empty if
+	 *         authentication failed
+	 * @throws RejectedExecutionException
+	 *             if too many password verifications are pending
 	 */
-	@Transactional(readOnly=true)
-	public boolean authenticate(Credentials credentials) {
-		Optional<UserEntity> user = userRepo.findByEmail(credentials.getEmail());
+	@Transactional(propagation=Propagation.SUPPORTS)
+	public CompletableFuture<Optional<UserDto>> authenticateAsync(Credentials credentials) {
+		Optional<UserEntity> user = findByEmailForLogin(credentials.getEmail());
 
-		if (!user.isPresent() || !BCrypt.checkpw(credentials.getPassword(), user.get().getPassword())) {
-			return false;
+		if (!user.isPresent()) {
+			return CompletableFuture.completedFuture(Optional.empty());
 		}
 
-		return true;
+		UserEntity ue = user.get();
+
+		return passwordVerifier.verify(credentials.getPassword(), ue.getPassword()).thenApply(authenticated -> {
+			if (!authenticated) {
+				return Optional.empty();
+			}
+
+			upgradePassword(ue, credentials.getPassword());
+			return Optional.of(UserView.of(ue).toDto());
+		});
+	}
+
+	private Optional<UserEntity> findByEmailForLogin(String email) {
+		long start = System.nanoTime();
+		Optional<UserEntity> user = userRepo.findByEmail(email);
+		authMetrics.getUserLookup().record(System.nanoTime() - start);
+		return user;
+	}
+
+	/**
+	 * Re-hashes the password of an authenticated user if the stored hash was
+	 * created with another encoder or work factor than the configured one.
+	 * A failed upgrade doesn't fail the login, it is retried on the next one.
+	 */
+	private void upgradePassword(UserEntity user, String password) {
+		if (!passwordHasher.needsUpgrade(user.getPassword())) {
+			return;
+		}
+
+		try {
+			userRepo.updatePassword(user.getId(), passwordHasher.encode(password), user.getPassword());
+			LOG.debug("Upgraded password hash [e-mail='" + user.getEmail() + "']");
+		} catch (DataAccessException e) {
+			LOG.warn("Upgrading password hash failed [e-mail='" + user.getEmail() + "']", e);
+		}
 	}
 
 	/**
-	 * Returns user with given e-mail address
+	 * Returns user with given e-mail address. Users are served from the user
+	 * cache, so no transaction is started if the user is cached.
 	 * 
 	 * @param email
 	 *            e-mail address of user
 	 * @return user with given e-mail address
 	 */
-	@Transactional(readOnly=true)
+	@Transactional(propagation=Propagation.SUPPORTS)
 	public Optional<UserDto> findByEmail(String email) {
-		Optional<UserEntity> ue = userRepo.findByEmail(email);
-		if (ue.isPresent()) {
-			return Optional.of(ue.get().toDto());
-		} else {
-			return Optional.empty();
-		}
+		return userCache.findByEmail(email).map(UserView::toDto);
 	}
 
 	/**
@@ -80,14 +178,36 @@ public class UserService {
 	 *            ID of the user
 	 * @return user with given ID
 	 */
-	@Transactional(readOnly=true)
+	@Transactional(propagation=Propagation.SUPPORTS)
 	public Optional<UserDto> findById(long userId) {
-		UserEntity ue = userRepo.findOne(userId);
-		if (ue != null) {
-			return Optional.of(ue.toDto());
+		return userCache.findById(userId).map(UserView::toDto);
+	}
+
+	/**
+	 * Finds users whose e-mail address, first name, last name or phone number
+	 * starts with the query. Uses the in-memory search index if it is
+	 * enabled, otherwise the indexes of the database.
+	 * 
+	 * @param query
+	 *            prefix to search for
+	 * @param limit
+	 *            maximum number of users
+	 * @return matching users
+	 */
+	@Transactional(propagation=Propagation.SUPPORTS)
+	public List<UserDto> search(String query, int limit) {
+		List<UserDto> users = new ArrayList<>();
+
+		if (searchIndex.isEnabled()) {
+			for (long id : searchIndex.search(query, limit)) {
+				userCache.findById(id).ifPresent(u -> users.add(u.toDto()));
+			}
 		} else {
-			return Optional.empty();
+			String pattern = query.trim().replace("!", "!!").replace("%", "!%").replace("_", "!_") + '%';
+			userRepo.search(pattern, new PageRequest(0, limit)).forEach(u -> users.add(u.toDto()));
 		}
+
+		return users;
 	}
 
 	/**
@@ -100,16 +220,24 @@ public class UserService {
 			throw new IllegalArgumentException("Password is missing!");
 		}
 
-		String encryptedPassword = passwordEncoder.encode(ue.getPassword());
+		String encryptedPassword = passwordHasher.encode(ue.getPassword());
 		ue.setPassword(encryptedPassword);
 
-		Optional<UserEntity> existingUser = userRepo.findByEmail(user.getEmail());
+		Optional<UserView> existingUser = userCache.findByEmail(user.getEmail());
 
 		if (existingUser.isPresent() && user.getUserId() != existingUser.get().getId()) {
 			throw new IllegalArgumentException("Another user already has the given e-mail address!");
 		}
 
 		ue = userRepo.save(ue);
+		saved(ue);
+
+		return UserView.of(ue).toDto();
+	}
+
+	private void saved(UserEntity ue) {
+		userCache.invalidate(ue.getId(), ue.getEmail());
+		searchIndex.update(ue);
 
 		/**
 		 * if a previously deleted user is registered again, delete him from the
@@ -118,71 +246,152 @@ public class UserService {
 		if (deletedUserCache.checkUserDeleted(ue.getEmail())) {
 			deletedUserCache.removeFromCache(ue.getEmail());
 		}
-
-		return ue.toDto();
 	}
 
 	/**
-	 * Updates a user
+	 * Updates the changed properties of a user with a single UPDATE of their
+	 * columns. Nothing is written if no property changed. The password is
+	 * only hashed if it is part of the new data, changing it revokes all
+	 * access and refresh tokens of the user. The caller has to check that
+	 * the user may change the password.
 	 * 
 	 * @param user
+	 *            user to update, its version is the one the changes are based
+	 *            on
 	 * @param newData
-	 * @return
+	 *            changed properties
+	 * @return the updated user
+	 * @throws IllegalArgumentException
+	 *             if a property isn't a string, the e-mail address is invalid
+	 *             or another user already has it, or the password is empty
+	 * @throws DuplicateKeyException
+	 *             if another user got the e-mail address concurrently
+	 * @throws OptimisticLockingFailureException
+	 *             if the user was changed or deleted in the meantime
 	 */
 	public UserDto updateUser(final UserDto user, final Map<String, Object> newData) {
-		if (newData.containsKey("email")) {
-			updateEmail(newData, user);
+		UserEntity ue = new UserEntity().setId(user.getUserId()).setEmail(user.getEmail())
+				.setFirstName(user.getFirstName()).setLastName(user.getLastName()).setTitle(user.getTitle())
+				.setPhoneCode(user.getPhoneCode()).setPhoneNumber(user.getPhoneNumber()).setRole(user.getRole());
+		Map<String, Object> columns = new LinkedHashMap<>();
+
+		if (changed(newData, "email", ue.getEmail())) {
+			ue.setEmail(checkEmail(ue.getId(), string(newData, "email")));
+			columns.put("email", ue.getEmail());
+		}
+
+		if (changed(newData, "firstName", ue.getFirstName())) {
+			ue.setFirstName(string(newData, "firstName"));
+			columns.put("first_name", ue.getFirstName());
+		}
+
+		if (changed(newData, "lastName", ue.getLastName())) {
+			ue.setLastName(string(newData, "lastName"));
+			columns.put("last_name", ue.getLastName());
+		}
+
+		if (changed(newData, "title", ue.getTitle())) {
+			ue.setTitle(string(newData, "title"));
+			columns.put("title", ue.getTitle());
+		}
+
+		if (changed(newData, "phoneCode", ue.getPhoneCode())) {
+			ue.setPhoneCode(string(newData, "phoneCode"));
+			columns.put("phone_code", ue.getPhoneCode());
 		}
 
-		if (newData.containsKey("firstName")) {
-			user.setFirstName((String) newData.get("firstName"));
+		if (changed(newData, "phoneNumber", ue.getPhoneNumber())) {
+			ue.setPhoneNumber(string(newData, "phoneNumber"));
+			columns.put("phone_number", ue.getPhoneNumber());
 		}
 
-		if (newData.containsKey("lastName")) {
-			user.setLastName((String) newData.get("lastName"));
+		boolean passwordChanged = newData.containsKey("password");
+		if (passwordChanged) {
+			String password = string(newData, "password");
+			if (password == null || password.isEmpty()) {
+				throw new IllegalArgumentException("Password is missing!");
+			}
+			ue.setPasswordChanged(System.currentTimeMillis());
+			columns.put("password", passwordHasher.encode(password));
+			columns.put("password_changed", ue.getPasswordChanged());
 		}
 
-		if (newData.containsKey("title")) {
-			user.setTitle((String) newData.get("title"));
+		if (columns.isEmpty()) {
+			return user;
 		}
 
-		if (newData.containsKey("phoneCode")) {
-			user.setPhoneCode((String) newData.get("phoneCode"));
+		if (!userJdbcRepo.update(ue.getId(), user.getVersion(), columns)) {
+			// the cached user may be outdated, the next attempt reads it again
+			userCache.invalidate(user.getUserId(), user.getEmail());
+			throw new OptimisticLockingFailureException(
+					"User " + user.getUserId() + " was changed or deleted in the meantime!");
 		}
 
-		if (newData.containsKey("phoneNumber")) {
-			user.setPhoneNumber((String) newData.get("phoneNumber"));
+		ue.setVersion(user.getVersion() + 1);
+		userCache.invalidate(user.getUserId(), user.getEmail());
+		userCache.invalidate(ue.getId(), ue.getEmail());
+		searchIndex.update(ue);
+
+		if (passwordChanged) {
+			// tokens hold the e-mail address they were issued for
+			deletedUserCache.revokeTokens(user.getEmail(), ue.getPasswordChanged());
+			refreshTokens.revokeAll(ue.getId());
 		}
 
-		return saveUser(user);
+		return UserView.of(ue).toDto();
+	}
+
+	private static boolean changed(Map<String, Object> newData, String property, String value) {
+		return newData.containsKey(property) && !Objects.equals(newData.get(property), value);
 	}
 
 	/**
-	 * Updates e-mail of a user.
+	 * Returns the new value of a string property
 	 * 
 	 * @throws IllegalArgumentException
-	 *             if another user already has the updated e-mail address
+	 *             if the value is no string
 	 */
-	private String updateEmail(final Map<String, Object> newData, UserDto user) {
-		String newEmail = (String) newData.get("email");
-		if (!newEmail.equals(user.getEmail())) {
-			Optional<UserDto> otherUser = findByEmail(newEmail);
-			if (otherUser.isPresent() && otherUser.get().getUserId() != user.getUserId()) {
-				throw new IllegalArgumentException("Another user already has the given e-mail address!");
-			}
-			user.setEmail(newEmail);
+	private static String string(Map<String, Object> newData, String property) {
+		Object value = newData.get(property);
+		if (value != null && !(value instanceof String)) {
+			throw new IllegalArgumentException("Property '" + property + "' must be a string!");
+		}
+		return (String) value;
+	}
+
+	/**
+	 * Checks that the new e-mail address is valid and no other user has it
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the e-mail address is missing or has an invalid format,
+	 *             or another user already has it
+	 */
+	private String checkEmail(long userId, String newEmail) {
+		if (newEmail == null || newEmail.isEmpty()) {
+			throw new IllegalArgumentException("E-mail address is missing!");
+		}
+
+		if (!newEmail.matches(Constants.EMAIL_REGEX)) {
+			throw new IllegalArgumentException("E-mail address has invalid format!");
+		}
+
+		Optional<UserView> otherUser = userCache.findByEmail(newEmail);
+		if (otherUser.isPresent() && otherUser.get().getId() != userId) {
+			throw new IllegalArgumentException("Another user already has the given e-mail address!");
 		}
 
-		return null;
+		return newEmail;
 	}
 
 	/**
 	 * Deletes user with given ID
 	 */
 	public void deleteUser(final long userId) {
-		UserEntity user = userRepo.findOne(userId);
+		UserView user = userCache.findById(userId).get();
 		deletedUserCache.addDeletedUser(user.getEmail());
 		userRepo.delete(userId);
+		userCache.invalidate(userId, user.getEmail());
+		searchIndex.remove(userId);
 	}
 
 }
@@ -0,0 +1,43 @@
+package com.mprevisic.user.util;
+
+/**
+ * Change of the user blacklist, sent to all nodes over the
+ * {@link BlacklistEventChannel}
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public final class BlacklistEvent {
+
+	public enum Type {
+		ADDED, REMOVED
+	}
+
+	private final Type type;
+
+	private final String email;
+
+	private final long dateTime;
+
+	public BlacklistEvent(Type type, String email, long dateTime) {
+		this.type = type;
+		this.email = email;
+		this.dateTime = dateTime;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * Time of the change in milliseconds
+	 */
+	public long getDateTime() {
+		return dateTime;
+	}
+
+}
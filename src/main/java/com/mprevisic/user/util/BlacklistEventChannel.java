@@ -0,0 +1,28 @@
+package com.mprevisic.user.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Distributes changes of the user blacklist to all nodes, so that a user
+ * deleted on one node is rejected by the others as well. Events may be
+ * delivered more than once but always in the order in which they were
+ * published, so listeners have to apply them idempotently.
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public interface BlacklistEventChannel {
+
+	/**
+	 * Publishes a change to all nodes, including this one. Joins the current
+	 * transaction if there is one.
+	 */
+	void publish(BlacklistEvent event);
+
+	/**
+	 * Registers a listener for changes published after this call. Listeners
+	 * are called from a single thread at a time.
+	 */
+	void subscribe(Consumer<BlacklistEvent> listener);
+
+}
@@ -0,0 +1,213 @@
+package com.mprevisic.user.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter for strings. A negative answer is exact, a positive answer is
+ * wrong with a probability of about 1% and has to be confirmed by an exact
+ * lookup. Elements can be added in place until the capacity of the filter is
+ * reached, removing elements requires building a new filter.
+ *
+ * Probes are derived from the two 64-bit halves of the MurmurHash3 (x64,
+ * 128 bit) hash of the UTF-8 bytes, so strings with the same
+ * {@link String#hashCode()} don't share their probes. Checks don't lock and
+ * see the bits of completed adds.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public final class BloomFilter {
+
+	/**
+	 * Filter which doesn't contain any element and can't be added to
+	 */
+	public static final BloomFilter EMPTY = new BloomFilter(0);
+
+	/**
+	 * Bits per element, gives a false positive rate of about 1% with the
+	 * optimal number of probes
+	 */
+	private static final int BITS_PER_ELEMENT = 10;
+
+	private static final int PROBES = 7;
+
+	/**
+	 * Minimum number of elements a new filter can hold
+	 */
+	private static final int MIN_CAPACITY = 64;
+
+	/**
+	 * Multiplication constants of MurmurHash3
+	 */
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private final AtomicLongArray bits;
+
+	private final int numBits;
+
+	private final int capacity;
+
+	/**
+	 * Number of added elements, guarded by this
+	 */
+	private int size;
+
+	private BloomFilter(int capacity) {
+		this.capacity = capacity;
+		this.numBits = capacity * BITS_PER_ELEMENT;
+		this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+	}
+
+	/**
+	 * Creates a filter containing the given elements, which can hold as
+	 * many elements again before it is full
+	 */
+	public static BloomFilter of(Collection<String> elements) {
+		int capacity = (int) Math.min((Integer.MAX_VALUE - 63L) / BITS_PER_ELEMENT,
+				Math.max(MIN_CAPACITY, 2L * elements.size()));
+		BloomFilter filter = new BloomFilter(capacity);
+
+		for (String element : elements) {
+			if (filter.set(element)) {
+				filter.size++;
+			}
+		}
+
+		return filter;
+	}
+
+	/**
+	 * Adds the element if the filter isn't full. The element is contained
+	 * when the call returns. Adding an element whose bits are all set
+	 * already, e.g. an element added before, doesn't count against the
+	 * capacity.
+	 *
+	 * @return false if the filter is full and has to be replaced by a larger
+	 *         one
+	 */
+	public synchronized boolean add(String element) {
+		if (size >= capacity) {
+			return mightContain(element);
+		}
+
+		if (set(element)) {
+			size++;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the bits of the element
+	 *
+	 * @return true if a bit was not set before
+	 */
+	private boolean set(String element) {
+		long[] hash = hash(element.getBytes(StandardCharsets.UTF_8));
+		boolean changed = false;
+
+		for (int i = 0; i < PROBES; i++) {
+			int bit = bitIndex(hash[0] + i * hash[1]);
+			long mask = 1L << bit;
+			changed |= (bits.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m) & mask) == 0;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Checks if the element might be contained in the filter
+	 *
+	 * @return false if the element is definitely not contained
+	 */
+	public boolean mightContain(String element) {
+		if (numBits == 0 || element == null) {
+			return false;
+		}
+
+		long[] hash = hash(element.getBytes(StandardCharsets.UTF_8));
+
+		for (int i = 0; i < PROBES; i++) {
+			int bit = bitIndex(hash[0] + i * hash[1]);
+			if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private int bitIndex(long hash) {
+		return (int) ((hash & Long.MAX_VALUE) % numBits);
+	}
+
+	/**
+	 * Returns both halves of the MurmurHash3 x64 128-bit hash with seed 0
+	 */
+	static long[] hash(byte[] data) {
+		int length = data.length;
+		int tail = length & ~15;
+		long h1 = 0;
+		long h2 = 0;
+
+		for (int i = 0; i < tail; i += 16) {
+			h1 ^= mixK1(littleEndian(data, i, i + 8));
+			h1 = Long.rotateLeft(h1, 27) + h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= mixK2(littleEndian(data, i + 8, i + 16));
+			h2 = Long.rotateLeft(h2, 31) + h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		if (length - tail > 8) {
+			h2 ^= mixK2(littleEndian(data, tail + 8, length));
+		}
+		if (length > tail) {
+			h1 ^= mixK1(littleEndian(data, tail, Math.min(length, tail + 8)));
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		h2 += h1;
+
+		return new long[] { h1, h2 };
+	}
+
+	/**
+	 * Reads up to eight bytes as a little-endian number
+	 */
+	private static long littleEndian(byte[] data, int start, int end) {
+		long value = 0;
+		for (int i = end - 1; i >= start; i--) {
+			value = (value << 8) | (data[i] & 0xff);
+		}
+		return value;
+	}
+
+	private static long mixK1(long k1) {
+		return Long.rotateLeft(k1 * C1, 31) * C2;
+	}
+
+	private static long mixK2(long k2) {
+		return Long.rotateLeft(k2 * C2, 33) * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.mprevisic.user.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import com.mprevisic.user.dto.UserDto;
+
+/**
+ * Reads users from CSV (RFC 4180) one row at a time. The first row is a
+ * header with the names of the user properties in the order of the columns,
+ * e.g. "email,password,firstName,lastName". Fields can be quoted with double
+ * quotes, empty fields are read as null.
+ *
+ * {@link #next()} throws an {@link IllegalArgumentException} for an invalid
+ * row, reading can continue with the following row.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public class CsvUserReader implements Iterator<UserDto> {
+
+	private static final String[] COLUMNS = { "email", "password", "firstname", "lastname", "title", "phonecode",
+			"phonenumber", "role" };
+
+	private final Reader reader;
+
+	/**
+	 * Index of the user property (in {@link #COLUMNS}) of each column
+	 */
+	private final int[] columns;
+
+	private List<String> nextRecord;
+
+	/**
+	 * Creates the reader and reads the header
+	 *
+	 * @param reader
+	 *            CSV input, should be buffered
+	 * @throws IllegalArgumentException
+	 *             if the header is missing or contains unknown columns
+	 */
+	public CsvUserReader(Reader reader) {
+		this.reader = reader;
+
+		List<String> header = readNonEmptyRecord();
+		if (header == null) {
+			throw new IllegalArgumentException("CSV header is missing!");
+		}
+
+		columns = new int[header.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = columnIndex(header.get(i));
+		}
+	}
+
+	private static int columnIndex(String name) {
+		String normalized = name.trim().toLowerCase(Locale.ROOT);
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (COLUMNS[i].equals(normalized)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown CSV column '" + name + "'!");
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextRecord == null) {
+			nextRecord = readNonEmptyRecord();
+		}
+		return nextRecord != null;
+	}
+
+	@Override
+	public UserDto next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		List<String> record = nextRecord;
+		nextRecord = null;
+
+		if (record.size() != columns.length) {
+			throw new IllegalArgumentException(
+					"Row has " + record.size() + " columns instead of " + columns.length + '!');
+		}
+
+		UserDto user = new UserDto();
+		for (int i = 0; i < columns.length; i++) {
+			String value = record.get(i).isEmpty() ? null : record.get(i);
+			setProperty(user, columns[i], value);
+		}
+		return user;
+	}
+
+	private static void setProperty(UserDto user, int column, String value) {
+		switch (column) {
+		case 0:
+			user.setEmail(value);
+			break;
+		case 1:
+			user.setPassword(value);
+			break;
+		case 2:
+			user.setFirstName(value);
+			break;
+		case 3:
+			user.setLastName(value);
+			break;
+		case 4:
+			user.setTitle(value);
+			break;
+		case 5:
+			user.setPhoneCode(value);
+			break;
+		case 6:
+			user.setPhoneNumber(value);
+			break;
+		default:
+			try {
+				user.setRole(value == null ? null : Integer.valueOf(value.trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Role '" + value + "' is not a number!");
+			}
+		}
+	}
+
+	private List<String> readNonEmptyRecord() {
+		try {
+			List<String> record;
+			do {
+				record = readRecord();
+			} while (record != null && record.size() == 1 && record.get(0).isEmpty());
+			return record;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the fields of the next record (line), returns null at the end of
+	 * the input
+	 */
+	private List<String> readRecord() throws IOException {
+		int c = reader.read();
+		if (c < 0) {
+			return null;
+		}
+
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		while (true) {
+			if (quoted) {
+				if (c < 0) {
+					// unterminated quote, take the rest of the input
+					fields.add(field.toString());
+					return fields;
+				}
+				if (c == '"') {
+					c = reader.read();
+					if (c != '"') {
+						quoted = false;
+						continue;
+					}
+				}
+				field.append((char) c);
+			} else if (c < 0 || c == '\n') {
+				fields.add(field.toString());
+				return fields;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c != '\r') {
+				field.append((char) c);
+			}
+
+			c = reader.read();
+		}
+	}
+
+}
@@ -1,26 +1,26 @@
 package com.mprevisic.user.util;
 
-import java.text.ParseException;
 import java.util.Date;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.mprevisic.user.Constants;
-import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.security.AuthFailureException;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.security.JwtClaims;
+import com.mprevisic.user.security.JwtValidator;
 import com.mprevisic.user.security.KeyPairContainer;
+import com.mprevisic.user.security.SigningKey;
+import com.mprevisic.user.service.Blocking;
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
-import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.JWTParser;
-import com.nimbusds.jwt.ReadOnlyJWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
 /**
@@ -31,24 +31,30 @@ import com.nimbusds.jwt.SignedJWT;
  */
 @Component
 public class JwtUtil {
-
-	private final JWSSigner signer;
-
-	private final JWSVerifier verifier;
 	
-	private final UserRepository userRepo;
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass()); 
+
+	private final KeyPairContainer keyPairContainer;
 	
+	private final UserCache userCache;
+
+	private final AuthMetrics metrics;
+
+	private final JwtValidator validator;
 
 	@Autowired
-	public JwtUtil(KeyPairContainer keyPairContainer, UserRepository userRepo) {
-		// Create RSA-signer with the private key
-		signer = new RSASSASigner(keyPairContainer.getPrivateKey());
-		verifier = new RSASSAVerifier(keyPairContainer.getPublicKey());
-		this.userRepo = userRepo;
+	public JwtUtil(KeyPairContainer keyPairContainer, UserCache userCache, AuthMetrics metrics) {
+		this.keyPairContainer = keyPairContainer;
+		this.userCache = userCache;
+		this.metrics = metrics;
+		this.validator = new JwtValidator(keyPairContainer, metrics);
 	}
 
 	/**
 	 * Creates JWT access token for given user
+	 * 
+	 * @throws IllegalStateException
+	 *             if the token couldn't be signed
 	 */
 	public String createAccessToken(String username, Integer role) {
 		return createToken(username, role, Constants.ACCESS_TOKEN_TTL);
@@ -56,6 +62,9 @@ public class JwtUtil {
 
 	/**
 	 * Creates JWT refresh token for given user
+	 * 
+	 * @throws IllegalStateException
+	 *             if the token couldn't be signed
 	 */
 	public String createRefreshToken(String username, Integer role) {
 		return createToken(username, role, Constants.REFRESH_TOKEN_TTL);
@@ -63,92 +72,58 @@ public class JwtUtil {
 	
 	private String createToken(String username, Integer role, long ttl) {
 		// Prepare JWT with claims set
+		long now = System.currentTimeMillis();
 		JWTClaimsSet claimsSet = new JWTClaimsSet();
 		claimsSet.setSubject(username);
 		claimsSet.setIssuer(Constants.TOKEN_ISSUER);
-		claimsSet.setExpirationTime(new Date(new Date().getTime() + ttl));
+		claimsSet.setExpirationTime(new Date(now + ttl));
+		claimsSet.setCustomClaim(JwtClaims.ISSUED_AT_CLAIM, now);
 		claimsSet.setCustomClaim("role", role);
 
-		SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claimsSet);
+		// the key ID tells verifiers which key was used for signing
+		SigningKey key = keyPairContainer.getSigningKey();
+		JWSHeader header = new JWSHeader.Builder(key.getAlgorithm().getJwsAlgorithm()).keyID(key.getKid()).build();
+		SignedJWT signedJWT = new SignedJWT(header, claimsSet);
 
-		// Compute the RSA signature
+		// Compute the signature
+		long start = System.nanoTime();
 		try {
-			signedJWT.sign(signer);
+			signedJWT.sign(key.getSigner());
 		} catch (JOSEException e) {
-			e.printStackTrace();
+			LOG.error("Signing token failed [kid=" + key.getKid() + "]", e);
+			throw new IllegalStateException("Token could not be signed", e);
 		}
+		metrics.getTokenSigning().record(System.nanoTime() - start);
 
 		return signedJWT.serialize();
 	}
 
 	/**
 	 * Validates the JWT refresh token and returns the user holding the
-	 * token if valid
+	 * token if valid. Tokens issued before the last password change of the
+	 * user are revoked.
 	 */
-	public Optional<String> validateRefreshToken(String refreshToken) {
-		String user = null;
-		
-		try {
-			JWT jwt = JWTParser.parse(refreshToken);
-
-			if (jwt instanceof SignedJWT) {
-				SignedJWT signedJwt = (SignedJWT) jwt;
-
-				if (!signedJwt.verify(verifier)) {
-					return Optional.empty();
-				}
-
-				if (checkTokenExpired(jwt)) {
-					return Optional.empty();
-				}
-				
-				if (checkUserExists(jwt)) {
-					user = jwt.getJWTClaimsSet().getSubject();
-				} else {
-					return Optional.empty();
-				}
-				
-				if (!checkIssuer(jwt)) {
-					return Optional.empty();
-				}
-			}
-		} catch (ParseException | JOSEException ex) {
+	@Blocking
+	public Optional<UserDto> validateRefreshToken(String refreshToken) {
+		if (refreshToken == null) {
 			return Optional.empty();
 		}
 
-		return Optional.of(user);
-	}
-
-	private boolean checkTokenExpired(JWT jwt) throws ParseException {
-		Date referenceTime = new Date();
-		ReadOnlyJWTClaimsSet claims = jwt.getJWTClaimsSet();
-
-		Date expirationTime = claims.getExpirationTime();
-		if (expirationTime == null || expirationTime.before(referenceTime)) {
-			return true;
-		}
-
-		return false;
-	}
-
-	private boolean checkIssuer(JWT jwt) throws ParseException {
-		ReadOnlyJWTClaimsSet claims = jwt.getJWTClaimsSet();
-		String issuer = claims.getIssuer();
-		if (!Constants.TOKEN_ISSUER.equals(issuer)) {
-			return false;
+		JwtClaims claims;
+		try {
+			// structure, header and claims are checked before the signature
+			claims = validator.validate(refreshToken);
+		} catch (AuthFailureException e) {
+			return Optional.empty();
 		}
-		return true;
-	}
 
-	private boolean checkUserExists(JWT jwt) throws ParseException {
-		ReadOnlyJWTClaimsSet claims = jwt.getJWTClaimsSet();
 		String email = claims.getSubject();
-		
-		if (userRepo.findByEmail(email).isPresent()) {
-			return true;
+		if (email == null) {
+			return Optional.empty();
 		}
-		
-		return false;
+
+		long issuedAt = claims.getIssuedAt();
+		return userCache.findByEmail(email).filter(u -> issuedAt >= u.getPasswordChanged()).map(UserView::toDto);
 	}
 
 }
@@ -0,0 +1,39 @@
+package com.mprevisic.user.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process event channel for running a single node and for tests, events
+ * are delivered synchronously to the listeners of this node
+ * 
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+@ConditionalOnProperty(name = "blacklist.sync", havingValue = "local")
+public class LocalBlacklistEventChannel implements BlacklistEventChannel {
+
+	private final List<Consumer<BlacklistEvent>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void publish(BlacklistEvent event) {
+		listeners.forEach(l -> l.accept(event));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void subscribe(Consumer<BlacklistEvent> listener) {
+		listeners.add(listener);
+	}
+
+}
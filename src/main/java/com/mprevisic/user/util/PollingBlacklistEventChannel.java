@@ -0,0 +1,202 @@
+package com.mprevisic.user.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.mprevisic.user.domain.UserBlacklistEventEntity;
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserBlacklistEventRepository;
+
+/**
+ * Event channel using the shared database. Events are appended to the
+ * user_blacklist_events table and every node polls for events with an ID
+ * above the highest ID it has already seen, which is a cheap index range
+ * query returning only the changes since the last poll.
+ *
+ * Auto-increment IDs are assigned on insert but become visible on commit, so
+ * an event with a lower ID can show up after one with a higher ID. Missing
+ * IDs below the highest seen ID are therefore remembered for a while and the
+ * events after them are read again until the gap is filled or the gap times
+ * out (rolled back inserts leave permanent gaps). Events read again are
+ * delivered again in the original order. An event whose transaction commits
+ * more than the gap timeout after a later event was read is skipped, which
+ * is logged and counted; the {@link UserBlacklistCache} picks up such
+ * changes when it reconciles with the blacklist table.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+@ConditionalOnProperty(name = "blacklist.sync", havingValue = "db", matchIfMissing = true)
+public class PollingBlacklistEventChannel implements BlacklistEventChannel {
+
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+	private static final int BATCH_SIZE = 500;
+
+	/**
+	 * Larger jumps of the ID are not tracked as gaps, the database skipped
+	 * the IDs (e.g. after a restart) rather than having uncommitted events
+	 */
+	private static final int MAX_GAP = 100;
+
+	private final UserBlacklistEventRepository eventRepo;
+
+	private final long gapTimeout;
+
+	private final long retention;
+
+	private final Counter skipped;
+
+	private final List<Consumer<BlacklistEvent>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Highest event ID seen, -1 before the first subscription
+	 */
+	private long lastSeenId = -1;
+
+	/**
+	 * Missing event IDs below the highest seen ID mapped to the time when
+	 * they were noticed
+	 */
+	private final TreeMap<Long, Long> gaps = new TreeMap<>();
+
+	/**
+	 * Creates the event channel
+	 *
+	 * @param eventRepo
+	 *            repository for the events
+	 * @param gapTimeout
+	 *            time in milliseconds to wait for missing events
+	 * @param retention
+	 *            time in milliseconds events are kept in the database
+	 */
+	@Autowired
+	public PollingBlacklistEventChannel(UserBlacklistEventRepository eventRepo,
+			@Value("${blacklist.sync.gap-timeout:10000}") long gapTimeout,
+			@Value("${blacklist.sync.retention:3600000}") long retention, MetricsRegistry metrics) {
+		this.eventRepo = eventRepo;
+		this.gapTimeout = gapTimeout;
+		this.retention = retention;
+		this.skipped = metrics.counter("blacklist_sync_skipped_events_total",
+				"Missing blacklist events skipped because they weren't committed within the gap timeout");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void publish(BlacklistEvent event) {
+		eventRepo.save(new UserBlacklistEventEntity()
+				.setType(event.getType())
+				.setEmail(event.getEmail())
+				.setDateTime(event.getDateTime()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void subscribe(Consumer<BlacklistEvent> listener) {
+		if (lastSeenId < 0) {
+			lastSeenId = eventRepo.findMaxId();
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Reads the events published since the last poll and delivers them to
+	 * the listeners
+	 */
+	@Scheduled(initialDelayString = "${blacklist.sync.poll-interval:2000}",
+			fixedDelayString = "${blacklist.sync.poll-interval:2000}")
+	public synchronized void poll() {
+		if (listeners.isEmpty()) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		skipTimedOutGaps(now);
+
+		long from = gaps.isEmpty() ? lastSeenId : gaps.firstKey() - 1;
+		List<UserBlacklistEventEntity> events;
+
+		do {
+			events = eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(from);
+
+			for (UserBlacklistEventEntity e : events) {
+				long id = e.getId();
+
+				if (id > lastSeenId) {
+					if (id - lastSeenId <= MAX_GAP) {
+						for (long missing = lastSeenId + 1; missing < id; missing++) {
+							gaps.put(missing, now);
+						}
+					}
+					lastSeenId = id;
+				} else {
+					gaps.remove(id);
+				}
+
+				deliver(new BlacklistEvent(e.getType(), e.getEmail(), e.getDateTime()));
+				from = id;
+			}
+		} while (events.size() == BATCH_SIZE);
+	}
+
+	/**
+	 * Stops waiting for missing events noticed more than the gap timeout ago
+	 */
+	private void skipTimedOutGaps(long now) {
+		List<Long> timedOut = new ArrayList<>();
+		for (Iterator<Map.Entry<Long, Long>> it = gaps.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Long, Long> gap = it.next();
+			if (gap.getValue() + gapTimeout <= now) {
+				timedOut.add(gap.getKey());
+				it.remove();
+			}
+		}
+
+		if (!timedOut.isEmpty()) {
+			skipped.add(timedOut.size());
+			LOG.warn("Skipped missing blacklist events " + timedOut
+					+ ", changes of uncommitted events are picked up by the next reconciliation");
+		}
+	}
+
+	private void deliver(BlacklistEvent event) {
+		for (Consumer<BlacklistEvent> listener : listeners) {
+			try {
+				listener.accept(event);
+			} catch (RuntimeException e) {
+				LOG.error("Failed to apply blacklist event", e);
+			}
+		}
+	}
+
+	/**
+	 * Deletes events older than the retention time, all nodes have read them
+	 * long ago and nodes started later load the blacklist itself
+	 */
+	@Scheduled(initialDelayString = "${blacklist.sync.retention:3600000}",
+			fixedDelayString = "${blacklist.sync.retention:3600000}")
+	public void prune() {
+		int count = eventRepo.deleteCreatedBefore(System.currentTimeMillis() - retention);
+		LOG.debug("Deleted " + count + " blacklist events");
+	}
+
+}
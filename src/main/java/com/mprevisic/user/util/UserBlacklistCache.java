@@ -1,9 +1,10 @@
 package com.mprevisic.user.util;
 
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
@@ -14,11 +15,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.mprevisic.user.Constants;
 import com.mprevisic.user.domain.UserBlacklistEntity;
 import com.mprevisic.user.repository.UserBlacklistRepository;
 
 /**
- * In-memory user blacklist
+ * In-memory user blacklist. Almost all checks are for users which are not
+ * blacklisted, so they are answered by a Bloom filter, only possible matches
+ * are looked up in the map. Added users are set in the filter in place, it
+ * is only rebuilt when users are removed or it is full.
+ * 
+ * Changes are published over the {@link BlacklistEventChannel}, so that the
+ * caches of all nodes converge without reloading the whole blacklist.
+ * Changes whose events were missed (e.g. skipped by the polling channel) are
+ * picked up by a periodic reconciliation with the blacklist table.
+ * 
+ * Users are blacklisted when they are deleted or change their password, which
+ * revokes all access tokens issued until then. They are removed from the
+ * blacklist when these tokens have expired, i.e. after the access token TTL.
+ * A queue ordered by the time they were added lets the sweep touch only the
+ * expired users.
  * 
  * @author Marko Previsic
  * @created May 22, 2017
@@ -31,10 +47,39 @@ public class UserBlacklistCache {
 	@Autowired
 	private UserBlacklistRepository blacklistRepo;
 
-	private static final long ONE_HOUR = 60 * 60 * 1000L;
+	@Autowired
+	private BlacklistEventChannel eventChannel;
+
+	/**
+	 * Time users stay blacklisted, they can't have valid access tokens
+	 * afterwards
+	 */
+	private static final long RETENTION = Constants.ACCESS_TOKEN_TTL;
 
 	private Map<String, Date> deletedUserMap = new ConcurrentHashMap<>();
 
+	private volatile BloomFilter deletedUserFilter = BloomFilter.EMPTY;
+
+	/**
+	 * Users in the order of their expiry, may contain outdated entries of
+	 * users which were removed or deleted again in the meantime
+	 */
+	private final PriorityQueue<Expiry> expiryQueue = new PriorityQueue<>();
+
+	/**
+	 * Cached users which were missing in the blacklist table at the last
+	 * reconciliation, guarded by this
+	 */
+	private Map<String, Date> missingInTable = new HashMap<>();
+
+	public UserBlacklistCache() {
+	}
+
+	UserBlacklistCache(UserBlacklistRepository blacklistRepo, BlacklistEventChannel eventChannel) {
+		this.blacklistRepo = blacklistRepo;
+		this.eventChannel = eventChannel;
+	}
+
 	/**
 	 * Initializes the cache on server start-up by reading blacklisted users
 	 * from DB
@@ -42,32 +87,69 @@ public class UserBlacklistCache {
 	@PostConstruct
 	public void init() {
 		LOG.debug("Initializing blacklist cache");
-		
+
+		// subscribe before reading the blacklist, changes in between are
+		// applied twice which doesn't change the result
+		eventChannel.subscribe(this::apply);
+
 		List<UserBlacklistEntity> users = blacklistRepo.findAll();
 
-		users.forEach(u -> deletedUserMap.put(u.getEmail(), new Date(u.getDateTime())));
+		users.forEach(u -> put(u.getEmail(), u.getDateTime()));
 	}
 
 	/**
 	 * Adds a deleted user to the cache
 	 */
 	public void addDeletedUser(String user) {
-		Date now = new Date();
+		revokeTokens(user, System.currentTimeMillis());
+	}
 
-		deletedUserMap.put(user, now);
+	/**
+	 * Revokes all access tokens of the user issued before the given time. A
+	 * user who is already blacklisted is kept with the new time.
+	 * 
+	 * @param user
+	 *            subject of the tokens
+	 * @param time
+	 *            revocation time in milliseconds since the epoch
+	 */
+	public void revokeTokens(String user, long time) {
+		put(user, time);
 
-		UserBlacklistEntity bl = new UserBlacklistEntity();
-		bl.setEmail(user);
-		bl.setDateTime(now.getTime());
+		if (blacklistRepo.updateDateTime(user, time) == 0) {
+			UserBlacklistEntity bl = new UserBlacklistEntity();
+			bl.setEmail(user);
+			bl.setDateTime(time);
 
-		blacklistRepo.save(bl);
+			blacklistRepo.save(bl);
+		}
+		eventChannel.publish(new BlacklistEvent(BlacklistEvent.Type.ADDED, user, time));
 	}
 
 	/**
-	 * Checks if user is deleted
+	 * Checks if user is blacklisted, i.e. deleted or has revoked tokens
 	 */
 	public boolean checkUserDeleted(String user) {
-		return deletedUserMap.containsKey(user);
+		return deletedUserFilter.mightContain(user) && deletedUserMap.containsKey(user);
+	}
+
+	/**
+	 * Checks if an access token of the user issued at the given time is
+	 * revoked.
+	 * 
+	 * @param user
+	 *            subject of the token
+	 * @param issuedAt
+	 *            issue time of the token in milliseconds, 0 for tokens
+	 *            without one
+	 */
+	public boolean isRevoked(String user, long issuedAt) {
+		if (!deletedUserFilter.mightContain(user)) {
+			return false;
+		}
+
+		Date revoked = deletedUserMap.get(user);
+		return revoked != null && issuedAt < revoked.getTime();
 	}
 
 	/**
@@ -75,29 +157,150 @@ public class UserBlacklistCache {
 	 */
 	public void removeFromCache(String user) {
 		deletedUserMap.remove(user);
+		rebuildFilter();
 		blacklistRepo.deleteByEmail(user);
+		eventChannel.publish(new BlacklistEvent(BlacklistEvent.Type.REMOVED, user, System.currentTimeMillis()));
 	}
 
 	/**
-	 * Clears the cache by removing users deleted more than 1 hour ago to save
-	 * memory (access tokens have a TTL of 1 hour so it's unnecessary to hold
-	 * them any longer in the cache)
+	 * Applies a change published by any node to the cache
 	 */
-	@Scheduled(fixedDelay = ONE_HOUR)
+	void apply(BlacklistEvent event) {
+		if (event.getType() == BlacklistEvent.Type.ADDED) {
+			if (event.getDateTime() < System.currentTimeMillis() - RETENTION) {
+				// already removed by clearCache()
+				return;
+			}
+			put(event.getEmail(), event.getDateTime());
+		} else {
+			deletedUserMap.remove(event.getEmail());
+			rebuildFilter();
+		}
+	}
+
+	private void put(String user, long dateTime) {
+		synchronized (this) {
+			// the user is set in the filter before it is put into the map,
+			// so a user found in the map is never rejected by the filter
+			if (!deletedUserFilter.add(user)) {
+				BloomFilter filter = BloomFilter.of(deletedUserMap.keySet());
+				filter.add(user);
+				deletedUserFilter = filter;
+			}
+			deletedUserMap.put(user, new Date(dateTime));
+		}
+		synchronized (expiryQueue) {
+			expiryQueue.add(new Expiry(user, dateTime));
+		}
+	}
+
+	/**
+	 * Reconciles the cache with the blacklist table, for changes whose events
+	 * were missed. Users of the table which are missing in the cache, or were
+	 * blacklisted again later, are put into the cache. Cached users which
+	 * are missing in the table are only removed if they were missing in the
+	 * previous reconciliation as well with the same time, so that users
+	 * whose insert isn't committed yet and users read by a reconciliation
+	 * which overlapped their removal are not kept wrongly.
+	 */
+	@Scheduled(initialDelayString = "${blacklist.sync.reconcile-interval:60000}",
+			fixedDelayString = "${blacklist.sync.reconcile-interval:60000}")
+	public void reconcile() {
+		Map<String, Long> table = new HashMap<>();
+		for (UserBlacklistEntity u : blacklistRepo.findAll()) {
+			table.put(u.getEmail(), u.getDateTime());
+		}
+
+		long expired = System.currentTimeMillis() - RETENTION;
+		int added = 0;
+		int removed = 0;
+
+		synchronized (this) {
+			for (Map.Entry<String, Long> u : table.entrySet()) {
+				Date cached = deletedUserMap.get(u.getKey());
+				if (u.getValue() >= expired && (cached == null || cached.getTime() < u.getValue())) {
+					put(u.getKey(), u.getValue());
+					added++;
+				}
+			}
+
+			Map<String, Date> missing = new HashMap<>();
+			for (Map.Entry<String, Date> u : deletedUserMap.entrySet()) {
+				if (!table.containsKey(u.getKey())) {
+					if (u.getValue().equals(missingInTable.get(u.getKey()))
+							&& deletedUserMap.remove(u.getKey(), u.getValue())) {
+						removed++;
+					} else {
+						missing.put(u.getKey(), u.getValue());
+					}
+				}
+			}
+			missingInTable = missing;
+
+			if (removed > 0) {
+				rebuildFilter();
+			}
+		}
+
+		if (added > 0 || removed > 0) {
+			LOG.warn("Reconciled blacklist with missed changes [added=" + added + ", removed=" + removed + "]");
+		}
+	}
+
+	/**
+	 * Clears the cache by removing users deleted longer than the access token
+	 * TTL ago to save memory (all their access tokens have expired, so it's
+	 * unnecessary to hold them any longer in the cache). The expired users
+	 * are deleted from DB with a single statement.
+	 */
+	@Scheduled(initialDelayString = "${blacklist.sweep-interval:60000}",
+			fixedDelayString = "${blacklist.sweep-interval:60000}")
 	public void clearCache() {
-		Date oneHourAgo = new Date(System.currentTimeMillis() - ONE_HOUR);
+		long expired = System.currentTimeMillis() - RETENTION;
+		boolean removed = false;
 
-		List<String> removeList = new ArrayList<>();
-		deletedUserMap.forEach((u, d) -> {
-			if (d.before(oneHourAgo)) {
-				removeList.add(u);
+		synchronized (expiryQueue) {
+			while (!expiryQueue.isEmpty() && expiryQueue.peek().dateTime < expired) {
+				Expiry expiry = expiryQueue.poll();
+				// the user may have been removed or deleted again later
+				removed |= deletedUserMap.remove(expiry.user, new Date(expiry.dateTime));
 			}
-		});
+		}
+
+		if (removed) {
+			rebuildFilter();
+		}
+
+		// also covers users expired on other nodes
+		int count = blacklistRepo.deleteAddedBefore(expired);
+		LOG.debug("Removed " + count + " users from the blacklist");
+	}
+
+	/**
+	 * Replaces the Bloom filter by one containing the current users of the
+	 * map, after users were removed. Synchronized with adding users so that a
+	 * rebuild with an older state of the map can't replace a newer filter.
+	 */
+	private synchronized void rebuildFilter() {
+		deletedUserFilter = BloomFilter.of(deletedUserMap.keySet());
+	}
+
+	private static final class Expiry implements Comparable<Expiry> {
+
+		private final String user;
+
+		private final long dateTime;
+
+		private Expiry(String user, long dateTime) {
+			this.user = user;
+			this.dateTime = dateTime;
+		}
+
+		@Override
+		public int compareTo(Expiry other) {
+			return Long.compare(dateTime, other.dateTime);
+		}
 
-		removeList.forEach(r -> {
-			deletedUserMap.remove(r);
-			blacklistRepo.deleteByEmail(r);
-		});
 	}
 
 }
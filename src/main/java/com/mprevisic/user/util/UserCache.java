@@ -0,0 +1,162 @@
+package com.mprevisic.user.util;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.Counter;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.metrics.Timer;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.AuthMetrics;
+
+/**
+ * Bounded in-memory cache of users, looked up by ID or by e-mail address.
+ * Users which are not found are not cached. Entries are evicted when the
+ * cache is full, after the TTL passed or when the user is changed through
+ * {@link #invalidate(long, String)}.
+ *
+ * Users are cached as immutable views without password hash.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class UserCache {
+
+	private final UserRepository userRepo;
+
+	private final Cache<Long, UserView> usersById;
+
+	/**
+	 * Maps e-mail addresses to user IDs. An entry is only valid if the cached
+	 * user still has the e-mail address.
+	 */
+	private final Cache<String, Long> idsByEmail;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final Timer lookupTime;
+
+	/**
+	 * @param maxSize
+	 *            maximum number of cached users (0 disables caching)
+	 * @param ttl
+	 *            maximum time in milliseconds a user stays in the cache
+	 */
+	@Autowired
+	public UserCache(UserRepository userRepo, @Value("${user-cache.max-size:10000}") long maxSize,
+			@Value("${user-cache.ttl:60000}") long ttl, MetricsRegistry metrics) {
+		this.userRepo = userRepo;
+		this.usersById = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.recordStats().build();
+		this.idsByEmail = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.build();
+
+		this.hits = metrics.counter("user_cache_hits_total", "User lookups served from the cache");
+		this.misses = metrics.counter("user_cache_misses_total", "User lookups which were read from DB");
+		this.lookupTime = metrics.timer(AuthMetrics.USER_LOOKUP, AuthMetrics.USER_LOOKUP_HELP);
+		metrics.gauge("user_cache_size", "Number of cached users", usersById::estimatedSize);
+		metrics.counter("user_cache_evictions_total", "Users evicted from the cache because of size or TTL",
+				() -> usersById.stats().evictionCount());
+	}
+
+	/**
+	 * Returns user with given ID
+	 */
+	public Optional<UserView> findById(long id) {
+		UserView user = usersById.getIfPresent(id);
+
+		if (user != null) {
+			hits.increment();
+			return Optional.of(user);
+		}
+
+		misses.increment();
+		long start = System.nanoTime();
+		Optional<UserView> loaded = userRepo.findViewById(id);
+		lookupTime.record(System.nanoTime() - start);
+		loaded.ifPresent(this::put);
+		return loaded;
+	}
+
+	/**
+	 * Returns user with given e-mail address
+	 */
+	public Optional<UserView> findByEmail(String email) {
+		Long id = idsByEmail.getIfPresent(email);
+
+		if (id != null) {
+			UserView user = usersById.getIfPresent(id);
+
+			if (user != null && email.equals(user.getEmail())) {
+				hits.increment();
+				return Optional.of(user);
+			}
+		}
+
+		misses.increment();
+		long start = System.nanoTime();
+		Optional<UserView> loaded = userRepo.findViewByEmail(email);
+		lookupTime.record(System.nanoTime() - start);
+		loaded.ifPresent(this::put);
+		return loaded;
+	}
+
+	private void put(UserView user) {
+		usersById.put(user.getId(), user);
+		if (user.getEmail() != null) {
+			idsByEmail.put(user.getEmail(), user.getId());
+		}
+	}
+
+	/**
+	 * Removes a changed or deleted user from the cache. If called within a
+	 * transaction, the user is removed again after the transaction completed,
+	 * so that a concurrent lookup can't cache the state before the commit.
+	 * Lookups by a previous e-mail address of the user miss as well, since the
+	 * e-mail of the cached user is checked.
+	 */
+	public void invalidate(long id, String email) {
+		evict(id, email);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					evict(id, email);
+				}
+
+			});
+		}
+	}
+
+	/**
+	 * Removes all users from the cache, e.g. after users were changed directly
+	 * in DB
+	 */
+	public void invalidateAll() {
+		usersById.invalidateAll();
+		idsByEmail.invalidateAll();
+	}
+
+	private void evict(long id, String email) {
+		usersById.invalidate(id);
+
+		if (email != null) {
+			idsByEmail.invalidate(email);
+		}
+	}
+
+}
@@ -0,0 +1,283 @@
+package com.mprevisic.user.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserField;
+import com.mprevisic.user.repository.UserJdbcRepository;
+
+/**
+ * Optional in-memory prefix index over the e-mail address, names and phone
+ * number of all users for typeahead search. Terms are kept in a sorted set,
+ * so all terms starting with a prefix are a contiguous range found in
+ * logarithmic time.
+ *
+ * The index is updated after users are saved or deleted on this node and
+ * rebuilt periodically from the database to pick up changes done by other
+ * nodes or directly in the database.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+@Component
+public class UserSearchIndex {
+
+	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+	private static final List<UserField> FIELDS = Arrays.asList(UserField.EMAIL, UserField.FIRST_NAME,
+			UserField.LAST_NAME, UserField.PHONE_NUMBER);
+
+	/**
+	 * Separates the term from the user ID in the entries of the index
+	 */
+	private static final char SEPARATOR = '\u0000';
+
+	private final UserJdbcRepository userJdbcRepo;
+
+	private final boolean enabled;
+
+	private volatile Terms terms = new Terms();
+
+	/**
+	 * Changes done while the index is rebuilt, applied to the new index
+	 */
+	private List<UserEntity> pendingChanges;
+
+	@Autowired
+	public UserSearchIndex(UserJdbcRepository userJdbcRepo, @Value("${user-search.index:false}") boolean enabled) {
+		this.userJdbcRepo = userJdbcRepo;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns true if searches should be answered by the index
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (enabled) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Replaces the index by one built from all users in the database
+	 */
+	@Scheduled(initialDelayString = "${user-search.rebuild-interval:300000}",
+			fixedDelayString = "${user-search.rebuild-interval:300000}")
+	public void rebuild() {
+		if (!enabled) {
+			return;
+		}
+
+		synchronized (this) {
+			pendingChanges = new ArrayList<>();
+		}
+
+		Terms newTerms = new Terms();
+		userJdbcRepo.forEachUser(FIELDS, 0, 0, (id, values) -> newTerms.put(id,
+				terms((String) values[0], (String) values[1], (String) values[2], (String) values[3])));
+
+		synchronized (this) {
+			pendingChanges.forEach(u -> apply(newTerms, u));
+			pendingChanges = null;
+			terms = newTerms;
+		}
+
+		LOG.debug("Rebuilt user search index [users=" + newTerms.termsById.size() + ']');
+	}
+
+	/**
+	 * Indexes a new or changed user, after the current transaction committed
+	 */
+	public void update(UserEntity user) {
+		if (!enabled) {
+			return;
+		}
+
+		UserEntity copy = new UserEntity().setId(user.getId()).setEmail(user.getEmail())
+				.setFirstName(user.getFirstName()).setLastName(user.getLastName())
+				.setPhoneNumber(user.getPhoneNumber());
+		afterCommit(() -> change(copy));
+	}
+
+	/**
+	 * Removes a deleted user, after the current transaction committed
+	 */
+	public void remove(long id) {
+		if (!enabled) {
+			return;
+		}
+
+		// a user without e-mail address is removed from the index
+		UserEntity removed = new UserEntity().setId(id);
+		afterCommit(() -> change(removed));
+	}
+
+	private static void afterCommit(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+
+			});
+		} else {
+			action.run();
+		}
+	}
+
+	private synchronized void change(UserEntity user) {
+		apply(terms, user);
+		if (pendingChanges != null) {
+			pendingChanges.add(user);
+		}
+	}
+
+	private static void apply(Terms terms, UserEntity user) {
+		if (user.getEmail() == null) {
+			terms.remove(user.getId());
+		} else {
+			terms.put(user.getId(),
+					terms(user.getEmail(), user.getFirstName(), user.getLastName(), user.getPhoneNumber()));
+		}
+	}
+
+	/**
+	 * Returns the IDs of users whose e-mail address, first name, last name
+	 * (or a word of them) or phone number starts with the query. Case and
+	 * non-digit characters of phone numbers are ignored.
+	 *
+	 * @param query
+	 *            prefix to search for
+	 * @param limit
+	 *            maximum number of IDs
+	 * @return IDs of the matching users, ordered by the matching term
+	 */
+	public List<Long> search(String query, int limit) {
+		String prefix = normalize(query);
+		if (prefix.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Set<Long> ids = new LinkedHashSet<>();
+		Terms current = terms;
+		current.collect(prefix, ids, limit);
+
+		String digits = digits(query);
+		if (!digits.isEmpty() && !digits.equals(prefix)) {
+			current.collect(digits, ids, limit);
+		}
+
+		return new ArrayList<>(ids);
+	}
+
+	private static String[] terms(String email, String firstName, String lastName, String phoneNumber) {
+		Set<String> terms = new LinkedHashSet<>();
+		addTerm(terms, email);
+		addName(terms, firstName);
+		addName(terms, lastName);
+		if (phoneNumber != null) {
+			addTerm(terms, digits(phoneNumber));
+		}
+		return terms.toArray(new String[terms.size()]);
+	}
+
+	private static void addName(Set<String> terms, String name) {
+		if (name == null) {
+			return;
+		}
+		addTerm(terms, name);
+		for (String word : name.split("\\s+")) {
+			addTerm(terms, word);
+		}
+	}
+
+	private static void addTerm(Set<String> terms, String value) {
+		if (value != null) {
+			String term = normalize(value);
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+	}
+
+	private static String normalize(String value) {
+		return value.trim().toLowerCase(Locale.ROOT).replace(SEPARATOR, ' ');
+	}
+
+	private static String digits(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9') {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sorted entries of the form "term\0id" and the terms of each user
+	 */
+	private static final class Terms {
+
+		private final NavigableSet<String> entries = new ConcurrentSkipListSet<>();
+
+		private final Map<Long, String[]> termsById = new ConcurrentHashMap<>();
+
+		private void put(long id, String[] terms) {
+			remove(id);
+			for (String term : terms) {
+				entries.add(term + SEPARATOR + id);
+			}
+			termsById.put(id, terms);
+		}
+
+		private void remove(long id) {
+			String[] terms = termsById.remove(id);
+			if (terms != null) {
+				for (String term : terms) {
+					entries.remove(term + SEPARATOR + id);
+				}
+			}
+		}
+
+		private void collect(String prefix, Set<Long> ids, int limit) {
+			for (String entry : entries.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+				if (ids.size() >= limit) {
+					return;
+				}
+				ids.add(Long.valueOf(entry.substring(entry.lastIndexOf(SEPARATOR) + 1)));
+			}
+		}
+
+	}
+
+}
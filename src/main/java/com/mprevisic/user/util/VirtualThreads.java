@@ -0,0 +1,83 @@
+package com.mprevisic.user.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 and newer. The application is
+ * compiled for Java 8, so they are looked up by reflection once and are
+ * reported as unsupported on older runtimes.
+ *
+ * @author Marko Previsic
+ * @created Oct 18, 2026
+ */
+public final class VirtualThreads {
+
+	private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+
+	private VirtualThreads() {
+	}
+
+	private static MethodHandle lookupIsVirtual() {
+		try {
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+					MethodType.methodType(boolean.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if the runtime supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return IS_VIRTUAL != null;
+	}
+
+	/**
+	 * Returns true if the thread is a virtual thread, always false on
+	 * runtimes without virtual threads
+	 */
+	public static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+
+		try {
+			return (boolean) IS_VIRTUAL.invokeExact(thread);
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread for each task
+	 *
+	 * @param name
+	 *            prefix of the thread names, followed by a counter
+	 * @throws UnsupportedOperationException
+	 *             if the runtime doesn't support virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String name) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer!");
+		}
+
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name, 1L);
+			ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Creating virtual thread executor failed", e);
+		}
+	}
+
+}
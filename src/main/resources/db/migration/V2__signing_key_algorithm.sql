@@ -0,0 +1,6 @@
+ALTER TABLE security_keys ADD COLUMN kid VARCHAR(64);
+ALTER TABLE security_keys ADD COLUMN algorithm VARCHAR(10);
+ALTER TABLE security_keys ADD COLUMN key_type VARCHAR(10);
+
+-- the RSA key pair created before key IDs were introduced
+UPDATE security_keys SET kid = 'legacy', algorithm = 'RS256', key_type = name;
@@ -0,0 +1 @@
+ALTER TABLE security_keys ADD COLUMN created BIGINT NOT NULL DEFAULT 0;
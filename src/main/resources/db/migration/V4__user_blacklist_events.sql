@@ -0,0 +1,9 @@
+-- append-only log of blacklist changes, polled by all nodes to keep their in-memory blacklists in sync
+CREATE TABLE user_blacklist_events (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	email VARCHAR(100) NOT NULL,
+	event_type VARCHAR(10) NOT NULL,
+	date_time BIGINT NOT NULL
+);
+
+CREATE INDEX user_blacklist_events_date_time ON user_blacklist_events (date_time);
@@ -0,0 +1,2 @@
+-- expired users are deleted from the blacklist by time
+CREATE INDEX user_blacklist_date_time ON user_blacklist (date_time);
@@ -0,0 +1,5 @@
+-- support staff search users by name and phone number prefix, the e-mail
+-- address is already indexed by its unique constraint
+CREATE INDEX users_last_name ON users (last_name);
+CREATE INDEX users_first_name ON users (first_name);
+CREATE INDEX users_phone_number ON users (phone_number);
@@ -0,0 +1,3 @@
+-- incremented on every update of a user, updates are only applied to the
+-- version they were based on
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
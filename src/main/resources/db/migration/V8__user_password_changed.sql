@@ -0,0 +1,3 @@
+-- time of the last password change in milliseconds, refresh tokens issued
+-- before it are rejected
+ALTER TABLE users ADD COLUMN password_changed BIGINT NOT NULL DEFAULT 0;
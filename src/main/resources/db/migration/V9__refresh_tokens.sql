@@ -0,0 +1,15 @@
+-- opaque refresh tokens, only the SHA-256 hash of a token is stored. Tokens
+-- are rotated on every use, used tokens are kept until they expire so that
+-- reuse of a stolen token is detected and revokes all tokens of its family.
+CREATE TABLE refresh_tokens (
+	token_hash VARCHAR(64) NOT NULL,
+	family VARCHAR(64) NOT NULL,
+	user_id BIGINT NOT NULL,
+	expires BIGINT NOT NULL,
+	used BOOLEAN NOT NULL DEFAULT FALSE,
+	PRIMARY KEY (token_hash),
+	FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX refresh_tokens_family ON refresh_tokens (family);
+CREATE INDEX refresh_tokens_expires ON refresh_tokens (expires);
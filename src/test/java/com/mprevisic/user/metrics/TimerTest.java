@@ -0,0 +1,49 @@
+package com.mprevisic.user.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TimerTest {
+
+	@Test
+	public void testBuckets() {
+		assertEquals(0, Timer.bucket(0));
+		assertEquals(0, Timer.bucket(Timer.MIN_NANOS));
+		assertEquals(1, Timer.bucket(Timer.MIN_NANOS + Timer.MIN_NANOS / Timer.SUB_BUCKETS));
+		assertEquals(Timer.SUB_BUCKETS, Timer.bucket(2 * Timer.MIN_NANOS));
+		assertEquals(Timer.BUCKETS, Timer.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void durationIsBelowUpperBound() {
+		for (long nanos = Timer.MIN_NANOS; nanos < 20_000_000_000L; nanos = nanos * 3 / 2 + 7) {
+			int bucket = Timer.bucket(nanos);
+			assertTrue(nanos < Timer.upperBound(bucket));
+			if (bucket > 0) {
+				assertTrue(nanos >= Timer.upperBound(bucket - 1));
+			}
+			// relative width of the bucket
+			assertTrue(Timer.upperBound(bucket) <= nanos * 1.25 + 1);
+		}
+	}
+
+	@Test
+	public void testExport() {
+		Timer timer = new Timer("Test");
+		timer.record(500);
+		timer.record(1_000_000);
+		timer.record(60_000_000_000L);
+
+		StringBuilder out = new StringBuilder();
+		timer.write("test_seconds", out);
+		String export = out.toString();
+
+		assertTrue(export.contains("test_seconds_bucket{le=\"1.28E-6\"} 1\n"));
+		assertTrue(export.contains("test_seconds_bucket{le=\"+Inf\"} 3\n"));
+		assertTrue(export.contains("test_seconds_count 3\n"));
+		assertEquals(3, timer.getCount());
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class AuthCookiesTest {
+
+	@Test
+	public void testParse() {
+		AuthCookies cookies = AuthCookies.parse("jwt-refresh-token=abc.def.ghi; jwt-access-token=a.b.c; xsrf-token=xyz");
+
+		assertEquals("a.b.c", cookies.getAccessToken());
+		assertEquals("xyz", cookies.getCsrfToken());
+	}
+
+	@Test
+	public void parseWhitespaceAndQuotes() {
+		AuthCookies cookies = AuthCookies.parse("  xsrf-token = \"xyz\" ;jwt-access-token=a.b.c ;");
+
+		assertEquals("a.b.c", cookies.getAccessToken());
+		assertEquals("xyz", cookies.getCsrfToken());
+	}
+
+	@Test
+	public void parseFirstOccurrenceWins() {
+		AuthCookies cookies = AuthCookies.parse("xsrf-token=first; xsrf-token=second");
+
+		assertEquals("first", cookies.getCsrfToken());
+	}
+
+	@Test
+	public void parseMissingAndSimilarNames() {
+		AuthCookies cookies = AuthCookies.parse("jwt-access-token-old=a.b.c; my-xsrf-token=xyz; invalid; =abc");
+
+		assertNull(cookies.getAccessToken());
+		assertNull(cookies.getCsrfToken());
+	}
+
+	@Test
+	public void parseEmptyValue() {
+		AuthCookies cookies = AuthCookies.parse("jwt-access-token=; xsrf-token=xyz");
+
+		assertEquals("", cookies.getAccessToken());
+		assertEquals("xyz", cookies.getCsrfToken());
+	}
+
+	@Test
+	public void testFromParsedCookies() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(new Cookie("jwt-access-token", "a.b.c"), new Cookie("xsrf-token", "xyz"));
+
+		AuthCookies cookies = AuthCookies.of(request);
+
+		assertEquals("a.b.c", cookies.getAccessToken());
+		assertEquals("xyz", cookies.getCsrfToken());
+	}
+
+	@Test
+	public void testNoCookies() {
+		AuthCookies cookies = AuthCookies.of(new MockHttpServletRequest());
+
+		assertNull(cookies.getAccessToken());
+		assertNull(cookies.getCsrfToken());
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+public class CookieIssuerTest {
+
+	@Test
+	public void testCookies() {
+		CookieIssuer issuer = new CookieIssuer(null, null, "", false, "Lax", "/api/v1");
+
+		HttpHeaders headers = issuer.headers("access", "csrf", "refresh");
+
+		assertFalse(issuer.isSecure());
+		assertEquals(Arrays.asList("jwt-access-token=access; Max-Age=3600; Path=/api/v1; HttpOnly; SameSite=Lax",
+				"xsrf-token=csrf; Path=/api/v1; SameSite=Lax",
+				"jwt-refresh-token=refresh; Max-Age=86400; Path=/api/v1; HttpOnly; SameSite=Lax"),
+				headers.get(HttpHeaders.SET_COOKIE));
+	}
+
+	@Test
+	public void withoutRefreshToken() {
+		CookieIssuer issuer = new CookieIssuer(null, null, "", false, "", "/");
+
+		HttpHeaders headers = issuer.headers("access", "csrf", null);
+
+		assertEquals(Arrays.asList("jwt-access-token=access; Max-Age=3600; Path=/; HttpOnly", "xsrf-token=csrf; Path=/"),
+				headers.get(HttpHeaders.SET_COOKIE));
+	}
+
+	@Test
+	public void secureWithKeyStore() {
+		CookieIssuer issuer = new CookieIssuer(null, null, "keystore.p12", false, "Strict", "/api/v1");
+
+		assertTrue(issuer.isSecure());
+		assertEquals("xsrf-token=csrf; Path=/api/v1; Secure; SameSite=Strict",
+				issuer.headers("access", "csrf", null).get(HttpHeaders.SET_COOKIE).get(1));
+	}
+
+	@Test
+	public void secureBehindProxy() {
+		assertTrue(new CookieIssuer(null, null, "", true, "Lax", "/api/v1").isSecure());
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.KeyRepository;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.util.JwtUtil;
+import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserCache;
+
+public class JwtAuthProviderTest {
+
+	private JwtAuthProvider authProvider;
+
+	private JwtUtil jwtUtil;
+
+	private UserBlacklistCache deletedUserCache;
+
+	private VerifiedTokenCache tokenCache;
+
+	@Before
+	public void setUp() {
+		KeyPairContainer keyPairContainer = new KeyPairContainer(mock(KeyRepository.class), "RS256");
+
+		UserRepository userRepo = mock(UserRepository.class);
+		when(userRepo.findViewByEmail("user@gmail.com"))
+				.thenReturn(Optional.of(UserView.of(new UserEntity().setEmail("user@gmail.com"))));
+
+		deletedUserCache = mock(UserBlacklistCache.class);
+		tokenCache = new VerifiedTokenCache(100, Constants.ACCESS_TOKEN_TTL);
+
+		AuthMetrics authMetrics = new AuthMetrics(new MetricsRegistry());
+		jwtUtil = new JwtUtil(keyPairContainer, new UserCache(userRepo, 100, 60000, new MetricsRegistry()),
+				authMetrics);
+		authProvider = new JwtAuthProvider(keyPairContainer, deletedUserCache, tokenCache, authMetrics);
+	}
+
+	@Test
+	public void testAuthenticate() {
+		String token = jwtUtil.createAccessToken("user@gmail.com", 1);
+
+		Authentication auth = authProvider.authenticate(new JwtToken(token));
+
+		assertTrue(auth.isAuthenticated());
+		assertEquals("user@gmail.com", auth.getName());
+		assertEquals(1, tokenCache.size());
+	}
+
+	@Test
+	public void authenticateCachedToken() {
+		String token = jwtUtil.createAccessToken("user@gmail.com", 1);
+
+		authProvider.authenticate(new JwtToken(token));
+		Authentication auth = authProvider.authenticate(new JwtToken(token));
+
+		assertTrue(auth.isAuthenticated());
+		assertEquals("user@gmail.com", auth.getName());
+		assertEquals(1, tokenCache.size());
+	}
+
+	@Test(expected = BadCredentialsException.class)
+	public void authenticateCachedTokenDeletedUser() {
+		String token = jwtUtil.createAccessToken("user@gmail.com", 1);
+
+		authProvider.authenticate(new JwtToken(token));
+
+		when(deletedUserCache.isRevoked(eq("user@gmail.com"), anyLong())).thenReturn(true);
+
+		authProvider.authenticate(new JwtToken(token));
+	}
+
+	@Test(expected = BadCredentialsException.class)
+	public void authenticateTamperedToken() {
+		String token = jwtUtil.createAccessToken("user@gmail.com", 1);
+		String tampered = token.substring(0, token.length() - 4) + "AAAA";
+
+		authProvider.authenticate(new JwtToken(tampered));
+	}
+
+	@Test(expected = BadCredentialsException.class)
+	public void authenticateNonAsciiVariantOfCachedToken() {
+		String token = jwtUtil.createAccessToken("user@gmail.com", 1);
+
+		authProvider.authenticate(new JwtToken(token));
+
+		// same low byte as the last character, must not hit the cache
+		char last = token.charAt(token.length() - 1);
+		String variant = token.substring(0, token.length() - 1) + (char) (last + 0x100);
+
+		authProvider.authenticate(new JwtToken(variant));
+	}
+
+	@Test(expected = BadCredentialsException.class)
+	public void authenticateMalformedToken() {
+		authProvider.authenticate(new JwtToken("blabla"));
+	}
+
+}
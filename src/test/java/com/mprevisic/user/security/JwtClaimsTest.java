@@ -0,0 +1,127 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+
+public class JwtClaimsTest {
+
+	private static String token(String payload) {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8)) + '.'
+				+ encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+	}
+
+	@Test
+	public void testParse() throws ParseException {
+		JwtClaims claims = JwtClaims.parse(token(
+				"{\"sub\":\"user@gmail.com\", \"extra\": {\"a\": [1, \"}]\", null], \"b\": true}, \"iss\":\"user-api\","
+						+ "\"exp\":1700000000,\"iat_ms\":1699999999123,\"role\":2,\"score\":-1.5e3}"));
+
+		assertEquals("user@gmail.com", claims.getSubject());
+		assertEquals("user-api", claims.getIssuer());
+		assertEquals(1700000000000L, claims.getExpirationTime());
+		assertEquals(1699999999123L, claims.getIssuedAt());
+		assertEquals(Integer.valueOf(2), claims.getRole());
+	}
+
+	@Test
+	public void parseClaimsOfNimbus() throws ParseException {
+		JWTClaimsSet claimsSet = new JWTClaimsSet();
+		claimsSet.setSubject("user@gmail.com");
+		claimsSet.setIssuer("user-api");
+		claimsSet.setExpirationTime(new Date(1700000000000L));
+		claimsSet.setCustomClaim(JwtClaims.ISSUED_AT_CLAIM, 1699999999123L);
+		claimsSet.setCustomClaim("role", 1);
+
+		JwtClaims claims = JwtClaims.parse(token(claimsSet.toJSONObject().toJSONString()));
+
+		assertEquals("user@gmail.com", claims.getSubject());
+		assertEquals("user-api", claims.getIssuer());
+		assertEquals(1700000000000L, claims.getExpirationTime());
+		assertEquals(1699999999123L, claims.getIssuedAt());
+		assertEquals(Integer.valueOf(1), claims.getRole());
+	}
+
+	@Test
+	public void parseEscapedStrings() throws ParseException {
+		JwtClaims claims = JwtClaims.parse(token("{\"sub\":\"j\\u00f6rg\\\"\\/\\n\",\"iss\":\"\u00fcser-api\"}"));
+
+		assertEquals("j\u00f6rg\"/\n", claims.getSubject());
+		assertEquals("\u00fcser-api", claims.getIssuer());
+	}
+
+	@Test
+	public void missingClaims() throws ParseException {
+		JwtClaims claims = JwtClaims.parse(token("{\"sub\":null,\"role\":null}"));
+
+		assertNull(claims.getSubject());
+		assertNull(claims.getIssuer());
+		assertNull(claims.getRole());
+		assertEquals(0, claims.getExpirationTime());
+		assertTrue(claims.getAuthorities().isEmpty());
+	}
+
+	@Test
+	public void otherClaimsAreParsedOnce() throws ParseException {
+		JwtClaims claims = JwtClaims.parse(token("{\"sub\":\"user@gmail.com\",\"locale\":\"hr\",\"role\":1}"));
+
+		assertEquals("hr", claims.getClaim("locale"));
+		assertEquals("user@gmail.com", claims.toMap().get("sub"));
+		assertSame(claims.toMap(), claims.toMap());
+
+		try {
+			claims.toMap().put("role", 0);
+			fail("Claims should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void authoritiesAreMemoized() throws ParseException {
+		JwtClaims claims = JwtClaims.parse(token("{\"permissions\":\"read,write\"}"));
+
+		assertEquals(2, claims.getAuthorities().size());
+		assertSame(claims.getAuthorities(), claims.getAuthorities());
+	}
+
+	@Test
+	public void adminRoleGrantsAdminAuthority() throws ParseException {
+		JwtClaims admin = JwtClaims.parse(token("{\"role\":2,\"permissions\":\"read\"}"));
+		JwtClaims user = JwtClaims.parse(token("{\"role\":1}"));
+
+		assertEquals(2, admin.getAuthorities().size());
+		assertTrue(admin.getAuthorities().stream().anyMatch(a -> JwtClaims.ADMIN_AUTHORITY.equals(a.getAuthority())));
+		assertTrue(user.getAuthorities().isEmpty());
+	}
+
+	@Test
+	public void malformedTokens() {
+		String[] tokens = { "blabla", "abc.d$f.ghi", "abc.a.ghi", token(""), token("[]"), token("{\"sub\":"),
+				token("{\"sub\":\"user\""), token("{\"sub\":1}"), token("{\"exp\":\"tomorrow\"}"),
+				token("{\"exp\":12345678901234567890}"), token("{\"sub\":\"user\"} {}"), token("{\"s\\u0075b\":\"x\"}"),
+				token("{\"sub\":\"\\x\"}"), token("{\"a\":tru}") };
+
+		for (String token : tokens) {
+			try {
+				JwtClaims.parse(token);
+				fail("Token should be malformed: " + token);
+			} catch (ParseException e) {
+				// expected
+			}
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.KeyRepository;
+import com.mprevisic.user.security.AuthFailureException.Cause;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+public class JwtValidatorTest {
+
+	private KeyPairContainer keyPairContainer;
+
+	private MetricsRegistry metrics;
+
+	private JwtValidator validator;
+
+	@Before
+	public void setUp() {
+		keyPairContainer = new KeyPairContainer(mock(KeyRepository.class), "RS256");
+		metrics = new MetricsRegistry();
+		validator = new JwtValidator(keyPairContainer, new AuthMetrics(metrics));
+	}
+
+	private String token(String kid, String issuer, long expiresIn) throws JOSEException {
+		JWTClaimsSet claimsSet = new JWTClaimsSet();
+		claimsSet.setSubject("user@gmail.com");
+		claimsSet.setIssuer(issuer);
+		claimsSet.setExpirationTime(new Date(System.currentTimeMillis() + expiresIn));
+
+		SigningKey key = keyPairContainer.getSigningKey();
+		SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(key.getAlgorithm().getJwsAlgorithm()).keyID(kid).build(),
+				claimsSet);
+		jwt.sign(key.getSigner());
+		return jwt.serialize();
+	}
+
+	private String validToken() throws JOSEException {
+		return token(keyPairContainer.getSigningKey().getKid(), Constants.TOKEN_ISSUER, 60000);
+	}
+
+	private void assertRejected(String token, Cause cause, String stage) {
+		try {
+			validator.validate(token);
+			fail("Token should have been rejected: " + token);
+		} catch (AuthFailureException e) {
+			assertEquals(cause, e.getFailureCause());
+		}
+		assertTrue(metrics.export().contains("jwt_rejected_total{stage=\"" + stage + "\"} 1"));
+	}
+
+	private long signatureVerifications() {
+		String export = metrics.export();
+		String prefix = "jwt_signature_verification_seconds_count ";
+		int start = export.indexOf(prefix) + prefix.length();
+		return Long.parseLong(export.substring(start, export.indexOf('\n', start)));
+	}
+
+	@Test
+	public void testValidate() throws JOSEException {
+		JwtClaims claims = validator.validate(validToken());
+
+		assertEquals("user@gmail.com", claims.getSubject());
+		assertEquals(1, signatureVerifications());
+	}
+
+	@Test
+	public void rejectGarbage() {
+		assertRejected("blabla", Cause.MALFORMED_TOKEN, "structure");
+	}
+
+	@Test
+	public void rejectInvalidCharacter() throws JOSEException {
+		assertRejected(validToken().replaceFirst("\\.", ".+"), Cause.MALFORMED_TOKEN, "structure");
+	}
+
+	@Test
+	public void rejectTooLong() throws JOSEException {
+		StringBuilder token = new StringBuilder(validToken());
+		while (token.length() <= JwtValidator.MAX_LENGTH) {
+			token.append('A');
+		}
+		assertRejected(token.toString(), Cause.MALFORMED_TOKEN, "structure");
+	}
+
+	@Test
+	public void rejectUnsecuredToken() throws JOSEException {
+		String token = validToken();
+		assertRejected(token.substring(0, token.lastIndexOf('.') + 1), Cause.UNSUPPORTED_TOKEN, "structure");
+	}
+
+	@Test
+	public void rejectUnknownKey() throws JOSEException {
+		assertRejected(token("unknown", Constants.TOKEN_ISSUER, 60000), Cause.UNKNOWN_KEY, "header");
+		assertEquals(0, signatureVerifications());
+	}
+
+	@Test
+	public void rejectExpiredBeforeSignature() throws JOSEException {
+		String token = token(keyPairContainer.getSigningKey().getKid(), Constants.TOKEN_ISSUER, -1000);
+		String forged = token.substring(0, token.length() - 4) + "AAAA";
+
+		assertRejected(forged, Cause.EXPIRED_TOKEN, "claims");
+		assertEquals(0, signatureVerifications());
+	}
+
+	@Test
+	public void rejectForeignIssuer() throws JOSEException {
+		assertRejected(token(keyPairContainer.getSigningKey().getKid(), "other-api", 60000), Cause.INVALID_ISSUER,
+				"claims");
+		assertEquals(0, signatureVerifications());
+	}
+
+	@Test
+	public void rejectInvalidSignature() throws JOSEException {
+		String token = validToken();
+
+		assertRejected(token.substring(0, token.length() - 4) + "AAAA", Cause.INVALID_SIGNATURE, "signature");
+		assertEquals(1, signatureVerifications());
+	}
+
+}
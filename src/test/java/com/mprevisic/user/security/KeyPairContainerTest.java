@@ -0,0 +1,132 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import com.mprevisic.user.domain.KeyEntity;
+import com.mprevisic.user.repository.KeyRepository;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+
+public class KeyPairContainerTest {
+
+	private KeyRepository keyRepo;
+
+	private List<KeyEntity> storedKeys;
+
+	@Before
+	public void setUp() {
+		storedKeys = new ArrayList<>();
+
+		keyRepo = mock(KeyRepository.class);
+		when(keyRepo.findAll(any(Sort.class))).thenAnswer(inv -> {
+			List<KeyEntity> keys = new ArrayList<>(storedKeys);
+			keys.sort(Comparator.comparingLong(KeyEntity::getCreated));
+			return keys;
+		});
+		when(keyRepo.save(any(KeyEntity.class))).thenAnswer(inv -> {
+			KeyEntity key = (KeyEntity) inv.getArguments()[0];
+			storedKeys.add(key);
+			return key;
+		});
+		doAnswer(inv -> {
+			String kid = (String) inv.getArguments()[0];
+			storedKeys.removeIf(k -> kid.equals(k.getKid()));
+			return null;
+		}).when(keyRepo).deleteByKid(anyString());
+	}
+
+	@Test
+	public void testInitialKey() {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "ES256");
+
+		SigningKey key = container.getSigningKey();
+
+		assertNotNull(key);
+		assertEquals(SigningAlgorithm.ES256, key.getAlgorithm());
+		assertEquals(2, storedKeys.size());
+		assertEquals(key, container.getVerificationKey(header(JWSAlgorithm.ES256, key.getKid())));
+	}
+
+	@Test
+	public void testKeyLoadedFromDb() {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "RS256");
+		KeyPairContainer otherNode = new KeyPairContainer(keyRepo, "RS256");
+
+		assertEquals(container.getSigningKey().getKid(), otherNode.getSigningKey().getKid());
+		assertEquals(2, storedKeys.size());
+	}
+
+	@Test
+	public void verificationKeyAlgorithmMismatch() {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "RS256");
+
+		String kid = container.getSigningKey().getKid();
+
+		assertNull(container.getVerificationKey(header(JWSAlgorithm.ES256, kid)));
+		assertNull(container.getVerificationKey(header(JWSAlgorithm.RS256, "unknown")));
+	}
+
+	@Test
+	public void testRotation() throws InterruptedException {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "RS256", 1, 0);
+		SigningKey oldKey = container.getSigningKey();
+
+		Thread.sleep(5);
+		container.reload();
+
+		SigningKey newKey = container.getSigningKey();
+
+		assertNotEquals(oldKey.getKid(), newKey.getKid());
+		assertEquals(oldKey, container.getVerificationKey(header(JWSAlgorithm.RS256, oldKey.getKid())));
+		assertEquals(newKey, container.getVerificationKey(header(JWSAlgorithm.RS256, newKey.getKid())));
+	}
+
+	@Test
+	public void rotatedKeyNotActivatedYet() throws InterruptedException {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "RS256", 1, 60000);
+		SigningKey oldKey = container.getSigningKey();
+
+		Thread.sleep(5);
+		container.reload();
+
+		// new key is already known to verifiers but not used for signing
+		assertEquals(oldKey, container.getSigningKey());
+		assertEquals(4, storedKeys.size());
+
+		KeyEntity newKey = storedKeys.get(storedKeys.size() - 1);
+		assertNotNull(container.getVerificationKey(header(JWSAlgorithm.RS256, newKey.getKid())));
+	}
+
+	@Test
+	public void testReloadPicksUpRotatedKey() throws InterruptedException {
+		KeyPairContainer container = new KeyPairContainer(keyRepo, "RS256");
+		KeyPairContainer rotatingNode = new KeyPairContainer(keyRepo, "RS256", 1, 0);
+
+		Thread.sleep(5);
+		rotatingNode.reload();
+		container.reload();
+
+		assertEquals(rotatingNode.getSigningKey().getKid(), container.getSigningKey().getKid());
+	}
+
+	private JWSHeader header(JWSAlgorithm algorithm, String kid) {
+		return new JWSHeader.Builder(algorithm).keyID(kid).build();
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.mprevisic.user.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+	private AtomicLong now;
+
+	private RateLimiter limiter;
+
+	@Before
+	public void setUp() {
+		now = new AtomicLong();
+		// 3 requests at once, then one every 10 seconds
+		limiter = new RateLimiter(1024, 3, 6, now::get);
+	}
+
+	@Test
+	public void testBurst() {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.tryAcquire("user@gmail.com"));
+		}
+
+		long wait = limiter.tryAcquire("user@gmail.com");
+		assertEquals(TimeUnit.SECONDS.toNanos(10), wait, 1000);
+
+		// other keys have their own bucket
+		assertEquals(0, limiter.tryAcquire("other@gmail.com"));
+	}
+
+	@Test
+	public void testRefill() {
+		for (int i = 0; i < 3; i++) {
+			limiter.tryAcquire("user@gmail.com");
+		}
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		long wait = limiter.tryAcquire("user@gmail.com");
+		assertEquals(TimeUnit.SECONDS.toNanos(5), wait, 1000);
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertEquals(0, limiter.tryAcquire("user@gmail.com"));
+		assertTrue(limiter.tryAcquire("user@gmail.com") > 0);
+	}
+
+	@Test
+	public void testRefillUpToBurst() {
+		limiter.tryAcquire("user@gmail.com");
+
+		now.addAndGet(TimeUnit.HOURS.toNanos(1));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.tryAcquire("user@gmail.com"));
+		}
+		assertTrue(limiter.tryAcquire("user@gmail.com") > 0);
+	}
+
+	@Test
+	public void capacityIsFixed() {
+		RateLimiter small = new RateLimiter(64, 1, 1, now::get);
+		assertEquals(64, small.getCapacity());
+
+		for (int i = 0; i < 10000; i++) {
+			now.incrementAndGet();
+			small.tryAcquire("user" + i + "@gmail.com");
+		}
+
+		assertEquals(64, small.getCapacity());
+		assertEquals(10000 - 64, small.getEvictions(), 64);
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		RateLimiter single = new RateLimiter(RateLimiter.WAYS, 1, 1, now::get);
+		single.tryAcquire("attacked@gmail.com");
+
+		// the throttled key is used all the time, other keys only once
+		for (int i = 0; i < 100; i++) {
+			now.incrementAndGet();
+			assertTrue(single.tryAcquire("attacked@gmail.com") > 0);
+			single.tryAcquire("user" + i + "@gmail.com");
+		}
+
+		assertTrue(single.tryAcquire("attacked@gmail.com") > 0);
+	}
+
+}
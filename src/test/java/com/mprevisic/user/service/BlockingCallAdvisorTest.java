@@ -0,0 +1,83 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import com.mprevisic.user.metrics.MetricsRegistry;
+
+public class BlockingCallAdvisorTest {
+
+	private JdbcExecutor executor;
+
+	private ProxyFactory proxyFactory;
+
+	@Before
+	public void setUp() {
+		executor = new JdbcExecutor(1, 10, t -> !t.getName().startsWith("jdbc-"), new MetricsRegistry());
+		proxyFactory = new ProxyFactory();
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvisor(new BlockingCallAdvisor(executor));
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void blockingBeanIsOffloaded() {
+		proxyFactory.setTarget(new BlockingBean());
+		BlockingBean bean = (BlockingBean) proxyFactory.getProxy();
+
+		assertTrue(bean.thread().getName().startsWith("jdbc-"));
+	}
+
+	@Test
+	public void onlyBlockingMethodsAreOffloaded() {
+		proxyFactory.setTarget(new MixedBean());
+		MixedBean bean = (MixedBean) proxyFactory.getProxy();
+
+		assertTrue(bean.blockingThread().getName().startsWith("jdbc-"));
+		assertSame(Thread.currentThread(), bean.thread());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void exceptionsAreRethrown() {
+		proxyFactory.setTarget(new BlockingBean());
+		BlockingBean bean = (BlockingBean) proxyFactory.getProxy();
+
+		bean.fail();
+	}
+
+	@Blocking
+	public static class BlockingBean {
+
+		public Thread thread() {
+			return Thread.currentThread();
+		}
+
+		public void fail() {
+			throw new IllegalStateException("Database unavailable");
+		}
+
+	}
+
+	public static class MixedBean {
+
+		@Blocking
+		public Thread blockingThread() {
+			return Thread.currentThread();
+		}
+
+		public Thread thread() {
+			return Thread.currentThread();
+		}
+
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.mprevisic.user.metrics.MetricsRegistry;
+
+public class JdbcExecutorTest {
+
+	private MetricsRegistry metrics = new MetricsRegistry();
+
+	private JdbcExecutor executor;
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void platformThreadCallsDirectly() {
+		executor = new JdbcExecutor(1, 10, t -> false, metrics);
+
+		assertSame(Thread.currentThread(), executor.call(Thread::currentThread));
+		assertTrue(metrics.export().contains("jdbc_executor_wait_seconds_count 0"));
+	}
+
+	@Test
+	public void offloadedCallRunsOnPool() {
+		executor = new JdbcExecutor(1, 10, t -> true, metrics);
+
+		Thread thread = executor.call(Thread::currentThread);
+		assertTrue(thread.getName().startsWith("jdbc-"));
+		assertTrue(metrics.export().contains("jdbc_executor_wait_seconds_count 1"));
+	}
+
+	@Test
+	public void executedTaskRunsOnPool() throws InterruptedException {
+		executor = new JdbcExecutor(1, 10, t -> false, metrics);
+		AtomicReference<Thread> thread = new AtomicReference<>();
+		CountDownLatch done = new CountDownLatch(1);
+
+		// also from platform threads
+		executor.execute(() -> {
+			thread.set(Thread.currentThread());
+			done.countDown();
+		});
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertTrue(thread.get().getName().startsWith("jdbc-"));
+	}
+
+	@Test
+	public void callsBeyondQueueAreRejected() throws InterruptedException {
+		executor = new JdbcExecutor(1, 1, t -> !t.getName().startsWith("jdbc-"), metrics);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		// one call occupies the thread, one waits in the queue
+		for (int i = 0; i < 2; i++) {
+			new Thread(() -> {
+				try {
+					executor.call(() -> {
+						running.countDown();
+						return release.await(10, TimeUnit.SECONDS);
+					});
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}).start();
+		}
+		running.await(10, TimeUnit.SECONDS);
+		while (!metrics.export().contains("jdbc_executor_queue_depth 1")) {
+			Thread.sleep(1);
+		}
+
+		try {
+			executor.call(() -> null);
+			fail("Call should have been rejected");
+		} catch (RejectedExecutionException e) {
+			assertTrue(metrics.export().contains("jdbc_executor_rejected_total 1"));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void exceptionsAreRethrown() {
+		executor = new JdbcExecutor(1, 10, t -> true, metrics);
+		IllegalArgumentException thrown = new IllegalArgumentException("Invalid user");
+
+		try {
+			executor.call(() -> {
+				throw thrown;
+			});
+			fail("Exception should have been rethrown");
+		} catch (IllegalArgumentException e) {
+			assertSame(thrown, e);
+		}
+
+		try {
+			executor.call(() -> {
+				throw new IOException("Connection reset");
+			});
+			fail("Exception should have been rethrown");
+		} catch (IOException e) {
+			assertEquals("Connection reset", e.getMessage());
+		}
+	}
+
+}
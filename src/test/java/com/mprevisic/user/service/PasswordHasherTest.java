@@ -0,0 +1,87 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class PasswordHasherTest {
+
+	private final PasswordHasher bcryptHasher = new PasswordHasher(PasswordHasher.BCRYPT, 4, 1000);
+
+	private final PasswordHasher pbkdf2Hasher = new PasswordHasher(PasswordHasher.PBKDF2, 4, 1000);
+
+	@Test
+	public void testBcrypt() {
+		String hash = bcryptHasher.encode("test123!");
+
+		assertTrue(hash.startsWith("$2a$04$"));
+		assertTrue(bcryptHasher.matches("test123!", hash));
+		assertFalse(bcryptHasher.matches("abc123", hash));
+		assertFalse(bcryptHasher.needsUpgrade(hash));
+	}
+
+	@Test
+	public void testPbkdf2() {
+		String hash = pbkdf2Hasher.encode("test123!");
+
+		assertTrue(hash.startsWith("{pbkdf2}1000$"));
+		assertTrue(pbkdf2Hasher.matches("test123!", hash));
+		assertFalse(pbkdf2Hasher.matches("abc123", hash));
+		assertFalse(pbkdf2Hasher.needsUpgrade(hash));
+	}
+
+	@Test
+	public void testMatchesOtherEncoder() {
+		String bcryptHash = bcryptHasher.encode("test123!");
+		String pbkdf2Hash = pbkdf2Hasher.encode("test123!");
+
+		assertTrue(pbkdf2Hasher.matches("test123!", bcryptHash));
+		assertTrue(bcryptHasher.matches("test123!", pbkdf2Hash));
+		assertTrue(bcryptHasher.matches("test123!", "{bcrypt}" + bcryptHash));
+		assertTrue(pbkdf2Hasher.needsUpgrade(bcryptHash));
+		assertTrue(bcryptHasher.needsUpgrade(pbkdf2Hash));
+	}
+
+	@Test
+	public void testNeedsUpgradeStrength() {
+		String hash = new BCryptPasswordEncoder(5).encode("test123!");
+
+		assertTrue(bcryptHasher.needsUpgrade(hash));
+		assertTrue(new PasswordHasher(PasswordHasher.PBKDF2, 4, 2000).needsUpgrade(pbkdf2Hasher.encode("test123!")));
+	}
+
+	@Test
+	public void rejectMalformedPbkdf2Hash() {
+		String hash = pbkdf2Hasher.encode("test123!");
+		String digest = hash.substring(hash.indexOf('$'));
+
+		assertFalse(pbkdf2Hasher.matches("test123!", "{pbkdf2}abc" + digest));
+		assertFalse(pbkdf2Hasher.matches("test123!", "{pbkdf2}99999999999" + digest));
+		assertFalse(pbkdf2Hasher.matches("test123!", "{pbkdf2}0" + digest));
+		assertFalse(pbkdf2Hasher.matches("test123!", "{pbkdf2}1000"));
+		assertFalse(pbkdf2Hasher.matches("test123!", "{pbkdf2}1000$c2FsdA=="));
+		assertFalse(pbkdf2Hasher.matches("test123!", hash.substring(0, hash.lastIndexOf('$') + 1) + "!"));
+		assertFalse(pbkdf2Hasher.matches("test123!", hash.substring(0, hash.length() - 4)));
+	}
+
+	@Test
+	public void testPbkdf2HmacSha256() {
+		// first 32 bytes of the test vector of RFC 7914, section 11
+		String hash = "{pbkdf2}1$" + Base64.getEncoder().encodeToString("salt".getBytes(StandardCharsets.UTF_8))
+				+ "$VawEblbjCJ/sFpHCJUS2BflBhSFt3gRl5oudV8INrLw=";
+
+		assertTrue(pbkdf2Hasher.matches("passwd", hash));
+		assertFalse(pbkdf2Hasher.matches("password", hash));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownEncoder() {
+		new PasswordHasher("md5", 10, 1000);
+	}
+
+}
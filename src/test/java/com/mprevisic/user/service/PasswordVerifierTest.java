@@ -0,0 +1,70 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import com.mprevisic.user.metrics.MetricsRegistry;
+
+public class PasswordVerifierTest {
+
+	private MetricsRegistry metrics;
+
+	private PasswordVerifier passwordVerifier;
+
+	private String hash;
+
+	@Before
+	public void setUp() {
+		metrics = new MetricsRegistry();
+		passwordVerifier = new PasswordVerifier(1, 1, new PasswordHasher(PasswordHasher.BCRYPT, 10, 1000), metrics);
+		hash = BCrypt.hashpw("test123!", BCrypt.gensalt(10));
+	}
+
+	@After
+	public void tearDown() {
+		passwordVerifier.shutdown();
+	}
+
+	@Test
+	public void testVerify() throws InterruptedException, ExecutionException {
+		assertTrue(passwordVerifier.verify("test123!", hash).get());
+		assertFalse(passwordVerifier.verify("abc123", hash).get());
+
+		assertTrue(metrics.export().contains("password_verification_seconds_count 2"));
+	}
+
+	@Test
+	public void verifyQueueFull() throws InterruptedException, ExecutionException {
+		List<CompletableFuture<Boolean>> accepted = new ArrayList<>();
+
+		try {
+			// one verification running and one in the queue, the third one
+			// must be rejected
+			for (int i = 0; i < 3; i++) {
+				accepted.add(passwordVerifier.verify("test123!", hash));
+			}
+			fail("Verification should have been rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		for (CompletableFuture<Boolean> f : accepted) {
+			assertTrue(f.get());
+		}
+
+		assertTrue(metrics.export().contains("password_verification_rejected_total 1"));
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.RefreshTokenRepository;
+import com.mprevisic.user.repository.RefreshTokenRepository.StoredToken;
+
+public class RefreshTokenServiceTest {
+
+	private RefreshTokenRepository tokenRepo;
+
+	private MetricsRegistry metrics;
+
+	private RefreshTokenService service;
+
+	@Before
+	public void setUp() {
+		tokenRepo = mock(RefreshTokenRepository.class);
+		metrics = new MetricsRegistry();
+		service = new RefreshTokenService(tokenRepo, true, metrics);
+	}
+
+	private long inOneHour() {
+		return System.currentTimeMillis() + 3600000L;
+	}
+
+	@Test
+	public void testCreate() {
+		String token = service.create(1L);
+
+		assertTrue(RefreshTokenService.isOpaque(token));
+
+		// only the hash is stored, it also identifies the new family
+		String hash = RefreshTokenService.hash(token);
+		assertNotEquals(token, hash);
+		verify(tokenRepo).insert(eq(hash), eq(hash), eq(1L), anyLong());
+	}
+
+	@Test
+	public void testRotate() {
+		String token = service.create(1L);
+		String hash = RefreshTokenService.hash(token);
+		long expires = inOneHour();
+		when(tokenRepo.find(hash)).thenReturn(Optional.of(new StoredToken("family", 1L, expires, false)));
+		when(tokenRepo.markUsed(hash)).thenReturn(true);
+
+		Optional<RefreshTokenService.Rotation> rotation = service.rotate(token);
+
+		assertTrue(rotation.isPresent());
+		assertEquals(1L, rotation.get().getUserId());
+		assertNotEquals(token, rotation.get().getToken());
+
+		// the next token stays in the family of the rotated one and expires
+		// with it
+		verify(tokenRepo).insert(RefreshTokenService.hash(rotation.get().getToken()), "family", 1L, expires);
+		assertTrue(metrics.export().contains("refresh_tokens_rotated_total 1"));
+	}
+
+	@Test
+	public void reuseRevokesFamily() {
+		String token = service.create(1L);
+		String hash = RefreshTokenService.hash(token);
+		when(tokenRepo.find(hash)).thenReturn(Optional.of(new StoredToken("family", 1L, inOneHour(), true)));
+
+		assertFalse(service.rotate(token).isPresent());
+
+		verify(tokenRepo).deleteFamily("family");
+		verify(tokenRepo, never()).markUsed(anyString());
+		assertTrue(metrics.export().contains("refresh_token_reuse_total 1"));
+	}
+
+	@Test
+	public void concurrentUseRevokesFamily() {
+		String token = service.create(1L);
+		String hash = RefreshTokenService.hash(token);
+		when(tokenRepo.find(hash)).thenReturn(Optional.of(new StoredToken("family", 1L, inOneHour(), false)));
+		when(tokenRepo.markUsed(hash)).thenReturn(false);
+
+		assertFalse(service.rotate(token).isPresent());
+
+		verify(tokenRepo).deleteFamily("family");
+	}
+
+	@Test
+	public void testExchangeJwtToken() {
+		String jwt = "eyJhbGciOiJSUzI1NiJ9.e30.c2ln";
+		when(tokenRepo.find(anyString())).thenReturn(Optional.empty());
+
+		Optional<String> token = service.exchange(jwt, 1L);
+
+		assertTrue(token.isPresent());
+		assertTrue(RefreshTokenService.isOpaque(token.get()));
+
+		// the JWT token is recorded as used token of the new family
+		String family = RefreshTokenService.hash(token.get());
+		verify(tokenRepo).insertUsed(eq(RefreshTokenService.hash(jwt)), eq(family), eq(1L), anyLong());
+		verify(tokenRepo).insert(eq(family), eq(family), eq(1L), anyLong());
+	}
+
+	@Test
+	public void exchangedJwtTokenReuseRevokesFamily() {
+		String jwt = "eyJhbGciOiJSUzI1NiJ9.e30.c2ln";
+		when(tokenRepo.find(RefreshTokenService.hash(jwt)))
+				.thenReturn(Optional.of(new StoredToken("family", 1L, inOneHour(), true)));
+
+		assertFalse(service.exchange(jwt, 1L).isPresent());
+
+		verify(tokenRepo).deleteFamily("family");
+		verify(tokenRepo, never()).insert(anyString(), anyString(), anyLong(), anyLong());
+		assertTrue(metrics.export().contains("refresh_token_reuse_total 1"));
+	}
+
+	@Test
+	public void rejectExpiredToken() {
+		String token = service.create(1L);
+		when(tokenRepo.find(RefreshTokenService.hash(token)))
+				.thenReturn(Optional.of(new StoredToken("family", 1L, System.currentTimeMillis() - 1, false)));
+
+		assertFalse(service.rotate(token).isPresent());
+
+		verify(tokenRepo, never()).markUsed(anyString());
+	}
+
+	@Test
+	public void rejectUnknownToken() {
+		String token = service.create(1L);
+		when(tokenRepo.find(anyString())).thenReturn(Optional.empty());
+
+		assertFalse(service.rotate(token).isPresent());
+		assertFalse(service.rotate("eyJhbGciOiJSUzI1NiJ9.e30.c2ln").isPresent());
+
+		// only the well-formed token was looked up
+		verify(tokenRepo).find(anyString());
+	}
+
+}
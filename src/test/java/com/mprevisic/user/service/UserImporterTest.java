@@ -0,0 +1,195 @@
+package com.mprevisic.user.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.springframework.dao.DuplicateKeyException;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.ImportResult;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserJdbcRepository;
+import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserSearchIndex;
+
+public class UserImporterTest {
+
+	private UserRepository userRepo;
+
+	private UserJdbcRepository userJdbcRepo;
+
+	private UserBlacklistCache deletedUserCache;
+
+	private PasswordHasher passwordHasher;
+
+	private JdbcExecutor jdbc;
+
+	private UserImporter importer;
+
+	@Before
+	public void setUp() {
+		userRepo = mock(UserRepository.class);
+		when(userRepo.findExistingEmails(anyCollectionOf(String.class))).thenReturn(Collections.emptyList());
+
+		userJdbcRepo = mock(UserJdbcRepository.class);
+		deletedUserCache = mock(UserBlacklistCache.class);
+		passwordHasher = new PasswordHasher(PasswordHasher.BCRYPT, 4, 1000);
+
+		// database calls are always offloaded, like on virtual threads
+		jdbc = new JdbcExecutor(1, 10, t -> !t.getName().startsWith("jdbc-"), new MetricsRegistry());
+
+		importer = new UserImporter(userRepo, userJdbcRepo, deletedUserCache, passwordHasher,
+				new UserSearchIndex(userJdbcRepo, false), jdbc, 2, 2, 4,
+				new MetricsRegistry());
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.shutdown();
+	}
+
+	private static UserDto user(String email, String password) {
+		return new UserDto().setEmail(email).setPassword(password).setRole(1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void onlyDatabaseCallsAreOffloaded() {
+		Thread caller = Thread.currentThread();
+		List<Thread> readers = new ArrayList<>();
+		List<Thread> writers = new ArrayList<>();
+		Iterator<UserDto> users = Arrays.asList(user("user1@gmail.com", "pass1"), user("user2@gmail.com", "pass2"),
+				user("user3@gmail.com", "pass3")).iterator();
+		doAnswer(invocation -> writers.add(Thread.currentThread())).when(userJdbcRepo)
+				.insertAll(any(List.class));
+
+		ImportResult result = importer.importUsers(new Iterator<UserDto>() {
+
+			@Override
+			public boolean hasNext() {
+				readers.add(Thread.currentThread());
+				return users.hasNext();
+			}
+
+			@Override
+			public UserDto next() {
+				return users.next();
+			}
+
+		});
+
+		assertEquals(3, result.getImported());
+		assertTrue(readers.stream().allMatch(t -> t == caller));
+		assertEquals(2, writers.size());
+		assertTrue(writers.stream().allMatch(t -> t.getName().startsWith("jdbc-")));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testImport() {
+		ImportResult result = importer.importUsers(Arrays.asList(user("user1@gmail.com", "pass1"),
+				user("user2@gmail.com", "pass2"), user("user3@gmail.com", "pass3")).iterator());
+
+		assertEquals(3, result.getImported());
+		assertEquals(0, result.getErrors().size());
+
+		ArgumentCaptor<List<UserEntity>> captor = ArgumentCaptor.forClass((Class<List<UserEntity>>) (Class<?>) List.class);
+		verify(userJdbcRepo, times(2)).insertAll(captor.capture());
+		List<UserEntity> inserted = new ArrayList<>();
+		captor.getAllValues().forEach(inserted::addAll);
+
+		assertEquals(3, inserted.size());
+		assertEquals("user1@gmail.com", inserted.get(0).getEmail());
+		assertTrue(passwordHasher.matches("pass1", inserted.get(0).getPassword()));
+		// roles are never imported
+		assertNull(inserted.get(0).getRole());
+		verify(userRepo, times(2)).findExistingEmails(anyCollectionOf(String.class));
+	}
+
+	@Test
+	public void invalidRowsAreReported() {
+		when(userRepo.findExistingEmails(anyCollectionOf(String.class)))
+				.thenReturn(Collections.singletonList("existing@gmail.com"));
+
+		ImportResult result = importer.importUsers(Arrays.asList(user("invalid", "pass1"),
+				user("user2@gmail.com", null), user("user3@gmail.com", "pass3"), user("user3@gmail.com", "pass4"),
+				user("existing@gmail.com", "pass5")).iterator());
+
+		assertEquals(1, result.getImported());
+		assertEquals(4, result.getErrors().size());
+		assertEquals(1, result.getErrors().get(0).getRow());
+		assertEquals("E-mail address has invalid format!", result.getErrors().get(0).getMessage());
+		assertEquals(2, result.getErrors().get(1).getRow());
+		assertEquals("Password is missing!", result.getErrors().get(1).getMessage());
+		assertEquals(4, result.getErrors().get(2).getRow());
+		assertEquals(5, result.getErrors().get(3).getRow());
+		assertEquals("existing@gmail.com", result.getErrors().get(3).getEmail());
+	}
+
+	@Test
+	public void importIsLimitedToMaxRows() {
+		List<UserDto> users = new ArrayList<>();
+		for (int i = 1; i <= 6; i++) {
+			users.add(user("user" + i + "@gmail.com", "pass" + i));
+		}
+
+		ImportResult result = importer.importUsers(users.iterator());
+
+		assertEquals(4, result.getImported());
+		assertEquals(1, result.getErrors().size());
+		assertEquals(5, result.getErrors().get(0).getRow());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void concurrentlyRegisteredUser() {
+		doThrow(new DuplicateKeyException("duplicate")).when(userJdbcRepo).insertAll(any(List.class));
+		doThrow(new DuplicateKeyException("duplicate")).when(userJdbcRepo)
+				.insert(argThat(new ArgumentMatcher<UserEntity>() {
+					@Override
+					public boolean matches(Object user) {
+						return "user2@gmail.com".equals(((UserEntity) user).getEmail());
+					}
+				}));
+
+		ImportResult result = importer.importUsers(
+				Arrays.asList(user("user1@gmail.com", "pass1"), user("user2@gmail.com", "pass2")).iterator());
+
+		assertEquals(1, result.getImported());
+		assertEquals(1, result.getErrors().size());
+		assertEquals(2, result.getErrors().get(0).getRow());
+	}
+
+	@Test
+	public void reregisteredUserIsRemovedFromBlacklist() {
+		when(deletedUserCache.checkUserDeleted("user1@gmail.com")).thenReturn(true);
+
+		importer.importUsers(Arrays.asList(user("user1@gmail.com", "pass1")).iterator());
+
+		verify(deletedUserCache).removeFromCache("user1@gmail.com");
+	}
+
+}
@@ -1,36 +1,62 @@
 package com.mprevisic.user.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import com.mprevisic.user.Credentials;
 import com.mprevisic.user.domain.UserEntity;
 import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserJdbcRepository;
 import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.AuthMetrics;
 import com.mprevisic.user.service.UserService;
 import com.mprevisic.user.util.UserBlacklistCache;
+import com.mprevisic.user.util.UserCache;
+import com.mprevisic.user.util.UserSearchIndex;
 
 public class UserServiceTest {
 	
 	private UserService userService;
 	
+	private UserRepository userRepo;
+
+	private UserJdbcRepository userJdbcRepo;
+
+	private UserBlacklistCache delUserCache;
+
+	private RefreshTokenService refreshTokens;
+	
 	@Before
 	public void setUp() {
-		UserRepository userRepo = mock(UserRepository.class);
+		userRepo = mock(UserRepository.class);
 		
 		BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 		String password = passwordEncoder.encode("test123!");
@@ -52,11 +78,27 @@ public class UserServiceTest {
 		when(userRepo.findByEmail("user2@gmail.com")).thenReturn(Optional.of(user2));
 		when(userRepo.findOne(anyLong())).thenReturn(null);
 		when(userRepo.findOne(2L)).thenReturn(user);
+		when(userRepo.findViewByEmail(anyString())).thenReturn(Optional.empty());
+		when(userRepo.findViewByEmail("user@gmail.com")).thenReturn(Optional.of(UserView.of(user)));
+		when(userRepo.findViewByEmail("user2@gmail.com")).thenReturn(Optional.of(UserView.of(user2)));
+		when(userRepo.findViewById(anyLong())).thenReturn(Optional.empty());
+		when(userRepo.findViewById(2L)).thenReturn(Optional.of(UserView.of(user)));
 		when(userRepo.save(any(UserEntity.class))).thenReturn(user);
 		
-		UserBlacklistCache delUserCache = mock(UserBlacklistCache.class);
+		delUserCache = mock(UserBlacklistCache.class);
+		refreshTokens = mock(RefreshTokenService.class);
+		
+		PasswordHasher passwordHasher = new PasswordHasher(PasswordHasher.BCRYPT, 10, 1000);
+		PasswordVerifier passwordVerifier = new PasswordVerifier(1, 10, passwordHasher, new MetricsRegistry());
+		
+		UserCache userCache = new UserCache(userRepo, 100, 60000, new MetricsRegistry());
+		UserSearchIndex searchIndex = new UserSearchIndex(mock(UserJdbcRepository.class), false);
 		
-		this.userService = new UserService(userRepo, delUserCache);
+		userJdbcRepo = mock(UserJdbcRepository.class);
+		when(userJdbcRepo.update(anyLong(), anyLong(), anyMapOf(String.class, Object.class))).thenReturn(true);
+		
+		this.userService = new UserService(userRepo, userJdbcRepo, userCache, searchIndex, delUserCache,
+				passwordVerifier, passwordHasher, refreshTokens, new AuthMetrics(new MetricsRegistry()));
 	}
 
 	@Test
@@ -65,17 +107,45 @@ public class UserServiceTest {
 		cred.setEmail("user@gmail.com");
 		cred.setPassword("test123!");
 		
-		boolean result = userService.authenticate(cred);
+		boolean result = userService.authenticate(cred).isPresent();
 		assertTrue(result);
 	}
 
+	@Test
+	public void authenticateUpgradesPasswordHash() throws InterruptedException, ExecutionException {
+		UserEntity user = userRepo.findByEmail("user@gmail.com").get();
+		String oldHash = new BCryptPasswordEncoder(4).encode("test123!");
+		user.setPassword(oldHash);
+		
+		Credentials cred = new Credentials();
+		cred.setEmail("user@gmail.com");
+		cred.setPassword("test123!");
+		
+		assertTrue(userService.authenticate(cred).isPresent());
+		assertTrue(userService.authenticateAsync(cred).get().isPresent());
+		
+		verify(userRepo, times(2)).updatePassword(eq(2L), startsWith("$2a$10$"), eq(oldHash));
+	}
+	
+	@Test
+	public void authenticateKeepsCurrentPasswordHash() throws InterruptedException, ExecutionException {
+		Credentials cred = new Credentials();
+		cred.setEmail("user@gmail.com");
+		cred.setPassword("test123!");
+		
+		assertTrue(userService.authenticate(cred).isPresent());
+		assertTrue(userService.authenticateAsync(cred).get().isPresent());
+		
+		verify(userRepo, never()).updatePassword(anyLong(), anyString(), anyString());
+	}
+
 	@Test
 	public void authenticateUserNotFound() {
 		Credentials cred = new Credentials();
 		cred.setEmail("xyz@gmail.com");
 		cred.setPassword("test123!");
 		
-		boolean result = userService.authenticate(cred);
+		boolean result = userService.authenticate(cred).isPresent();
 		assertFalse(result);
 	}
 	
@@ -85,10 +155,32 @@ public class UserServiceTest {
 		cred.setEmail("xyz@gmail.com");
 		cred.setPassword("abc123");
 		
-		boolean result = userService.authenticate(cred);
+		boolean result = userService.authenticate(cred).isPresent();
 		assertFalse(result);
 	}
 	
+	@Test
+	public void testAuthenticateUserAsync() throws InterruptedException, ExecutionException {
+		Credentials cred = new Credentials();
+		cred.setEmail("user@gmail.com");
+		cred.setPassword("test123!");
+		
+		assertTrue(userService.authenticateAsync(cred).get().isPresent());
+		
+		cred.setPassword("abc123");
+		
+		assertFalse(userService.authenticateAsync(cred).get().isPresent());
+	}
+	
+	@Test
+	public void authenticateAsyncUserNotFound() throws InterruptedException, ExecutionException {
+		Credentials cred = new Credentials();
+		cred.setEmail("xyz@gmail.com");
+		cred.setPassword("test123!");
+		
+		assertFalse(userService.authenticateAsync(cred).get().isPresent());
+	}
+	
 	@Test
 	public void testFindByEmail() {
 		Optional<UserDto> user = userService.findByEmail("user@gmail.com");
@@ -155,6 +247,80 @@ public class UserServiceTest {
 		assertNotNull(res);
 	}
 	
+	@Test
+	public void updateUserWritesChangedColumns() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("email", "user@gmail.com");
+		updatedUser.put("title", "Dr.");
+		
+		UserDto res = userService.updateUser(user, updatedUser);
+		
+		assertEquals("Dr.", res.getTitle());
+		assertEquals(1, res.getVersion());
+		verify(userJdbcRepo).update(2L, 0L, Collections.singletonMap("title", "Dr."));
+		verify(userRepo, never()).save(any(UserEntity.class));
+	}
+	
+	@Test
+	public void updateUserWithoutChanges() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("email", "user@gmail.com");
+		updatedUser.put("firstName", null);
+		
+		userService.updateUser(user, updatedUser);
+		
+		verify(userJdbcRepo, never()).update(anyLong(), anyLong(), anyMapOf(String.class, Object.class));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void updateUserPassword() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("password", "new123!");
+		
+		userService.updateUser(user, updatedUser);
+		
+		ArgumentCaptor<Map> columns = ArgumentCaptor.forClass(Map.class);
+		verify(userJdbcRepo).update(eq(2L), eq(0L), columns.capture());
+		assertTrue(new BCryptPasswordEncoder().matches("new123!", (String) columns.getValue().get("password")));
+		assertTrue((Long) columns.getValue().get("password_changed") > 0);
+
+		// all sessions of the user are revoked
+		verify(delUserCache).revokeTokens("user@gmail.com", (Long) columns.getValue().get("password_changed"));
+		verify(refreshTokens).revokeAll(2L);
+	}
+	
+	@Test
+	public void updateUserWithoutPasswordKeepsTokens() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("title", "Dr.");
+		
+		userService.updateUser(user, updatedUser);
+		
+		verify(delUserCache, never()).revokeTokens(anyString(), anyLong());
+		verify(delUserCache, never()).removeFromCache(anyString());
+		verify(refreshTokens, never()).revokeAll(anyLong());
+	}
+	
+	@Test(expected = OptimisticLockingFailureException.class)
+	public void updateChangedUser() {
+		when(userJdbcRepo.update(anyLong(), anyLong(), anyMapOf(String.class, Object.class))).thenReturn(false);
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("title", "Dr.");
+		
+		userService.updateUser(user, updatedUser);
+	}
+	
 	@Test(expected = IllegalArgumentException.class)
 	public void udateUserEmailAlreadyExists() {
 		Optional<UserDto> user = userService.findByEmail("user@gmail.com");
@@ -165,6 +331,32 @@ public class UserServiceTest {
 		userService.updateUser(user.get(), updatedUser);
 	}
 	
+	@Test(expected = IllegalArgumentException.class)
+	public void updateUserInvalidEmail() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("email", "no-email");
+		
+		userService.updateUser(user, updatedUser);
+	}
+	
+	@Test
+	public void updateUserNonStringProperty() {
+		UserDto user = userService.findById(2L).get();
+		
+		Map<String, Object> updatedUser = new HashMap<>();
+		updatedUser.put("firstName", 42);
+		
+		try {
+			userService.updateUser(user, updatedUser);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("Property 'firstName' must be a string!", e.getMessage());
+		}
+		verify(userJdbcRepo, never()).update(anyLong(), anyLong(), anyMapOf(String.class, Object.class));
+	}
+	
 	private UserDto createUser() {
 		UserDto user = new UserDto();
 		
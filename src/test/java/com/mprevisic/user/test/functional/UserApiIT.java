@@ -2,6 +2,14 @@ package com.mprevisic.user.test.functional;
 
 import static com.jayway.restassured.RestAssured.given;
 import static com.jayway.restassured.RestAssured.when;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -12,6 +20,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -20,7 +29,10 @@ import com.jayway.restassured.http.ContentType;
 import com.jayway.restassured.parsing.Parser;
 import com.jayway.restassured.response.ExtractableResponse;
 import com.jayway.restassured.response.Response;
+import com.mprevisic.user.Constants;
+import com.mprevisic.user.domain.UserEntity;
 import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.util.UserCache;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = WebEnvironment.DEFINED_PORT)
@@ -30,6 +42,9 @@ public class UserApiIT {
 	@Autowired
 	private UserRepository userRepo;
 
+	@Autowired
+	private UserCache userCache;
+
 	private static final Map<String, Object> defaultUser = new HashMap<>();
 
 	private static final Map<String, Object> defaultCredentials = new HashMap<>();
@@ -51,6 +66,7 @@ public class UserApiIT {
 	@Before
 	public void setUp() {
 		userRepo.deleteAll();
+		userCache.invalidateAll();
 		RestAssured.port = 8080;
 		RestAssured.defaultParser = Parser.JSON;
 	}
@@ -76,7 +92,7 @@ public class UserApiIT {
 	 */
 	@Test
 	public void getUserOptions() {
-		when().options("/api/v1/users/").then().statusCode(200).header("Allow", "OPTIONS,POST");
+		when().options("/api/v1/users/").then().statusCode(200).header("Allow", "OPTIONS,GET,POST");
 	}
 	
 	@Test
@@ -111,6 +127,55 @@ public class UserApiIT {
 				.statusCode(200).cookie("jwt-refresh-token").cookie("jwt-access-token").cookie("xsrf-token");
 	}
 
+	/**
+	 * Logs a user in and checks that the password verification, the token
+	 * signing and rejected requests are exported in the metrics, which only
+	 * administrators can read
+	 */
+	@Test
+	public void getMetrics() {
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		// no cookies at all
+		when().get("/api/v1/users/1").then().statusCode(401);
+		when().get("/metrics").then().statusCode(401);
+		when().get("/metrics/").then().statusCode(401);
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when().get("/metrics").then()
+				.statusCode(403);
+
+		cookies = loginAsAdmin();
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when().get("/metrics").then()
+				.statusCode(200).body(containsString("password_verification_seconds_count"))
+				.body(containsString("password_verification_queue_depth"))
+				.body(containsString("jwt_signing_seconds_bucket{le=\"+Inf\"}"))
+				.body(containsString("auth_failures_total{cause=\"missing_csrf_cookie\"}"))
+				.body(containsString("# TYPE login_rate_limiter_evictions_total counter"));
+	}
+
+	/**
+	 * Logs a user in whose password hash has a lower work factor than
+	 * configured and checks that the hash is upgraded
+	 */
+	@Test
+	public void loginUpgradesPasswordHash() {
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+
+		UserEntity user = userRepo.findByEmail("user@gmail.com").get();
+		user.setPassword(new BCryptPasswordEncoder(4).encode("temp213test"));
+		userRepo.save(user);
+		userCache.invalidateAll();
+
+		given().contentType(ContentType.JSON).body(defaultCredentials).when().post("/api/v1/session").then()
+				.statusCode(200);
+
+		assertTrue(userRepo.findByEmail("user@gmail.com").get().getPassword().startsWith("$2a$10$"));
+	}
+
 	/**
 	 * Attempts to obtain a session with wrong password of the user
 	 */
@@ -125,6 +190,25 @@ public class UserApiIT {
 		given().contentType(ContentType.JSON).body(credentials).when().post("/api/v1/session").then().statusCode(401);
 	}
 
+	/**
+	 * Logs in with the same e-mail address until the login rate of the
+	 * address (30 in the test configuration) is exceeded
+	 */
+	@Test
+	public void loginRateLimited() {
+		Map<String, Object> credentials = new HashMap<String, Object>();
+		credentials.put("email", "throttled@gmail.com");
+		credentials.put("password", "blabla123");
+
+		for (int i = 0; i < 30; i++) {
+			given().contentType(ContentType.JSON).body(credentials).when().post("/api/v1/session").then()
+					.statusCode(401);
+		}
+
+		given().contentType(ContentType.JSON).body(credentials).when().post("/api/v1/session").then().statusCode(429)
+				.header("Retry-After", notNullValue());
+	}
+
 	/**
 	 * Obtains a new JTW Access Token by using the JWT Refresh Token
 	 */
@@ -328,11 +412,193 @@ public class UserApiIT {
 
 		Map<String, Object> newProps = new HashMap<>();
 		newProps.put("role", 22);
+		newProps.put("lastName", "Smith");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(200)
+				.body("lastName", equalTo("Smith")).body("password", nullValue());
+
+		// the password is unchanged
+		given().contentType(ContentType.JSON).body(defaultCredentials).when().post("/api/v1/session").then()
+				.statusCode(200);
+
+		Map<String, Object> invalidProps = new HashMap<>();
+		invalidProps.put("email", "no-email");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(invalidProps).when().patch("/api/v1/users/" + userId).then().statusCode(400);
+
+		invalidProps.clear();
+		invalidProps.put("lastName", 42);
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(invalidProps).when().patch("/api/v1/users/" + userId).then().statusCode(400);
+
+		// longer than the column
+		invalidProps.put("lastName", String.format("%200s", "Smith"));
 
 		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
-				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(200);
+				.body(invalidProps).when().patch("/api/v1/users/" + userId).then().statusCode(400);
 	}
 	
+	/**
+	 * Modifies a user with the entity tag of the current version and with
+	 * an outdated one
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void modifyUserIfMatch() {
+		Map<String, Object> savedUser = given().contentType(ContentType.JSON).body(defaultUser).when()
+				.post("/api/v1/users").then().statusCode(201).extract().body().as(Map.class);
+
+		Integer userId = (Integer) savedUser.get("userId");
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		String eTag = given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when()
+				.get("/api/v1/users/" + userId).then().statusCode(200).body("version", nullValue()).extract()
+				.header("ETag");
+
+		Map<String, Object> newProps = new HashMap<>();
+		newProps.put("title", "Dr.");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).header("If-Match", eTag).cookies(cookies)
+				.contentType(ContentType.JSON).body(newProps).when().patch("/api/v1/users/" + userId).then()
+				.statusCode(200).header("ETag", not(equalTo(eTag))).body("title", equalTo("Dr."));
+
+		newProps.put("title", "Prof.");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).header("If-Match", eTag).cookies(cookies)
+				.contentType(ContentType.JSON).body(newProps).when().patch("/api/v1/users/" + userId).then()
+				.statusCode(412);
+	}
+
+	/**
+	 * Changes the password, which revokes the access and refresh tokens of
+	 * the user
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void modifyPassword() {
+		Map<String, Object> savedUser = given().contentType(ContentType.JSON).body(defaultUser).when()
+				.post("/api/v1/users").then().statusCode(201).extract().body().as(Map.class);
+
+		Integer userId = (Integer) savedUser.get("userId");
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		Map<String, Object> newProps = new HashMap<>();
+		newProps.put("password", "new213test");
+
+		// the current password is required
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(403);
+
+		newProps.put("currentPassword", "wrong");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(403);
+
+		newProps.put("currentPassword", "temp213test");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(200)
+				.body("password", nullValue());
+
+		// a session created right after the change, usually within the same
+		// second, is valid
+		Map<String, Object> newCredentials = new HashMap<>(defaultCredentials);
+		newCredentials.put("password", "new213test");
+
+		Map<String, String> newCookies = given().contentType(ContentType.JSON).body(newCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		given().header("xsrf-token", newCookies.get("xsrf-token")).cookies(newCookies).when()
+				.get("/api/v1/users/" + userId).then().statusCode(200);
+
+		given().contentType(ContentType.JSON).cookie("jwt-refresh-token", newCookies.get("jwt-refresh-token"))
+				.when().post("/api/v1/token/").then().statusCode(200);
+
+		// the old session is revoked
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when()
+				.get("/api/v1/users/" + userId).then().statusCode(401);
+
+		given().contentType(ContentType.JSON).cookie("jwt-refresh-token", cookies.get("jwt-refresh-token")).when()
+				.post("/api/v1/token/").then().statusCode(401);
+
+		given().contentType(ContentType.JSON).body(defaultCredentials).when().post("/api/v1/session").then()
+				.statusCode(401);
+	}
+
+	/**
+	 * Guesses the current password until the login rate of the e-mail
+	 * address (30 in the test configuration) is exceeded
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void modifyPasswordRateLimited() {
+		Map<String, Object> user = new HashMap<>(defaultUser);
+		user.put("email", "guessing@gmail.com");
+		Map<String, Object> savedUser = given().contentType(ContentType.JSON).body(user).when()
+				.post("/api/v1/users").then().statusCode(201).extract().body().as(Map.class);
+
+		Integer userId = (Integer) savedUser.get("userId");
+
+		Map<String, Object> credentials = new HashMap<>(defaultCredentials);
+		credentials.put("email", "guessing@gmail.com");
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(credentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		Map<String, Object> newProps = new HashMap<>();
+		newProps.put("password", "new213test");
+		newProps.put("currentPassword", "wrong");
+
+		// the login counts as well
+		for (int i = 1; i < 30; i++) {
+			given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+					.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(403);
+		}
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(429)
+				.header("Retry-After", notNullValue());
+	}
+
+	/**
+	 * Attempts to change the password of another user
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void modifyPasswordOfOtherUser() {
+		Map<String, Object> savedUser = given().contentType(ContentType.JSON).body(defaultUser).when()
+				.post("/api/v1/users").then().statusCode(201).extract().body().as(Map.class);
+
+		Integer userId = (Integer) savedUser.get("userId");
+
+		Map<String, Object> otherUser = new HashMap<>(defaultUser);
+		otherUser.put("email", "other@gmail.com");
+		given().contentType(ContentType.JSON).body(otherUser).when().post("/api/v1/users").then().statusCode(201);
+
+		Map<String, Object> otherCredentials = new HashMap<>(defaultCredentials);
+		otherCredentials.put("email", "other@gmail.com");
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(otherCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		Map<String, Object> newProps = new HashMap<>();
+		newProps.put("password", "new213test");
+		newProps.put("currentPassword", "temp213test");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(403);
+
+		// the password is unchanged
+		given().contentType(ContentType.JSON).body(defaultCredentials).when().post("/api/v1/session").then()
+				.statusCode(200);
+	}
+
 	/**
 	 * Attempts to modify a user without a valid JWT access token
 	 */
@@ -358,4 +624,165 @@ public class UserApiIT {
 				.body(newProps).when().patch("/api/v1/users/" + userId).then().statusCode(401);
 	}
 
+	/**
+	 * Gives the registered default user the administrator role and logs in
+	 * 
+	 * @return cookies of the session
+	 */
+	private Map<String, String> loginAsAdmin() {
+		userRepo.save(userRepo.findByEmail("user@gmail.com").get().setRole(Constants.ADMIN_ROLE));
+		userCache.invalidateAll();
+
+		return given().contentType(ContentType.JSON).body(defaultCredentials).when().post("/api/v1/session").then()
+				.statusCode(200).extract().cookies();
+	}
+
+	/**
+	 * Attempts to register an administrator
+	 */
+	@Test
+	public void registerAdmin() {
+		Map<String, Object> admin = new HashMap<>(defaultUser);
+		admin.put("role", Constants.ADMIN_ROLE);
+
+		given().contentType(ContentType.JSON).body(admin).when().post("/api/v1/users").then().statusCode(403);
+	}
+
+	/**
+	 * Imports users from JSON and CSV and logs in as an imported user
+	 */
+	@Test
+	public void importUsers() {
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		// only administrators can import users
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body("[]").when().post("/api/v1/users/import").then().statusCode(403);
+
+		cookies = loginAsAdmin();
+
+		String json = "[{\"email\":\"import1@gmail.com\",\"password\":\"pass123\",\"firstName\":\"Jane\"},"
+				+ "{\"email\":\"user@gmail.com\",\"password\":\"pass123\"},"
+				+ "{\"email\":\"import2@gmail.com\"}]";
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType(ContentType.JSON)
+				.body(json).when().post("/api/v1/users/import").then().statusCode(200)
+				.body("imported", equalTo(1)).body("errors.row", contains(2, 3));
+
+		String csv = "email,password,lastName\nimport3@gmail.com,pass456,\"Doe, Jr.\"\n";
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).contentType("text/csv")
+				.body(csv).when().post("/api/v1/users/import").then().statusCode(200)
+				.body("imported", equalTo(1));
+
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("email", "import3@gmail.com");
+		credentials.put("password", "pass456");
+
+		given().contentType(ContentType.JSON).body(credentials).when().post("/api/v1/session").then()
+				.statusCode(200);
+	}
+
+	/**
+	 * Lists the users page by page with selected fields
+	 */
+	@Test
+	public void listUsers() {
+		when().get("/api/v1/users").then().statusCode(401);
+		when().get("/api/v1/users/").then().statusCode(401);
+		when().get("/api/v1/users.json").then().statusCode(not(200));
+
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+		userRepo.save(new UserEntity().setEmail("user2@gmail.com").setPassword("x").setFirstName("Jane"));
+		userRepo.save(new UserEntity().setEmail("user3@gmail.com").setPassword("x"));
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		// only administrators can list users
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when().get("/api/v1/users").then()
+				.statusCode(403);
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when().get("/api/v1/users/").then()
+				.statusCode(403);
+
+		cookies = loginAsAdmin();
+
+		Integer nextAfterId = given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies)
+				.queryParam("limit", 2).queryParam("fields", "userId,email").when().get("/api/v1/users").then()
+				.statusCode(200).body("users.email", contains("user@gmail.com", "user2@gmail.com"))
+				.body("users[0].firstName", nullValue()).body("users[0].password", nullValue())
+				.extract().path("nextAfterId");
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("afterId", nextAfterId)
+				.when().get("/api/v1/users").then().statusCode(200)
+				.body("users.email", contains("user3@gmail.com")).body("nextAfterId", nullValue());
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("fields", "password")
+				.when().get("/api/v1/users").then().statusCode(400);
+	}
+
+	/**
+	 * Exports all users as NDJSON and CSV
+	 */
+	@Test
+	public void exportUsers() {
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+		userRepo.save(new UserEntity().setEmail("user2@gmail.com").setPassword("x").setLastName("Doe, Jr."));
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		// only administrators can export users
+		when().get("/api/v1/users/export/").then().statusCode(401);
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).when().get("/api/v1/users/export")
+				.then().statusCode(403);
+
+		cookies = loginAsAdmin();
+
+		String ndjson = given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies)
+				.queryParam("fields", "email,role").when().get("/api/v1/users/export").then().statusCode(200)
+				.contentType(containsString("application/x-ndjson")).extract().asString();
+
+		assertEquals("{\"email\":\"user@gmail.com\",\"role\":" + Constants.ADMIN_ROLE + "}\n{\"email\":\"user2@gmail.com\",\"role\":null}\n",
+				ndjson);
+
+		String csv = given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies)
+				.queryParam("format", "csv").queryParam("fields", "email,lastName").when()
+				.get("/api/v1/users/export").then().statusCode(200).extract().asString();
+
+		assertEquals("email,lastName\r\nuser@gmail.com,Doe\r\nuser2@gmail.com,\"Doe, Jr.\"\r\n", csv);
+	}
+
+	/**
+	 * Searches users by e-mail and last name prefix
+	 */
+	@Test
+	public void searchUsers() {
+		given().contentType(ContentType.JSON).body(defaultUser).when().post("/api/v1/users").then().statusCode(201);
+		userRepo.save(new UserEntity().setEmail("jane@gmail.com").setPassword("x").setLastName("Doe_Smith"));
+		userRepo.save(new UserEntity().setEmail("max@gmail.com").setPassword("x").setLastName("Mustermann"));
+
+		Map<String, String> cookies = given().contentType(ContentType.JSON).body(defaultCredentials).when()
+				.post("/api/v1/session").then().statusCode(200).extract().cookies();
+
+		// only administrators can search users
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("q", "Doe").when()
+				.get("/api/v1/users/search").then().statusCode(403);
+
+		cookies = loginAsAdmin();
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("q", "Doe").when()
+				.get("/api/v1/users/search").then().statusCode(200)
+				.body("email", contains("user@gmail.com", "jane@gmail.com"));
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("q", "Doe_").when()
+				.get("/api/v1/users/search").then().statusCode(200).body("email", contains("jane@gmail.com"));
+
+		given().header("xsrf-token", cookies.get("xsrf-token")).cookies(cookies).queryParam("q", "max@").when()
+				.get("/api/v1/users/search").then().statusCode(200).body("email", contains("max@gmail.com"));
+	}
+
 }
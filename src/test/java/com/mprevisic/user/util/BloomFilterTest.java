@@ -0,0 +1,120 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	@Test
+	public void testEmpty() {
+		BloomFilter filter = BloomFilter.of(Collections.emptyList());
+
+		assertFalse(filter.mightContain("user@gmail.com"));
+		assertFalse(filter.mightContain(null));
+	}
+
+	@Test
+	public void testContainsAllElements() {
+		List<String> users = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			users.add("user" + i + "@gmail.com");
+		}
+
+		BloomFilter filter = BloomFilter.of(users);
+
+		for (String user : users) {
+			assertTrue(filter.mightContain(user));
+		}
+	}
+
+	@Test
+	public void testFalsePositiveRate() {
+		List<String> users = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			users.add("user" + i + "@gmail.com");
+		}
+
+		BloomFilter filter = BloomFilter.of(users);
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("other" + i + "@gmail.com")) {
+				falsePositives++;
+			}
+		}
+
+		// expected rate is about 1%
+		assertTrue("False positives: " + falsePositives, falsePositives < 3000);
+	}
+
+	@Test
+	public void testAdd() {
+		BloomFilter filter = BloomFilter.of(Arrays.asList("user@gmail.com"));
+
+		// holds at least 64 elements before it has to be rebuilt
+		int added = 0;
+		while (filter.add("user" + added + "@gmail.com")) {
+			added++;
+		}
+
+		assertTrue("Added: " + added, added >= 63);
+		assertTrue(filter.mightContain("user@gmail.com"));
+		for (int i = 0; i < added; i++) {
+			assertTrue(filter.mightContain("user" + i + "@gmail.com"));
+		}
+		assertFalse(BloomFilter.EMPTY.add("user@gmail.com"));
+	}
+
+	@Test
+	public void testSingleElement() {
+		BloomFilter filter = BloomFilter.of(Arrays.asList("user@gmail.com"));
+
+		assertTrue(filter.mightContain("user@gmail.com"));
+		assertFalse(filter.mightContain("user2@gmail.com"));
+	}
+
+	@Test
+	public void testSameStringHashCode() {
+		assertEquals("Aa@gmail.com".hashCode(), "BB@gmail.com".hashCode());
+
+		BloomFilter filter = BloomFilter.of(Arrays.asList("Aa@gmail.com"));
+
+		assertTrue(filter.mightContain("Aa@gmail.com"));
+		assertFalse(filter.mightContain("BB@gmail.com"));
+	}
+
+	@Test
+	public void testAddExistingElement() {
+		BloomFilter filter = BloomFilter.of(Arrays.asList("user@gmail.com", "user@gmail.com"));
+
+		// elements added before don't use up the capacity
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(filter.add("user@gmail.com"));
+		}
+
+		int added = 0;
+		while (filter.add("user" + added + "@gmail.com")) {
+			added++;
+		}
+		assertTrue("Added: " + added, added >= 63);
+	}
+
+	@Test
+	public void testHash() {
+		// reference values of MurmurHash3_x64_128 with seed 0
+		assertArrayEquals(new long[] { 0, 0 }, BloomFilter.hash(new byte[0]));
+		assertArrayEquals(new long[] { 0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L },
+				BloomFilter.hash("hello".getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.mprevisic.user.dto.UserDto;
+
+public class CsvUserReaderTest {
+
+	@Test
+	public void testRead() {
+		CsvUserReader reader = new CsvUserReader(new StringReader(
+				"email,password,firstName,lastName,role\r\nuser@gmail.com,pass123,John,Doe,1\r\n\r\nuser2@gmail.com,pass456,,,\r\n"));
+
+		UserDto user = reader.next();
+		assertEquals("user@gmail.com", user.getEmail());
+		assertEquals("pass123", user.getPassword());
+		assertEquals("John", user.getFirstName());
+		assertEquals("Doe", user.getLastName());
+		assertEquals(Integer.valueOf(1), user.getRole());
+
+		user = reader.next();
+		assertEquals("user2@gmail.com", user.getEmail());
+		assertNull(user.getFirstName());
+		assertNull(user.getRole());
+
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void readQuotedFields() {
+		CsvUserReader reader = new CsvUserReader(
+				new StringReader("Password,Email,Title\n\"a,\"\"b\"\"\nc\",user@gmail.com,\"Dr.\""));
+
+		UserDto user = reader.next();
+		assertEquals("a,\"b\"\nc", user.getPassword());
+		assertEquals("user@gmail.com", user.getEmail());
+		assertEquals("Dr.", user.getTitle());
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void invalidRowIsSkipped() {
+		CsvUserReader reader = new CsvUserReader(
+				new StringReader("email,password,role\nuser@gmail.com,pass123\nuser2@gmail.com,pass456,x\nuser3@gmail.com,pass789,2"));
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				reader.next();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		assertTrue(reader.hasNext());
+		assertEquals("user3@gmail.com", reader.next().getEmail());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownColumn() {
+		new CsvUserReader(new StringReader("email,password,age\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void headerMissing() {
+		new CsvUserReader(new StringReader(""));
+	}
+
+}
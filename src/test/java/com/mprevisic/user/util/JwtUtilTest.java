@@ -1,10 +1,5 @@
 package com.mprevisic.user.util;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Optional;
@@ -16,26 +11,33 @@ import static org.mockito.Mockito.*;
 
 import com.mprevisic.user.Constants;
 import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserDto;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.KeyRepository;
 import com.mprevisic.user.repository.UserRepository;
+import com.mprevisic.user.security.AuthMetrics;
+import com.mprevisic.user.security.JwtClaims;
 import com.mprevisic.user.security.KeyPairContainer;
 import com.mprevisic.user.util.JwtUtil;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTParser;
 import com.nimbusds.jwt.ReadOnlyJWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
 
 public class JwtUtilTest {
 
 	private JwtUtil jwtUtil;
 
-	@Before
-	public void setUp() throws NoSuchAlgorithmException {
-		KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance("RSA");
-		keyGenerator.initialize(1024);
-		KeyPair kp = keyGenerator.genKeyPair();
+	private UserCache userCache;
+
+	private KeyPairContainer keyPairContainer;
+
+	private AuthMetrics authMetrics;
 
-		KeyPairContainer keyPairContainer = mock(KeyPairContainer.class);
-		when(keyPairContainer.getPrivateKey()).thenReturn((RSAPrivateKey) kp.getPrivate());
-		when(keyPairContainer.getPublicKey()).thenReturn((RSAPublicKey) kp.getPublic());
+	@Before
+	public void setUp() {
+		keyPairContainer = new KeyPairContainer(mock(KeyRepository.class), "RS256");
 
 		UserEntity user = new UserEntity();
 		user.setEmail("user@gmail.com");
@@ -43,10 +45,12 @@ public class JwtUtilTest {
 		user.setRole(1);
 
 		UserRepository userRepo = mock(UserRepository.class);
-		when(userRepo.findByEmail(anyString())).thenReturn(Optional.empty());
-		when(userRepo.findByEmail("user@gmail.com")).thenReturn(Optional.of(user));
+		when(userRepo.findViewByEmail(anyString())).thenReturn(Optional.empty());
+		when(userRepo.findViewByEmail("user@gmail.com")).thenReturn(Optional.of(UserView.of(user)));
 
-		jwtUtil = new JwtUtil(keyPairContainer, userRepo);
+		userCache = new UserCache(userRepo, 100, 60000, new MetricsRegistry());
+		authMetrics = new AuthMetrics(new MetricsRegistry());
+		jwtUtil = new JwtUtil(keyPairContainer, userCache, authMetrics);
 	}
 
 	@Test
@@ -83,18 +87,96 @@ public class JwtUtilTest {
 	public void testValidateRefreshToken() {
 		String jwtToken = jwtUtil.createRefreshToken("user@gmail.com", 1);
 
-		Optional<String> user = jwtUtil.validateRefreshToken(jwtToken);
+		Optional<UserDto> user = jwtUtil.validateRefreshToken(jwtToken);
 
 		assertTrue(user.isPresent());
 
-		assertEquals("user@gmail.com", user.get());
+		assertEquals("user@gmail.com", user.get().getEmail());
+		assertEquals(Integer.valueOf(1), user.get().getRole());
+	}
+
+	@Test
+	public void validateRefreshTokenSingleLookup() {
+		UserRepository userRepo = mock(UserRepository.class);
+		when(userRepo.findViewByEmail("user@gmail.com"))
+				.thenReturn(Optional.of(UserView.of(new UserEntity().setEmail("user@gmail.com").setRole(1))));
+
+		// user cache disabled, every lookup goes to the repository
+		JwtUtil uncachedJwtUtil = new JwtUtil(keyPairContainer, new UserCache(userRepo, 0, 60000, new MetricsRegistry()),
+				authMetrics);
+
+		Optional<UserDto> user = uncachedJwtUtil.validateRefreshToken(jwtUtil.createRefreshToken("user@gmail.com", 1));
+
+		assertTrue(user.isPresent());
+		verify(userRepo, times(1)).findViewByEmail("user@gmail.com");
 	}
 
 	@Test
 	public void validateRefreshTokenUserNotFound() {
 		String jwtToken = jwtUtil.createRefreshToken("xyz@gmail.com", 1);
 
-		Optional<String> user = jwtUtil.validateRefreshToken(jwtToken);
+		Optional<UserDto> user = jwtUtil.validateRefreshToken(jwtToken);
+
+		assertFalse(user.isPresent());
+	}
+
+	@Test
+	public void validateRefreshTokenIssuedBeforePasswordChange() throws ParseException {
+		String jwtToken = jwtUtil.createRefreshToken("user@gmail.com", 1);
+		long issuedAt = JwtClaims.parse(jwtToken).getIssuedAt();
+
+		assertFalse(passwordChangedAt(issuedAt + 1).validateRefreshToken(jwtToken).isPresent());
+	}
+
+	@Test
+	public void validateRefreshTokenIssuedInSecondOfPasswordChange() throws ParseException {
+		String jwtToken = jwtUtil.createRefreshToken("user@gmail.com", 1);
+		long issuedAt = JwtClaims.parse(jwtToken).getIssuedAt();
+
+		// issue times are compared to the millisecond
+		assertTrue(passwordChangedAt(issuedAt - 1).validateRefreshToken(jwtToken).isPresent());
+		assertTrue(passwordChangedAt(issuedAt).validateRefreshToken(jwtToken).isPresent());
+	}
+
+	private JwtUtil passwordChangedAt(long passwordChanged) {
+		UserRepository userRepo = mock(UserRepository.class);
+		when(userRepo.findViewByEmail("user@gmail.com")).thenReturn(Optional.of(UserView.of(new UserEntity()
+				.setEmail("user@gmail.com").setRole(1).setPasswordChanged(passwordChanged))));
+		return new JwtUtil(keyPairContainer, new UserCache(userRepo, 0, 60000, new MetricsRegistry()), authMetrics);
+	}
+
+	@Test
+	public void testTokenKeyId() throws ParseException {
+		String jwtToken = jwtUtil.createAccessToken("user@gmail.com", 1);
+		SignedJWT jwt = SignedJWT.parse(jwtToken);
+
+		assertNotNull(jwt.getHeader().getKeyID());
+		assertEquals("RS256", jwt.getHeader().getAlgorithm().getName());
+	}
+
+	@Test
+	public void testValidateRefreshTokenEs256() throws ParseException {
+		KeyPairContainer es256KeyPairContainer = new KeyPairContainer(mock(KeyRepository.class), "ES256");
+		JwtUtil es256JwtUtil = new JwtUtil(es256KeyPairContainer, userCache, authMetrics);
+
+		String jwtToken = es256JwtUtil.createRefreshToken("user@gmail.com", 1);
+
+		assertEquals("ES256", SignedJWT.parse(jwtToken).getHeader().getAlgorithm().getName());
+
+		Optional<UserDto> user = es256JwtUtil.validateRefreshToken(jwtToken);
+
+		assertTrue(user.isPresent());
+		assertEquals("user@gmail.com", user.get().getEmail());
+	}
+
+	@Test
+	public void validateRefreshTokenUnknownKey() {
+		KeyPairContainer otherKeyPairContainer = new KeyPairContainer(mock(KeyRepository.class), "ES256");
+		JwtUtil otherJwtUtil = new JwtUtil(otherKeyPairContainer, userCache, authMetrics);
+
+		String jwtToken = otherJwtUtil.createRefreshToken("user@gmail.com", 1);
+
+		Optional<UserDto> user = jwtUtil.validateRefreshToken(jwtToken);
 
 		assertFalse(user.isPresent());
 	}
@@ -0,0 +1,112 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.domain.UserBlacklistEventEntity;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserBlacklistEventRepository;
+
+public class PollingBlacklistEventChannelTest {
+
+	private UserBlacklistEventRepository eventRepo;
+
+	private List<BlacklistEvent> received;
+
+	private MetricsRegistry metrics = new MetricsRegistry();
+
+	@Before
+	public void setUp() {
+		eventRepo = mock(UserBlacklistEventRepository.class);
+		when(eventRepo.findMaxId()).thenReturn(10L);
+		when(eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(anyLong())).thenReturn(Collections.emptyList());
+
+		received = new ArrayList<>();
+	}
+
+	private PollingBlacklistEventChannel subscribe(long gapTimeout) {
+		PollingBlacklistEventChannel channel = new PollingBlacklistEventChannel(eventRepo, gapTimeout, 3600000,
+				metrics);
+		channel.subscribe(received::add);
+		return channel;
+	}
+
+	private static UserBlacklistEventEntity event(long id, BlacklistEvent.Type type, String email) {
+		return new UserBlacklistEventEntity().setId(id).setType(type).setEmail(email).setDateTime(1000);
+	}
+
+	@Test
+	public void testPublish() {
+		PollingBlacklistEventChannel channel = subscribe(10000);
+
+		channel.publish(new BlacklistEvent(BlacklistEvent.Type.ADDED, "user@gmail.com", 1000));
+
+		verify(eventRepo).save(any(UserBlacklistEventEntity.class));
+	}
+
+	@Test
+	public void pollFromLastSeenEvent() {
+		PollingBlacklistEventChannel channel = subscribe(10000);
+		when(eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(10L)).thenReturn(Arrays.asList(
+				event(11, BlacklistEvent.Type.ADDED, "user@gmail.com"),
+				event(12, BlacklistEvent.Type.REMOVED, "user@gmail.com")));
+
+		channel.poll();
+		channel.poll();
+
+		verify(eventRepo).findTop500ByIdGreaterThanOrderByIdAsc(12L);
+		assertEquals(2, received.size());
+		assertEquals(BlacklistEvent.Type.ADDED, received.get(0).getType());
+		assertEquals(BlacklistEvent.Type.REMOVED, received.get(1).getType());
+		assertEquals("user@gmail.com", received.get(1).getEmail());
+	}
+
+	@Test
+	public void gapIsReadAgain() {
+		PollingBlacklistEventChannel channel = subscribe(10000);
+		when(eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(10L)).thenReturn(Arrays.asList(
+				event(11, BlacklistEvent.Type.ADDED, "user1@gmail.com"),
+				event(13, BlacklistEvent.Type.ADDED, "user3@gmail.com")));
+		channel.poll();
+
+		// event 12 is committed after event 13
+		when(eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(11L)).thenReturn(Arrays.asList(
+				event(12, BlacklistEvent.Type.ADDED, "user2@gmail.com"),
+				event(13, BlacklistEvent.Type.ADDED, "user3@gmail.com")));
+		channel.poll();
+		channel.poll();
+
+		verify(eventRepo).findTop500ByIdGreaterThanOrderByIdAsc(13L);
+		assertEquals(4, received.size());
+		assertEquals("user2@gmail.com", received.get(2).getEmail());
+		assertEquals("user3@gmail.com", received.get(3).getEmail());
+	}
+
+	@Test
+	public void gapTimesOut() {
+		PollingBlacklistEventChannel channel = subscribe(0);
+		when(eventRepo.findTop500ByIdGreaterThanOrderByIdAsc(10L)).thenReturn(Arrays.asList(
+				event(13, BlacklistEvent.Type.ADDED, "user3@gmail.com")));
+
+		channel.poll();
+		channel.poll();
+
+		verify(eventRepo).findTop500ByIdGreaterThanOrderByIdAsc(13L);
+		assertEquals(1, received.size());
+		assertTrue(metrics.export().contains("blacklist_sync_skipped_events_total 2"));
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.domain.UserBlacklistEntity;
+import com.mprevisic.user.repository.UserBlacklistRepository;
+
+public class UserBlacklistCacheTest {
+
+	private static final long TWO_HOURS = 2 * 60 * 60 * 1000L;
+
+	private UserBlacklistRepository blacklistRepo;
+
+	private LocalBlacklistEventChannel eventChannel;
+
+	private UserBlacklistCache cache;
+
+	@Before
+	public void setUp() {
+		long now = System.currentTimeMillis();
+
+		blacklistRepo = mock(UserBlacklistRepository.class);
+		when(blacklistRepo.findAll()).thenReturn(Arrays.asList(
+				new UserBlacklistEntity().setEmail("expired@gmail.com").setDateTime(now - TWO_HOURS),
+				new UserBlacklistEntity().setEmail("user@gmail.com").setDateTime(now)));
+
+		eventChannel = new LocalBlacklistEventChannel();
+		cache = new UserBlacklistCache(blacklistRepo, eventChannel);
+		cache.init();
+	}
+
+	@Test
+	public void testClearCache() {
+		assertTrue(cache.checkUserDeleted("expired@gmail.com"));
+
+		cache.clearCache();
+
+		assertFalse(cache.checkUserDeleted("expired@gmail.com"));
+		assertTrue(cache.checkUserDeleted("user@gmail.com"));
+		verify(blacklistRepo, times(1)).deleteAddedBefore(anyLong());
+		verify(blacklistRepo, never()).deleteByEmail(anyString());
+	}
+
+	@Test
+	public void userDeletedAgainIsKept() {
+		cache.addDeletedUser("expired@gmail.com");
+
+		cache.clearCache();
+
+		assertTrue(cache.checkUserDeleted("expired@gmail.com"));
+	}
+
+	@Test
+	public void testAddManyUsers() {
+		for (int i = 0; i < 1000; i++) {
+			cache.addDeletedUser("user" + i + "@gmail.com");
+			assertTrue(cache.checkUserDeleted("user" + i + "@gmail.com"));
+		}
+
+		assertTrue(cache.checkUserDeleted("user@gmail.com"));
+		assertTrue(cache.checkUserDeleted("user0@gmail.com"));
+		assertFalse(cache.checkUserDeleted("other@gmail.com"));
+	}
+
+	@Test
+	public void testRevokeTokens() {
+		long time = System.currentTimeMillis();
+
+		cache.revokeTokens("changed@gmail.com", time);
+
+		// only tokens issued before the revocation are rejected, to the
+		// millisecond
+		assertTrue(cache.isRevoked("changed@gmail.com", time - 1));
+		assertTrue(cache.isRevoked("changed@gmail.com", 0));
+		assertFalse(cache.isRevoked("changed@gmail.com", time));
+		assertFalse(cache.isRevoked("other@gmail.com", time - 1));
+		verify(blacklistRepo).save(any(UserBlacklistEntity.class));
+
+		// revoking again only moves the time
+		when(blacklistRepo.updateDateTime(eq("changed@gmail.com"), anyLong())).thenReturn(1);
+		cache.revokeTokens("changed@gmail.com", time + 1);
+
+		verify(blacklistRepo, times(1)).save(any(UserBlacklistEntity.class));
+	}
+
+	@Test
+	public void testReconcile() {
+		long now = System.currentTimeMillis();
+		when(blacklistRepo.findAll()).thenReturn(Arrays.asList(
+				new UserBlacklistEntity().setEmail("expired@gmail.com").setDateTime(now - TWO_HOURS),
+				new UserBlacklistEntity().setEmail("user@gmail.com").setDateTime(now + 1000),
+				new UserBlacklistEntity().setEmail("missed@gmail.com").setDateTime(now)));
+
+		cache.reconcile();
+
+		// users whose events were missed are added
+		assertTrue(cache.checkUserDeleted("missed@gmail.com"));
+
+		when(blacklistRepo.findAll()).thenReturn(Arrays.asList(
+				new UserBlacklistEntity().setEmail("user@gmail.com").setDateTime(now + 1000)));
+
+		// users missing in the table are removed by the second reconciliation
+		cache.reconcile();
+		assertTrue(cache.checkUserDeleted("missed@gmail.com"));
+
+		cache.reconcile();
+		assertFalse(cache.checkUserDeleted("missed@gmail.com"));
+		assertFalse(cache.checkUserDeleted("expired@gmail.com"));
+		assertTrue(cache.checkUserDeleted("user@gmail.com"));
+	}
+
+	@Test
+	public void testEventsFromOtherNodes() {
+		long now = System.currentTimeMillis();
+
+		eventChannel.publish(new BlacklistEvent(BlacklistEvent.Type.REMOVED, "user@gmail.com", now));
+		eventChannel.publish(new BlacklistEvent(BlacklistEvent.Type.ADDED, "other@gmail.com", now));
+		eventChannel.publish(new BlacklistEvent(BlacklistEvent.Type.ADDED, "old@gmail.com", now - TWO_HOURS));
+
+		assertFalse(cache.checkUserDeleted("user@gmail.com"));
+		assertTrue(cache.checkUserDeleted("other@gmail.com"));
+		assertFalse(cache.checkUserDeleted("old@gmail.com"));
+	}
+
+	@Test
+	public void testRemoveFromCache() {
+		cache.removeFromCache("user@gmail.com");
+		cache.clearCache();
+
+		assertFalse(cache.checkUserDeleted("user@gmail.com"));
+		verify(blacklistRepo, times(1)).deleteByEmail("user@gmail.com");
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserView;
+import com.mprevisic.user.metrics.MetricsRegistry;
+import com.mprevisic.user.repository.UserRepository;
+
+public class UserCacheTest {
+
+	private UserRepository userRepo;
+
+	private MetricsRegistry metrics;
+
+	private UserCache userCache;
+
+	private UserEntity user;
+
+	@Before
+	public void setUp() {
+		user = new UserEntity().setId(2L).setEmail("user@gmail.com").setRole(1);
+
+		userRepo = mock(UserRepository.class);
+		when(userRepo.findViewByEmail(anyString())).thenReturn(Optional.empty());
+		when(userRepo.findViewByEmail("user@gmail.com")).thenReturn(Optional.of(UserView.of(user)));
+		when(userRepo.findViewById(anyLong())).thenReturn(Optional.empty());
+		when(userRepo.findViewById(2L)).thenReturn(Optional.of(UserView.of(user)));
+
+		metrics = new MetricsRegistry();
+		userCache = new UserCache(userRepo, 100, 60000, metrics);
+	}
+
+	@Test
+	public void testFindByEmail() {
+		assertTrue(userCache.findByEmail("user@gmail.com").isPresent());
+		assertTrue(userCache.findByEmail("user@gmail.com").isPresent());
+		assertTrue(userCache.findById(2L).isPresent());
+
+		verify(userRepo, times(1)).findViewByEmail("user@gmail.com");
+		verify(userRepo, times(0)).findViewById(2L);
+		assertTrue(metrics.export().contains("user_cache_hits_total 2"));
+		assertTrue(metrics.export().contains("user_cache_misses_total 1"));
+	}
+
+	@Test
+	public void testFindById() {
+		assertTrue(userCache.findById(2L).isPresent());
+		assertTrue(userCache.findById(2L).isPresent());
+
+		verify(userRepo, times(1)).findViewById(2L);
+	}
+
+	@Test
+	public void userNotFoundIsNotCached() {
+		assertFalse(userCache.findByEmail("xyz@gmail.com").isPresent());
+		assertFalse(userCache.findByEmail("xyz@gmail.com").isPresent());
+
+		verify(userRepo, times(2)).findViewByEmail("xyz@gmail.com");
+	}
+
+	@Test
+	public void testInvalidate() {
+		userCache.findByEmail("user@gmail.com");
+		userCache.invalidate(2L, "user@gmail.com");
+		userCache.findByEmail("user@gmail.com");
+
+		verify(userRepo, times(2)).findViewByEmail("user@gmail.com");
+	}
+
+	@Test
+	public void invalidateEmailChanged() {
+		userCache.findByEmail("user@gmail.com");
+
+		UserEntity changedUser = new UserEntity().setId(2L).setEmail("new@gmail.com").setRole(1);
+		when(userRepo.findViewById(2L)).thenReturn(Optional.of(UserView.of(changedUser)));
+		when(userRepo.findViewByEmail("user@gmail.com")).thenReturn(Optional.empty());
+
+		userCache.invalidate(2L, "new@gmail.com");
+
+		assertEquals("new@gmail.com", userCache.findById(2L).get().getEmail());
+		assertFalse(userCache.findByEmail("user@gmail.com").isPresent());
+	}
+
+}
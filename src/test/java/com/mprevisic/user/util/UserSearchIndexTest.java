@@ -0,0 +1,84 @@
+package com.mprevisic.user.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mprevisic.user.domain.UserEntity;
+import com.mprevisic.user.dto.UserField;
+import com.mprevisic.user.repository.UserJdbcRepository;
+import com.mprevisic.user.repository.UserJdbcRepository.UserRowHandler;
+
+public class UserSearchIndexTest {
+
+	private UserSearchIndex index;
+
+	@Before
+	public void setUp() {
+		UserJdbcRepository userJdbcRepo = mock(UserJdbcRepository.class);
+		doAnswer(invocation -> {
+			UserRowHandler handler = (UserRowHandler) invocation.getArguments()[3];
+			handler.handle(1, new Object[] { "john.doe@gmail.com", "John", "Doe", "999-222-333" });
+			handler.handle(2, new Object[] { "jane@example.com", "Jane", "Van Dyke", null });
+			handler.handle(3, new Object[] { "doe@example.com", null, null, "+385 91 222" });
+			return null;
+		}).when(userJdbcRepo).forEachUser(anyListOf(UserField.class), anyLong(), anyInt(), any(UserRowHandler.class));
+
+		index = new UserSearchIndex(userJdbcRepo, true);
+		index.init();
+	}
+
+	@Test
+	public void testSearch() {
+		assertEquals(Arrays.asList(1L), index.search("john.d", 10));
+		assertEquals(Arrays.asList(2L, 1L), index.search("j", 10));
+		assertEquals(Arrays.asList(2L), index.search("DYK", 10));
+		assertEquals(Arrays.asList(2L), index.search("van d", 10));
+		assertTrue(index.search("xyz", 10).isEmpty());
+	}
+
+	@Test
+	public void searchWithoutDuplicates() {
+		// matches the e-mail address and first name of the first user
+		assertEquals(Arrays.asList(1L), index.search("john", 10));
+		assertEquals(Arrays.asList(1L, 3L), index.search("doe", 10));
+	}
+
+	@Test
+	public void searchPhoneNumber() {
+		assertEquals(Arrays.asList(1L), index.search("999 222", 10));
+		assertEquals(Arrays.asList(3L), index.search("+38591", 10));
+	}
+
+	@Test
+	public void testLimit() {
+		assertEquals(1, index.search("j", 1).size());
+	}
+
+	@Test
+	public void testUpdate() {
+		index.update(new UserEntity().setId(1L).setEmail("john.doe@gmail.com").setLastName("Smith"));
+		index.update(new UserEntity().setId(4L).setEmail("new@gmail.com").setFirstName("Doe"));
+
+		assertEquals(Arrays.asList(4L, 3L), index.search("doe", 10));
+		assertEquals(Arrays.asList(1L), index.search("smi", 10));
+	}
+
+	@Test
+	public void testRemove() {
+		index.remove(3L);
+
+		assertEquals(Arrays.asList(1L), index.search("doe", 10));
+	}
+
+}